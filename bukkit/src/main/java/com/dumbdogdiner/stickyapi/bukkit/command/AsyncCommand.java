@@ -7,6 +7,7 @@ package com.dumbdogdiner.stickyapi.bukkit.command;
 import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.bukkit.ChatColor;
 import org.bukkit.command.Command;
@@ -105,7 +106,12 @@ public abstract class AsyncCommand extends Command implements PluginIdentifiable
             }
         });
 
-        StickyAPI.getPool().execute(t);
+        try {
+            StickyAPI.getPool().execute(t);
+        } catch (RejectedExecutionException e) {
+            // Never run the command on the server thread instead
+            sender.sendMessage(ChatColor.RED + "The server is too busy to run this command right now.");
+        }
 
         return true; // we always return true, we don't care what bukkit thinks
     }
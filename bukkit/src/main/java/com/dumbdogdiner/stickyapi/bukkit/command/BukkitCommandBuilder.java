@@ -9,25 +9,43 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
-import java.util.concurrent.FutureTask;
+import java.util.Set;
+import java.util.UUID;
+import java.util.WeakHashMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.logging.Level;
 
 import com.dumbdogdiner.stickyapi.StickyAPI;
 import com.dumbdogdiner.stickyapi.bukkit.util.SoundUtil;
 import com.dumbdogdiner.stickyapi.common.arguments.Arguments;
 import com.dumbdogdiner.stickyapi.common.command.CommandBuilder;
+import com.dumbdogdiner.stickyapi.common.command.CommandEngine;
+import com.dumbdogdiner.stickyapi.common.command.CompletionCache;
+import com.dumbdogdiner.stickyapi.common.command.CompletionIndex;
+import com.dumbdogdiner.stickyapi.common.command.DispatchTrie;
 import com.dumbdogdiner.stickyapi.common.command.ExitCode;
 import com.dumbdogdiner.stickyapi.common.ServerVersion;
 import com.dumbdogdiner.stickyapi.common.util.NotificationType;
 import com.dumbdogdiner.stickyapi.common.util.reflection.ReflectionUtil;
-import com.dumbdogdiner.stickyapi.common.util.StringUtil;
 import com.google.common.collect.ImmutableList;
 
+import org.bukkit.block.Block;
+import org.bukkit.command.BlockCommandSender;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandMap;
 import org.bukkit.command.CommandSender;
+import org.bukkit.command.PluginIdentifiableCommand;
 import org.bukkit.command.TabCompleter;
+import org.bukkit.entity.Entity;
 import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
 import org.bukkit.plugin.Plugin;
 import org.jetbrains.annotations.NotNull;
 
@@ -39,10 +57,8 @@ import org.jetbrains.annotations.NotNull;
  */
 public class BukkitCommandBuilder extends CommandBuilder<BukkitCommandBuilder> {
 
-    // Hmm...
-    HashMap<CommandSender, Long> cooldownSenders = new HashMap<>();
-
     Executor executor;
+    AsyncExecutor asyncExecutor;
     TabExecutor tabExecutor;
 
     ErrorHandler errorHandler;
@@ -53,6 +69,15 @@ public class BukkitCommandBuilder extends CommandBuilder<BukkitCommandBuilder> {
         public ExitCode apply(CommandSender sender, Arguments args, HashMap<String, String> vars);
     }
 
+    /**
+     * An executor that does its work asynchronously itself, returning a future for
+     * the exit code instead of blocking a thread until it is known.
+     */
+    @FunctionalInterface
+    public interface AsyncExecutor {
+        public CompletableFuture<ExitCode> apply(CommandSender sender, Arguments args, HashMap<String, String> vars);
+    }
+
     public interface TabExecutor {
         public java.util.List<String> apply(CommandSender sender, String commandLabel, Arguments args);
     }
@@ -77,78 +102,98 @@ public class BukkitCommandBuilder extends CommandBuilder<BukkitCommandBuilder> {
         this.owner = owner;
     }
 
-    private void performAsynchronousExecution(CommandSender sender, org.bukkit.command.Command command, String label,
-            List<String> args) {
-        StickyAPI.getPool().execute(new FutureTask<Void>(() -> {
-            performExecution(sender, command, label, args);
-            return null;
-        }));
+    /**
+     * Find the sub-command the arguments lead to and execute it. Sub-commands are
+     * dispatched on the calling thread, so a synchronous one can sit below an
+     * asynchronous parent.
+     */
+    private void dispatch(CommandSender sender, org.bukkit.command.Command command, String label, List<String> args) {
+        var node = getDispatchTrie().resolve(args);
+        node.getCommand().performExecution(sender, command, label, args.subList(node.getDepth(), args.size()));
     }
 
     /**
-     * Execute this command. Checks for existing sub-commands, and runs the error
-     * handler if anything goes wrong.
+     * Execute this command, and run the error handler if anything goes wrong.
+     * <p>
+     * Asynchronous commands run through the command's {@link CommandEngine}, and
+     * their error handler and sounds run back on the main thread.
      */
     private void performExecution(CommandSender sender, org.bukkit.command.Command command, String label,
             List<String> args) {
-        // look for subcommands
-        if (args.size() > 0 && getSubCommands().containsKey(args.get(0))) {
-            BukkitCommandBuilder subCommand = (BukkitCommandBuilder) getSubCommands().get(args.get(0));
-            if (!getSynchronous() && subCommand.getSynchronous()) {
-                throw new RuntimeException("Attempted to asynchronously execute a synchronous sub-command!");
-            }
-
-            // We can't modify List, so we need to make a clone of it, because java is
-            // special.
-            ArrayList<String> argsClone = new ArrayList<String>(args);
-            argsClone.remove(0);
-
-            // spawn async command from sync
-            if (getSynchronous() && !subCommand.getSynchronous()) {
-                subCommand.performAsynchronousExecution(sender, command, label, argsClone);
-            } else {
-                subCommand.performExecution(sender, command, label, argsClone);
-            }
-
-            return;
-        }
-
         ExitCode exitCode;
-        Arguments a = new Arguments(args);
+        UUID uuid = senderId(sender);
+        Arguments a = null;
         var variables = new HashMap<String, String>();
         variables.put("command", command.getName());
         variables.put("sender", sender.getName());
         variables.put("player", sender.getName());
-        variables.put("uuid", (sender instanceof Player) ? ((Player) sender).getUniqueId().toString() : "");
+        variables.put("uuid", (sender instanceof Player) ? uuid.toString() : "");
         variables.put("cooldown", getCooldown().toString());
-        variables.put("cooldown_remaining",
-                cooldownSenders.containsKey(sender)
-                        ? String.valueOf(getCooldown() - (System.currentTimeMillis() - cooldownSenders.get(sender)))
-                        : "0");
+        variables.put("cooldown_remaining", "0");
+        if (getArgumentSchema() != null) {
+            variables.put("usage", getArgumentSchema().getUsage());
+        }
         try {
-            if (cooldownSenders.containsKey(sender)
-                    && ((System.currentTimeMillis() - cooldownSenders.get(sender)) < getCooldown())) {
-                exitCode = ExitCode.EXIT_COOLDOWN;
+            a = getArgumentSchema() != null ? getArgumentSchema().parse(args) : new Arguments(args);
+            // If the user does not have permission to execute the sub command, don't let
+            // them execute and return permission denied
+            if (this.getPermission() != null && !sender.hasPermission(this.getPermission())) {
+                exitCode = ExitCode.EXIT_PERMISSION_DENIED;
+            } else if (this.getRequiresPlayer() && !(sender instanceof Player)) {
+                exitCode = ExitCode.EXIT_MUST_BE_PLAYER;
+            } else if (!a.valid()) {
+                exitCode = ExitCode.EXIT_INVALID_SYNTAX;
             } else {
-
-                // Add our sender and their command execution time to our hashmap of coolness
-                cooldownSenders.put(sender, System.currentTimeMillis());
-
-                // If the user does not have permission to execute the sub command, don't let
-                // them execute and return permission denied
-                if (this.getPermission() != null && !sender.hasPermission(this.getPermission())) {
-                    exitCode = ExitCode.EXIT_PERMISSION_DENIED;
-                } else if (this.getRequiresPlayer() && !(sender instanceof Player)) {
-                    exitCode = ExitCode.EXIT_MUST_BE_PLAYER;
+                // Check and start the sender's cooldown in one go, only once the
+                // command is certain to run
+                long cooldownRemaining = getCooldowns().tryAcquire(uuid);
+                variables.put("cooldown_remaining", String.valueOf(cooldownRemaining));
+                if (cooldownRemaining > 0) {
+                    exitCode = ExitCode.EXIT_COOLDOWN;
+                } else if (asyncExecutor != null || !getSynchronous()) {
+                    performAsynchronousExecution(sender, uuid, command, a, variables);
+                    return;
                 } else {
                     exitCode = executor.apply(sender, a, variables);
                 }
             }
         } catch (Exception e) {
             exitCode = ExitCode.EXIT_ERROR;
-            e.printStackTrace();
+            StickyAPI.getLogger().log(Level.SEVERE, "A command threw an exception", e);
+        }
+        if (a == null) {
+            // Parsing failed, so the error handler sees the raw arguments
+            a = new Arguments(args);
+        }
+
+        handleExitCode(exitCode, sender, a, variables);
+    }
+
+    private void performAsynchronousExecution(CommandSender sender, UUID uuid, org.bukkit.command.Command command,
+            Arguments a, HashMap<String, String> variables) {
+        Plugin plugin = (command instanceof PluginIdentifiableCommand)
+                ? ((PluginIdentifiableCommand) command).getPlugin()
+                : owner;
+        java.util.concurrent.Executor mainThread = task -> plugin.getServer().getScheduler().runTask(plugin, task);
+
+        CompletableFuture<ExitCode> result;
+        if (asyncExecutor != null) {
+            result = getEngine().executeAsync(uuid, () -> asyncExecutor.apply(sender, a, variables), mainThread);
+        } else {
+            result = getEngine().execute(uuid, () -> executor.apply(sender, a, variables), mainThread);
         }
+        // Cancelled executions belong to senders who have left, so are dropped
+        result.thenAccept(exitCode -> handleExitCode(exitCode, sender, a, variables)).exceptionally(error -> {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (!(cause instanceof CancellationException)) {
+                StickyAPI.getLogger().log(Level.SEVERE, "Failed to report the result of /" + getName(), cause);
+            }
+            return null;
+        });
+    }
 
+    private void handleExitCode(ExitCode exitCode, CommandSender sender, Arguments a,
+            HashMap<String, String> variables) {
         // run the error handler - something made a fucky wucky uwu
         if (exitCode != ExitCode.EXIT_SUCCESS) {
             if (exitCode == ExitCode.EXIT_INFO) {
@@ -173,6 +218,19 @@ public class BukkitCommandBuilder extends CommandBuilder<BukkitCommandBuilder> {
         return this;
     }
 
+    /**
+     * Set an asynchronous executor for the command. It is called on the thread the
+     * command was dispatched on, and should return quickly - the command completes
+     * when the returned future does, subject to the command's timeout.
+     * 
+     * @param executor to set
+     * @return {@link CommandBuilder}
+     */
+    public BukkitCommandBuilder onExecuteAsync(@NotNull AsyncExecutor executor) {
+        this.asyncExecutor = executor;
+        return this;
+    }
+
     /**
      * Set the tab complete executor of the command
      * 
@@ -208,7 +266,8 @@ public class BukkitCommandBuilder extends CommandBuilder<BukkitCommandBuilder> {
             this.synchronous(false);
         }
 
-        BukkitCommandBuilder that = this;
+        CommandListener.register(plugin);
+        var trie = this.compile();
 
         // Execute the command by creating a new CommandExecutor and passing the
         // arguments to our executor
@@ -216,41 +275,17 @@ public class BukkitCommandBuilder extends CommandBuilder<BukkitCommandBuilder> {
             @Override
             public boolean onCommand(CommandSender sender, org.bukkit.command.Command command, String label,
                     String[] args) {
-                if (that.getSynchronous()) {
-                    performExecution(sender, command, label, Arrays.asList(args));
-                } else {
-                    performAsynchronousExecution(sender, command, label, Arrays.asList(args));
-                }
+                dispatch(sender, command, label, Arrays.asList(args));
                 return true;
             }
         });
 
+        CompletionCache completions = new CompletionCache(this.getName() + " completions");
         command.setTabCompleter(new TabCompleter() {
             @Override
             public List<String> onTabComplete(CommandSender sender, Command command, String alias, String[] args) {
-                if (tabExecutor == null) {
-                    if (args.length == 0) {
-                        return ImmutableList.of();
-                    }
-
-                    String lastWord = args[args.length - 1];
-
-                    Player senderPlayer = sender instanceof Player ? (Player) sender : null;
-
-                    ArrayList<String> matchedPlayers = new ArrayList<String>();
-                    for (Player player : sender.getServer().getOnlinePlayers()) {
-                        String name = player.getName();
-                        if ((senderPlayer == null || senderPlayer.canSee(player))
-                                && StringUtil.startsWithIgnoreCase(name, lastWord)) {
-                            matchedPlayers.add(name);
-                        }
-                    }
-
-                    Collections.sort(matchedPlayers, String.CASE_INSENSITIVE_ORDER);
-                    return matchedPlayers;
-                } else {
-                    return tabExecutor.apply(sender, alias, new Arguments(Arrays.asList(args)));
-                }
+                return completions.get(senderId(sender), alias + ' ' + String.join(" ", args),
+                        () -> tabComplete(trie, sender, alias, args));
             }
         });
 
@@ -304,9 +339,106 @@ public class BukkitCommandBuilder extends CommandBuilder<BukkitCommandBuilder> {
         this.register(this.owner);
     }
 
+    private static List<String> tabComplete(DispatchTrie<BukkitCommandBuilder> trie, CommandSender sender,
+            String alias, String[] args) {
+        TabExecutor tabExecutor = trie.getCommand().tabExecutor;
+        if (args.length == 0) {
+            return tabExecutor != null ? tabExecutor.apply(sender, alias, new Arguments(Arrays.asList(args)))
+                    : ImmutableList.of();
+        }
+
+        // Everything but the argument being completed picks the sub-command
+        List<String> argList = Arrays.asList(args);
+        var node = trie.resolve(argList, args.length - 1);
+
+        // The closest command with its own completer handles the rest, so a root
+        // completer keeps seeing all of the arguments
+        for (var ancestor = node; ancestor != null; ancestor = ancestor.getParent()) {
+            TabExecutor completer = ancestor.getCommand().tabExecutor;
+            if (completer != null) {
+                return completer.apply(sender, alias, new Arguments(argList.subList(ancestor.getDepth(), args.length)));
+            }
+        }
+
+        String lastWord = args[args.length - 1];
+        if (node.hasChildren() && node.getDepth() == args.length - 1) {
+            return node.complete(lastWord);
+        }
+
+        var schema = node.getCommand().getArgumentSchema();
+        if (schema != null) {
+            List<String> suggestions = schema.complete(argList.subList(node.getDepth(), args.length));
+            if (suggestions != null) {
+                return suggestions;
+            }
+        }
+
+        if (!(sender instanceof Player)) {
+            return CommandListener.players.complete(lastWord);
+        }
+        Player senderPlayer = (Player) sender;
+        List<String> matchedPlayers = new ArrayList<String>();
+        for (String name : CommandListener.players.complete(lastWord)) {
+            Player player = sender.getServer().getPlayerExact(name);
+            if (player != null && senderPlayer.canSee(player)) {
+                matchedPlayers.add(name);
+            }
+        }
+        return matchedPlayers;
+    }
+
+    /**
+     * Identify a sender for cooldowns, concurrency limits and completion caching.
+     * Players and other entities use their own UUID. Anything else, such as the
+     * console, RCON or a command block, gets one derived from what and where it
+     * is, so that each is tracked separately.
+     */
+    private static UUID senderId(CommandSender sender) {
+        if (sender instanceof Entity) {
+            return ((Entity) sender).getUniqueId();
+        }
+        if (sender instanceof BlockCommandSender) {
+            Block block = ((BlockCommandSender) sender).getBlock();
+            return CommandEngine.senderId("block:" + block.getWorld().getUID() + ':' + block.getX() + ':'
+                    + block.getY() + ':' + block.getZ());
+        }
+        return CommandEngine.senderId(sender.getClass().getName() + ':' + sender.getName());
+    }
+
     private void _playSound(CommandSender sender, NotificationType type) {
         if (!this.getPlaySound())
             return;
         SoundUtil.send(sender, type);
     }
+
+    /**
+     * Keeps the index of online player names used for completion, and cancels the
+     * asynchronous command executions of players who leave. Registered once for
+     * each plugin that builds a command.
+     */
+    private static class CommandListener implements Listener {
+        private static final Set<Plugin> registered = Collections.newSetFromMap(new WeakHashMap<>());
+
+        static final CompletionIndex players = new CompletionIndex();
+
+        static synchronized void register(Plugin plugin) {
+            if (registered.add(plugin)) {
+                for (Player player : plugin.getServer().getOnlinePlayers()) {
+                    players.add(player.getName());
+                }
+                plugin.getServer().getPluginManager().registerEvents(new CommandListener(), plugin);
+            }
+        }
+
+        @EventHandler(priority = EventPriority.MONITOR)
+        public void onPlayerJoin(PlayerJoinEvent event) {
+            players.add(event.getPlayer().getName());
+        }
+
+        @EventHandler(priority = EventPriority.MONITOR)
+        public void onPlayerQuit(PlayerQuitEvent event) {
+            players.remove(event.getPlayer().getName());
+            CommandEngine.cancelAll(event.getPlayer().getUniqueId());
+        }
+    }
 }
@@ -4,6 +4,8 @@
  */
 package com.dumbdogdiner.stickyapi.bukkit.util;
 
+import java.util.concurrent.TimeUnit;
+
 import com.dumbdogdiner.stickyapi.StickyAPI;
 import com.dumbdogdiner.stickyapi.common.util.NotificationType;
 
@@ -30,7 +32,8 @@ public class SoundUtil {
     }
 
     /**
-     * Queue a specific sound to be run at a later date.
+     * Queue a specific sound to be run at a later date. Waiting sounds are held by
+     * StickyAPI's shared timer, so they don't occupy a thread each.
      * 
      * @param player The player to play the sound to
      * @param sound  The sound to play
@@ -39,14 +42,8 @@ public class SoundUtil {
      * @param delay  T
      */
     public static void queueSound(@NotNull Player player, @NotNull Sound sound, float volume, float pitch, long delay) {
-        StickyAPI.getPool().submit(() -> {
-            try {
-                Thread.sleep(delay);
-                player.playSound(player.getLocation(), sound, volume, pitch);
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
-        });
+        StickyAPI.runLater(() -> player.playSound(player.getLocation(), sound, volume, pitch), delay,
+                TimeUnit.MILLISECONDS);
     }
 
     /**
@@ -4,13 +4,17 @@
  */
 package com.dumbdogdiner.stickyapi.bungeecord.command;
 
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
+import java.util.Set;
 import java.util.TreeMap;
-import java.util.concurrent.FutureTask;
+import java.util.UUID;
+import java.util.WeakHashMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.logging.Level;
 
 import com.dumbdogdiner.stickyapi.StickyAPI;
 import com.dumbdogdiner.stickyapi.bungeecord.packet.PacketRegistration;
@@ -18,8 +22,11 @@ import com.dumbdogdiner.stickyapi.bungeecord.util.SoundUtil;
 import com.dumbdogdiner.stickyapi.common.arguments.Arguments;
 import com.dumbdogdiner.stickyapi.common.command.ExitCode;
 import com.dumbdogdiner.stickyapi.common.command.CommandBuilder;
+import com.dumbdogdiner.stickyapi.common.command.CommandEngine;
+import com.dumbdogdiner.stickyapi.common.command.CompletionCache;
+import com.dumbdogdiner.stickyapi.common.command.CompletionIndex;
+import com.dumbdogdiner.stickyapi.common.command.DispatchTrie;
 import com.dumbdogdiner.stickyapi.common.util.NotificationType;
-import com.dumbdogdiner.stickyapi.common.util.StringUtil;
 import com.google.common.collect.ImmutableList;
 
 import org.jetbrains.annotations.NotNull;
@@ -27,16 +34,19 @@ import org.jetbrains.annotations.NotNull;
 import net.md_5.bungee.api.CommandSender;
 import net.md_5.bungee.api.ProxyServer;
 import net.md_5.bungee.api.connection.ProxiedPlayer;
+import net.md_5.bungee.api.event.PlayerDisconnectEvent;
+import net.md_5.bungee.api.event.PostLoginEvent;
 import net.md_5.bungee.api.plugin.Command;
+import net.md_5.bungee.api.plugin.Listener;
 import net.md_5.bungee.api.plugin.Plugin;
+import net.md_5.bungee.event.EventHandler;
+import net.md_5.bungee.event.EventPriority;
 
 @SuppressWarnings("deprecation") // PacketRegistration is deprecated
 public class BungeeCommandBuilder extends CommandBuilder<BungeeCommandBuilder> {
 
-    // Hmm...
-    HashMap<CommandSender, Long> cooldownSenders = new HashMap<>();
-
     Executor executor;
+    AsyncExecutor asyncExecutor;
     TabExecutor tabExecutor;
 
     ErrorHandler errorHandler;
@@ -47,6 +57,15 @@ public class BungeeCommandBuilder extends CommandBuilder<BungeeCommandBuilder> {
         public ExitCode apply(CommandSender sender, Arguments args, TreeMap<String, String> vars);
     }
 
+    /**
+     * An executor that does its work asynchronously itself, returning a future for
+     * the exit code instead of blocking a thread until it is known.
+     */
+    @FunctionalInterface
+    public interface AsyncExecutor {
+        public CompletableFuture<ExitCode> apply(CommandSender sender, Arguments args, TreeMap<String, String> vars);
+    }
+
     public interface TabExecutor {
         public java.util.List<String> apply(CommandSender sender, String commandLabel, Arguments args);
     }
@@ -91,78 +110,94 @@ public class BungeeCommandBuilder extends CommandBuilder<BungeeCommandBuilder> {
         super(name);
     }
 
-    private void performAsynchronousExecution(CommandSender sender, BungeeCommandBuilder builder, String label,
-            List<String> args) {
-        StickyAPI.getPool().execute(new FutureTask<Void>(() -> {
-            performExecution(sender, builder, label, args);
-            return null;
-        }));
+    /**
+     * Find the sub-command the arguments lead to and execute it. Sub-commands are
+     * dispatched on the calling thread, so a synchronous one can sit below an
+     * asynchronous parent.
+     */
+    private void dispatch(CommandSender sender, String label, List<String> args) {
+        var node = getDispatchTrie().resolve(args);
+        node.getCommand().performExecution(sender, this, label, args.subList(node.getDepth(), args.size()));
     }
 
     /**
-     * Execute this command. Checks for existing sub-commands, and runs the error
-     * handler if anything goes wrong.
+     * Execute this command, and run the error handler if anything goes wrong.
+     * <p>
+     * Asynchronous commands run through the command's {@link CommandEngine}. The
+     * proxy has no main thread, so their error handler runs on whichever thread
+     * finished them.
      */
     private void performExecution(CommandSender sender, BungeeCommandBuilder builder, String label, List<String> args) {
-        // look for subcommands
-        if (args.size() > 0 && getSubCommands().containsKey(args.get(0))) {
-            BungeeCommandBuilder subCommand = (BungeeCommandBuilder) getSubCommands().get(args.get(0));
-            if (!getSynchronous() && subCommand.getSynchronous()) {
-                throw new RuntimeException("Attempted to asynchronously execute a synchronous sub-command!");
-            }
-
-            // We can't modify List, so we need to make a clone of it, because java is
-            // special.
-            ArrayList<String> argsClone = new ArrayList<String>(args);
-            argsClone.remove(0);
-
-            // spawn async command from sync
-            if (getSynchronous() && !subCommand.getSynchronous()) {
-                subCommand.performAsynchronousExecution(sender, builder, label, argsClone);
-            } else {
-                subCommand.performExecution(sender, builder, label, argsClone);
-            }
-
-            return;
-        }
-
         ExitCode exitCode;
-        Arguments a = new Arguments(args);
+        UUID uuid = senderId(sender);
+        Arguments a = null;
         var variables = new TreeMap<String, String>();
         variables.put("command", builder.getName());
         variables.put("sender", sender.getName());
         variables.put("player", sender.getName());
-        variables.put("uuid", (sender instanceof ProxiedPlayer) ? ((ProxiedPlayer) sender).getUniqueId().toString()
+        variables.put("uuid", (sender instanceof ProxiedPlayer) ? uuid.toString()
                 : "00000000-0000-0000-0000-000000000000");
         variables.put("cooldown", getCooldown().toString());
-        variables.put("cooldown_remaining",
-                cooldownSenders.containsKey(sender)
-                        ? String.valueOf(getCooldown() - (System.currentTimeMillis() - cooldownSenders.get(sender)))
-                        : "0");
+        variables.put("cooldown_remaining", "0");
+        if (getArgumentSchema() != null) {
+            variables.put("usage", getArgumentSchema().getUsage());
+        }
         try {
-            if (cooldownSenders.containsKey(sender)
-                    && ((System.currentTimeMillis() - cooldownSenders.get(sender)) < getCooldown())) {
-                exitCode = ExitCode.EXIT_COOLDOWN;
+            a = getArgumentSchema() != null ? getArgumentSchema().parse(args) : new Arguments(args);
+            // If the user does not have permission to execute the sub command, don't let
+            // them execute and return permission denied
+            if (this.getPermission() != null && !sender.hasPermission(this.getPermission())) {
+                exitCode = ExitCode.EXIT_PERMISSION_DENIED;
+            } else if (this.getRequiresPlayer() && !(sender instanceof ProxiedPlayer)) {
+                exitCode = ExitCode.EXIT_MUST_BE_PLAYER;
+            } else if (!a.valid()) {
+                exitCode = ExitCode.EXIT_INVALID_SYNTAX;
             } else {
-
-                // Add our sender and their command execution time to our hashmap of coolness
-                cooldownSenders.put(sender, System.currentTimeMillis());
-
-                // If the user does not have permission to execute the sub command, don't let
-                // them execute and return permission denied
-                if (this.getPermission() != null && !sender.hasPermission(this.getPermission())) {
-                    exitCode = ExitCode.EXIT_PERMISSION_DENIED;
-                } else if (this.getRequiresPlayer() && !(sender instanceof ProxiedPlayer)) {
-                    exitCode = ExitCode.EXIT_MUST_BE_PLAYER;
+                // Check and start the sender's cooldown in one go, only once the
+                // command is certain to run
+                long cooldownRemaining = getCooldowns().tryAcquire(uuid);
+                variables.put("cooldown_remaining", String.valueOf(cooldownRemaining));
+                if (cooldownRemaining > 0) {
+                    exitCode = ExitCode.EXIT_COOLDOWN;
+                } else if (asyncExecutor != null || !getSynchronous()) {
+                    performAsynchronousExecution(sender, uuid, a, variables);
+                    return;
                 } else {
                     exitCode = executor.apply(sender, a, variables);
                 }
             }
         } catch (Exception e) {
             exitCode = ExitCode.EXIT_ERROR;
-            e.printStackTrace();
+            StickyAPI.getLogger().log(Level.SEVERE, "A command threw an exception", e);
+        }
+        if (a == null) {
+            // Parsing failed, so the error handler sees the raw arguments
+            a = new Arguments(args);
         }
 
+        handleExitCode(exitCode, sender, a, variables);
+    }
+
+    private void performAsynchronousExecution(CommandSender sender, UUID uuid, Arguments a,
+            TreeMap<String, String> variables) {
+        CompletableFuture<ExitCode> result;
+        if (asyncExecutor != null) {
+            result = getEngine().executeAsync(uuid, () -> asyncExecutor.apply(sender, a, variables), Runnable::run);
+        } else {
+            result = getEngine().execute(uuid, () -> executor.apply(sender, a, variables), Runnable::run);
+        }
+        // Cancelled executions belong to senders who have left, so are dropped
+        result.thenAccept(exitCode -> handleExitCode(exitCode, sender, a, variables)).exceptionally(error -> {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (!(cause instanceof CancellationException)) {
+                StickyAPI.getLogger().log(Level.SEVERE, "Failed to report the result of /" + getName(), cause);
+            }
+            return null;
+        });
+    }
+
+    private void handleExitCode(ExitCode exitCode, CommandSender sender, Arguments a,
+            TreeMap<String, String> variables) {
         if (exitCode != ExitCode.EXIT_SUCCESS) {
             if (exitCode == ExitCode.EXIT_INFO) {
                 _playSound(sender, NotificationType.INFO);
@@ -186,6 +221,19 @@ public class BungeeCommandBuilder extends CommandBuilder<BungeeCommandBuilder> {
         return this;
     }
 
+    /**
+     * Set an asynchronous executor for the command. It is called on the thread the
+     * command was dispatched on, and should return quickly - the command completes
+     * when the returned future does, subject to the command's timeout.
+     * 
+     * @param executor to set
+     * @return {@link BungeeCommandBuilder}
+     */
+    public BungeeCommandBuilder onExecuteAsync(@NotNull AsyncExecutor executor) {
+        this.asyncExecutor = executor;
+        return this;
+    }
+
     /**
      * Set the tab complete executor of the command
      * 
@@ -216,7 +264,8 @@ public class BungeeCommandBuilder extends CommandBuilder<BungeeCommandBuilder> {
      * @return {@link Command}
      */
     public Command build(Plugin plugin) {
-        return new TabableCommand(this);
+        CommandListener.register(plugin);
+        return new TabableCommand(this, this.compile());
     }
 
     /**
@@ -232,46 +281,78 @@ public class BungeeCommandBuilder extends CommandBuilder<BungeeCommandBuilder> {
     private static class TabableCommand extends net.md_5.bungee.api.plugin.Command
             implements net.md_5.bungee.api.plugin.TabExecutor {
         BungeeCommandBuilder builder;
+        DispatchTrie<BungeeCommandBuilder> trie;
+        CompletionCache completions;
 
-        public TabableCommand(BungeeCommandBuilder builder) {
+        public TabableCommand(BungeeCommandBuilder builder, DispatchTrie<BungeeCommandBuilder> trie) {
             super(builder.getName(), builder.getPermission(), builder.getAliases().toArray(new String[0]));
             this.builder = builder;
+            this.trie = trie;
+            this.completions = new CompletionCache(builder.getName() + " completions");
         }
 
         public void execute(net.md_5.bungee.api.CommandSender sender, String[] args) {
             // CommandSender sender, CommandBuilder builder, String label, List<String> args
-            if (builder.getSynchronous()) {
-                builder.performExecution(sender, builder, builder.getName(), Arrays.asList(args));
-            } else {
-                builder.performAsynchronousExecution(sender, builder, builder.getName(), Arrays.asList(args));
-            }
+            builder.dispatch(sender, builder.getName(), Arrays.asList(args));
         }
 
         @Override
         public Iterable<String> onTabComplete(net.md_5.bungee.api.CommandSender sender, String[] args) {
-            if (builder.tabExecutor != null)
-                return builder.tabExecutor.apply(sender, builder.getName(), new Arguments(Arrays.asList(args)));
-            else {
-                if (args.length == 0) {
-                    return ImmutableList.of();
-                }
+            return completions.get(senderId(sender), String.join(" ", args), () -> tabComplete(sender, args));
+        }
 
-                String lastWord = args[args.length - 1];
+        private List<String> tabComplete(net.md_5.bungee.api.CommandSender sender, String[] args) {
+            if (args.length == 0) {
+                return builder.tabExecutor != null
+                        ? builder.tabExecutor.apply(sender, builder.getName(), new Arguments(Arrays.asList(args)))
+                        : ImmutableList.of();
+            }
 
-                ProxiedPlayer senderPlayer = sender instanceof ProxiedPlayer ? (ProxiedPlayer) sender : null;
+            // Everything but the argument being completed picks the sub-command
+            List<String> argList = Arrays.asList(args);
+            var node = trie.resolve(argList, args.length - 1);
+
+            // The closest command with its own completer handles the rest, so a
+            // root completer keeps seeing all of the arguments
+            for (var ancestor = node; ancestor != null; ancestor = ancestor.getParent()) {
+                TabExecutor completer = ancestor.getCommand().tabExecutor;
+                if (completer != null) {
+                    return completer.apply(sender, builder.getName(),
+                            new Arguments(argList.subList(ancestor.getDepth(), args.length)));
+                }
+            }
 
-                ArrayList<String> matchedPlayers = new ArrayList<String>();
-                for (ProxiedPlayer player : ProxyServer.getInstance().getPlayers()) {
-                    String name = player.getName();
-                    if ((senderPlayer == null) && StringUtil.startsWithIgnoreCase(name, lastWord)) {
-                        matchedPlayers.add(name);
-                    }
+            String lastWord = args[args.length - 1];
+            if (node.hasChildren() && node.getDepth() == args.length - 1) {
+                return node.complete(lastWord);
+            }
+
+            var schema = node.getCommand().getArgumentSchema();
+            if (schema != null) {
+                List<String> suggestions = schema.complete(argList.subList(node.getDepth(), args.length));
+                if (suggestions != null) {
+                    return suggestions;
                 }
+            }
 
-                Collections.sort(matchedPlayers, String.CASE_INSENSITIVE_ORDER);
-                return matchedPlayers;
+            // Player names are only offered to the console
+            if (sender instanceof ProxiedPlayer) {
+                return ImmutableList.of();
             }
+            return CommandListener.players.complete(lastWord);
+        }
+    }
+
+    /**
+     * Identify a sender for cooldowns, concurrency limits and completion caching.
+     * Players use their own UUID. Anything else, such as the console, gets one
+     * derived from what it is, so that each is tracked separately.
+     */
+    private static UUID senderId(CommandSender sender) {
+        if (sender instanceof ProxiedPlayer) {
+            return ((ProxiedPlayer) sender).getUniqueId();
         }
+        return CommandEngine.senderId(sender.getClass().getName() + ':' + sender.getName());
     }
 
     private void _playSound(CommandSender sender, NotificationType type) {
@@ -280,4 +361,38 @@ public class BungeeCommandBuilder extends CommandBuilder<BungeeCommandBuilder> {
         SoundUtil.send(sender, type);
     }
 
+    /**
+     * Keeps the index of online player names used for completion, and cancels the
+     * asynchronous command executions of players who disconnect. Registered once
+     * for each plugin that builds a command. Public, since BungeeCord's event bus
+     * calls handlers reflectively without making them accessible.
+     */
+    public static final class CommandListener implements Listener {
+        private static final Set<Plugin> registered = Collections.newSetFromMap(new WeakHashMap<>());
+
+        static final CompletionIndex players = new CompletionIndex();
+
+        private CommandListener() {
+        }
+
+        static synchronized void register(Plugin plugin) {
+            if (registered.add(plugin)) {
+                for (ProxiedPlayer player : ProxyServer.getInstance().getPlayers()) {
+                    players.add(player.getName());
+                }
+                ProxyServer.getInstance().getPluginManager().registerListener(plugin, new CommandListener());
+            }
+        }
+
+        @EventHandler(priority = EventPriority.HIGHEST)
+        public void onPostLogin(PostLoginEvent event) {
+            players.add(event.getPlayer().getName());
+        }
+
+        @EventHandler(priority = EventPriority.HIGHEST)
+        public void onPlayerDisconnect(PlayerDisconnectEvent event) {
+            players.remove(event.getPlayer().getName());
+            CommandEngine.cancelAll(event.getPlayer().getUniqueId());
+        }
+    }
 }
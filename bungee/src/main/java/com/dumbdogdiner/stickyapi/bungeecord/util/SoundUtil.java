@@ -4,6 +4,8 @@
  */
 package com.dumbdogdiner.stickyapi.bungeecord.util;
 
+import java.util.concurrent.TimeUnit;
+
 import com.dumbdogdiner.stickyapi.StickyAPI;
 import com.dumbdogdiner.stickyapi.bungeecord.packet.SoundPacket;
 import com.dumbdogdiner.stickyapi.common.util.NotificationType;
@@ -31,7 +33,8 @@ public class SoundUtil {
     }
 
     /**
-     * Queue a specific sound to be run at a later date.
+     * Queue a specific sound to be run at a later date. Waiting sounds are held by
+     * StickyAPI's shared timer, so they don't occupy a thread each.
      * 
      * @param player The player to play the sound to
      * @param sound  The sound to play
@@ -42,19 +45,14 @@ public class SoundUtil {
     @SuppressWarnings("deprecation") // SoundPacket is deprecated
     public static void queueSound(@NotNull ProxiedPlayer player, @NotNull Sound sound, @NotNull float volume,
             @NotNull float pitch, @NotNull Long delay) {
-        StickyAPI.getPool().submit(() -> {
-            try {
-                Thread.sleep(delay);
-                // So, since we don't have the player's position (yet...) So, we have to play
-                // this at the center of the world
-                // at the max volume... Yes, this distorts the sound, please hold while I map
-                // more packets
-                // so I can obtain the player's position and play the sound that way... -zach
-                player.unsafe().sendPacket(new SoundPacket(sound.getId(), 0, 0, 255, 0, Float.MAX_VALUE, pitch));
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
-        });
+        StickyAPI.runLater(() -> {
+            // So, since we don't have the player's position (yet...) So, we have to play
+            // this at the center of the world
+            // at the max volume... Yes, this distorts the sound, please hold while I map
+            // more packets
+            // so I can obtain the player's position and play the sound that way... -zach
+            player.unsafe().sendPacket(new SoundPacket(sound.getId(), 0, 0, 255, 0, Float.MAX_VALUE, pitch));
+        }, delay, TimeUnit.MILLISECONDS);
     }
 
     /**
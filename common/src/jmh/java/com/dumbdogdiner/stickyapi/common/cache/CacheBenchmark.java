@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2020-2021 DumbDogDiner <dumbdogdiner.com>. All rights reserved.
+ * Licensed under the MIT license, see LICENSE for more information...
+ */
+package com.dumbdogdiner.stickyapi.common.cache;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures the cost of cache hits. Run with <code>./gradlew :common:jmh</code>
+ * - the gc profiler is enabled, and <code>gc.alloc.rate.norm</code> should
+ * read 0 B/op for every benchmark.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CacheBenchmark {
+    private static final int SIZE = 1024;
+    private static final int MASK = SIZE - 1;
+
+    static final class Entry implements Cacheable {
+        private final String key;
+
+        Entry(String key) {
+            this.key = key;
+        }
+
+        @Override
+        public String getKey() {
+            return key;
+        }
+    }
+
+    @Param({ "FIFO", "LRU", "TINY_LFU" })
+    public EvictionPolicy policy;
+
+    private Cache<Entry> cache;
+    private String[] keys;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        cache = new Cache<>(Entry.class);
+        cache.setEvictionPolicy(policy);
+        cache.setMaxSize(SIZE * 2);
+
+        keys = new String[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            keys[i] = "key" + i;
+            cache.put(new Entry(keys[i]));
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int index = 0;
+    }
+
+    @Benchmark
+    public Entry get(Cursor cursor) {
+        return cache.get(keys[cursor.index++ & MASK]);
+    }
+
+    @Benchmark
+    public Entry getMiss() {
+        return cache.get("missing");
+    }
+}
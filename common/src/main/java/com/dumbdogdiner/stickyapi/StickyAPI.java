@@ -9,8 +9,17 @@ import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import com.dumbdogdiner.stickyapi.common.scheduler.ExecutorStrategy;
+
+import org.jetbrains.annotations.NotNull;
+
 import lombok.Getter;
 import lombok.Setter;
 
@@ -27,9 +36,67 @@ public class StickyAPI {
     @Getter
     public static Logger logger = Logger.getLogger("StickyAPI");
 
+    /**
+     * The executor StickyAPI runs asynchronous work on. Defaults to virtual
+     * threads where supported, and a bounded pool otherwise - see
+     * {@link ExecutorStrategy}.
+     * <p>
+     * This used to be an unbounded cached thread pool. Without virtual threads,
+     * the default pool now has {@link ExecutorStrategy#POOL_SIZE} threads and
+     * queues up to {@link ExecutorStrategy#QUEUE_CAPACITY} tasks, after which
+     * <code>execute</code> and <code>submit</code> throw a
+     * {@link RejectedExecutionException}. Callers that relied on the pool never
+     * refusing work can restore it with
+     * <code>setPool(Executors.newCachedThreadPool())</code>.
+     */
     @Getter
     @Setter
-    private static ExecutorService pool = Executors.newCachedThreadPool();
+    private static volatile ExecutorService pool = ExecutorStrategy.AUTO.create();
+
+    /**
+     * A single shared daemon thread for delayed work. Waiting tasks only cost a
+     * queue entry each, rather than a sleeping thread. Tasks on it must be quick
+     * - use {@link #runLater(Runnable, long, TimeUnit)} for anything else.
+     */
+    @Getter
+    private static final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "StickyAPI Timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Run a task on the pool after the given delay, without tying up a thread
+     * while waiting. If the pool is saturated when the delay ends, the task is
+     * dropped and logged rather than run on the timer.
+     * 
+     * @param task  The task to run
+     * @param delay How long to wait before running it
+     * @param unit  The unit of <code>delay</code>
+     * @return A future that can be used to cancel the task before it runs
+     */
+    public static ScheduledFuture<?> runLater(@NotNull Runnable task, long delay, @NotNull TimeUnit unit) {
+        return timer.schedule(() -> {
+            try {
+                pool.execute(task);
+            } catch (RejectedExecutionException e) {
+                logger.log(Level.SEVERE, "Dropped a delayed task - the pool is saturated or shut down", e);
+            }
+        }, delay, unit);
+    }
+
+    /**
+     * Replace the pool with a new one using the given strategy. The old pool is
+     * shut down once its queued tasks have run, so work submitted to it after
+     * this returns is rejected.
+     * 
+     * @param strategy The strategy to use
+     */
+    public static synchronized void setExecutorStrategy(@NotNull ExecutorStrategy strategy) {
+        ExecutorService old = pool;
+        pool = strategy.create();
+        old.shutdown();
+    }
 
     // Build Info Start
 
@@ -0,0 +1,579 @@
+/*
+ * Copyright (c) 2020-2021 DumbDogDiner <dumbdogdiner.com>. All rights reserved.
+ * Licensed under the MIT license, see LICENSE for more information...
+ */
+package com.dumbdogdiner.stickyapi.common.arguments;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.dumbdogdiner.stickyapi.common.command.CompletionIndex;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import lombok.Getter;
+
+/**
+ * A declaration of the arguments a command takes, checked and compiled once so
+ * that each execution only has to read its arguments.
+ * <p>
+ * Input is first split by {@link ArgumentTokenizer}, so quoted strings are
+ * single arguments. Flags are read next, wherever they appear and including
+ * grouped short flags such as <code>-sf</code>, then the
+ * positional arguments in the order they were declared. The same declaration is
+ * used to describe the command's usage and to complete its arguments.
+ * 
+ * <pre>
+ * ArgumentSchema schema = ArgumentSchema.builder().optionalFlag("silent", "-s").requiredString("player")
+ *         .suggest(players).optionalDuration("length").optionalSentence("reason").build();
+ * </pre>
+ * 
+ * @since 3.0
+ */
+public final class ArgumentSchema {
+    /**
+     * The kinds of argument a schema may declare.
+     */
+    public enum Type {
+        STRING, INT, DURATION, TIMESTAMP, SENTENCE, FLAG,
+        /**
+         * A flag followed by a value, or given as <code>--key=value</code>.
+         */
+        FLAG_VALUE
+    }
+
+    /**
+     * The declared parameters, in the order they were declared.
+     */
+    @Getter
+    private final List<Parameter> parameters;
+
+    /**
+     * A description of the arguments, such as
+     * <code>&lt;player&gt; [length] [reason...] [-s] [-r &lt;reason&gt;]</code>.
+     */
+    @Getter
+    private final String usage;
+
+    // Flags first, then positional parameters
+    private final Parameter[] plan;
+    private final Parameter[] positional;
+    private final CompletionIndex flags;
+    private final Set<String> flagNames;
+    private final Map<String, Parameter> valueFlags = new HashMap<>();
+
+    private ArgumentSchema(List<Parameter> parameters) {
+        this.parameters = Collections.unmodifiableList(new ArrayList<>(parameters));
+
+        List<Parameter> flagParameters = new ArrayList<>();
+        List<Parameter> positionalParameters = new ArrayList<>();
+        List<String> flagNames = new ArrayList<>();
+        for (Parameter parameter : parameters) {
+            if (parameter.isFlag()) {
+                flagParameters.add(parameter);
+                flagNames.add(parameter.flag);
+                if (parameter.type == Type.FLAG_VALUE) {
+                    valueFlags.put(parameter.flag, parameter);
+                }
+            } else {
+                positionalParameters.add(parameter);
+            }
+        }
+
+        this.positional = positionalParameters.toArray(new Parameter[0]);
+        flagParameters.addAll(positionalParameters);
+        this.plan = flagParameters.toArray(new Parameter[0]);
+        this.flags = CompletionIndex.of(flagNames);
+        this.flagNames = new HashSet<>(flagNames);
+
+        StringBuilder usage = new StringBuilder();
+        for (Parameter parameter : positional) {
+            usage.append(parameter.getUsage()).append(' ');
+        }
+        for (Parameter parameter : plan) {
+            if (parameter.isFlag()) {
+                usage.append(parameter.getUsage()).append(' ');
+            }
+        }
+        this.usage = usage.toString().trim();
+    }
+
+    /**
+     * Start declaring a schema.
+     * 
+     * @return {@link Builder}
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Read the given arguments according to this schema.
+     * 
+     * @param args The arguments the command was run with, which are tokenized
+     *             again so that quoted strings are single arguments
+     * @return {@link Arguments}, invalid if a required argument is missing
+     */
+    public Arguments parse(@NotNull List<String> args) {
+        Arguments arguments = new Arguments(ArgumentTokenizer.tokenize(args), true);
+        for (Parameter parameter : plan) {
+            parameter.read(arguments);
+        }
+        return arguments;
+    }
+
+    /**
+     * Complete the last of the given arguments.
+     * 
+     * @param args The arguments typed so far, the last being completed
+     * @return {@link List} of completions, or null if the argument being completed
+     *         is a string without suggestions
+     */
+    public @Nullable List<String> complete(@NotNull List<String> args) {
+        if (args.isEmpty()) {
+            return null;
+        }
+
+        String last = args.get(args.size() - 1);
+        if (args.size() > 1 && valueFlags.containsKey(args.get(args.size() - 2))) {
+            Parameter flag = valueFlags.get(args.get(args.size() - 2));
+            return flag.suggestions != null ? flag.suggestions.complete(last) : null;
+        }
+        if (!last.isEmpty() && last.charAt(0) == '-' && flags.size() > 0) {
+            return flags.complete(last);
+        }
+
+        // Find the parameter the argument being completed belongs to
+        int words = 0;
+        for (int i = 0; i < args.size() - 1; i++) {
+            String arg = args.get(i);
+            if (valueFlags.containsKey(arg)) {
+                i++;
+            } else if (!flagNames.contains(arg) && !isAssignment(arg)) {
+                words++;
+            }
+        }
+        for (Parameter parameter : positional) {
+            int span = parameter.type == Type.SENTENCE && parameter.length == 0 ? Integer.MAX_VALUE
+                    : Math.max(parameter.length, 1);
+            if (words < span) {
+                if (parameter.suggestions != null) {
+                    return parameter.suggestions.complete(last);
+                }
+                return parameter.type == Type.STRING || parameter.type == Type.SENTENCE ? null
+                        : new ArrayList<>();
+            }
+            words -= span;
+        }
+        return new ArrayList<>();
+    }
+
+    private boolean isAssignment(String arg) {
+        int equals = arg.indexOf('=');
+        return equals > 0 && valueFlags.containsKey(arg.substring(0, equals));
+    }
+
+    /**
+     * A single declared argument.
+     */
+    public static final class Parameter {
+        @Getter
+        private final String name;
+        @Getter
+        private final Type type;
+        @Getter
+        private final boolean required;
+        /**
+         * The flag to look for, for flags.
+         */
+        @Getter
+        private final String flag;
+        /**
+         * The value used when an optional argument is missing, or null.
+         */
+        @Getter
+        private final String fallback;
+        /**
+         * The number of words in a sentence, or 0 for the rest of the arguments.
+         */
+        @Getter
+        private final int length;
+        /**
+         * Completions offered for this argument, or null.
+         */
+        @Getter
+        private CompletionIndex suggestions;
+
+        private Parameter(String name, Type type, boolean required, String flag, String fallback, int length) {
+            this.name = name;
+            this.type = type;
+            this.required = required;
+            this.flag = flag;
+            this.fallback = fallback;
+            this.length = length;
+        }
+
+        /**
+         * @return true if this parameter is a flag, with or without a value
+         */
+        public boolean isFlag() {
+            return type == Type.FLAG || type == Type.FLAG_VALUE;
+        }
+
+        /**
+         * @return How this parameter is described in usage messages
+         */
+        public String getUsage() {
+            String label = type == Type.FLAG ? flag
+                    : type == Type.FLAG_VALUE ? flag + " <" + name + ">" : type == Type.SENTENCE ? name + "..." : name;
+            return required ? (isFlag() ? label : "<" + label + ">") : "[" + label + "]";
+        }
+
+        private void read(Arguments args) {
+            switch (type) {
+            case FLAG:
+                if (required) {
+                    args.requiredFlag(name, flag);
+                } else {
+                    args.optionalFlag(name, flag);
+                }
+                break;
+            case FLAG_VALUE:
+                if (required) {
+                    args.requiredFlagValue(name, flag);
+                } else {
+                    args.optionalFlagValue(name, flag);
+                }
+                break;
+            case STRING:
+                if (required) {
+                    args.requiredString(name);
+                } else if (fallback != null) {
+                    args.optionalString(name, fallback);
+                } else {
+                    args.optionalString(name);
+                }
+                break;
+            case INT:
+                if (required) {
+                    args.requiredInt(name);
+                } else if (fallback != null) {
+                    args.optionalInt(name, Integer.valueOf(fallback));
+                } else {
+                    args.optionalInt(name);
+                }
+                break;
+            case DURATION:
+                if (required) {
+                    args.requiredDuration(name);
+                } else {
+                    args.optionalDuration(name);
+                }
+                break;
+            case TIMESTAMP:
+                if (required) {
+                    args.requiredTimeString(name);
+                } else {
+                    args.optionalTimeString(name);
+                }
+                break;
+            case SENTENCE:
+                if (required) {
+                    if (length == 0) {
+                        args.requiredSentence(name);
+                    } else {
+                        args.requiredSentence(name, length);
+                    }
+                } else if (fallback != null) {
+                    if (length == 0) {
+                        args.optionalSentence(name, fallback);
+                    } else {
+                        args.optionalSentence(name, fallback, length);
+                    }
+                } else {
+                    if (length == 0) {
+                        args.optionalSentence(name);
+                    } else {
+                        args.optionalSentence(name, length);
+                    }
+                }
+                break;
+            }
+        }
+    }
+
+    /**
+     * Declares the parameters of an {@link ArgumentSchema}, in the order they are
+     * read.
+     */
+    public static final class Builder {
+        private final List<Parameter> parameters = new ArrayList<>();
+
+        private Builder() {
+        }
+
+        private Builder add(Parameter parameter) {
+            parameters.add(parameter);
+            return this;
+        }
+
+        /**
+         * Declare an optional flag.
+         * 
+         * @param name The name of this flag
+         * @param flag The flag to look for
+         * @return {@link Builder}
+         */
+        public Builder optionalFlag(@NotNull String name, @NotNull String flag) {
+            return add(new Parameter(name, Type.FLAG, false, flag, null, 0));
+        }
+
+        /**
+         * Declare a required flag.
+         * 
+         * @param name The name of this flag
+         * @param flag The flag to look for
+         * @return {@link Builder}
+         */
+        public Builder requiredFlag(@NotNull String name, @NotNull String flag) {
+            return add(new Parameter(name, Type.FLAG, true, flag, null, 0));
+        }
+
+        /**
+         * Declare an optional flag taking a value, such as <code>-r "reason"</code>
+         * or <code>--reason=value</code>.
+         * 
+         * @param name The name of this flag
+         * @param flag The flag to look for
+         * @return {@link Builder}
+         */
+        public Builder optionalFlagValue(@NotNull String name, @NotNull String flag) {
+            return add(new Parameter(name, Type.FLAG_VALUE, false, flag, null, 0));
+        }
+
+        /**
+         * Declare a required flag taking a value, such as <code>-r "reason"</code>
+         * or <code>--reason=value</code>.
+         * 
+         * @param name The name of this flag
+         * @param flag The flag to look for
+         * @return {@link Builder}
+         */
+        public Builder requiredFlagValue(@NotNull String name, @NotNull String flag) {
+            return add(new Parameter(name, Type.FLAG_VALUE, true, flag, null, 0));
+        }
+
+        /**
+         * Declare a required string.
+         * 
+         * @param name The name of this string
+         * @return {@link Builder}
+         */
+        public Builder requiredString(@NotNull String name) {
+            return add(new Parameter(name, Type.STRING, true, null, null, 0));
+        }
+
+        /**
+         * Declare an optional string.
+         * 
+         * @param name The name of this string
+         * @return {@link Builder}
+         */
+        public Builder optionalString(@NotNull String name) {
+            return add(new Parameter(name, Type.STRING, false, null, null, 0));
+        }
+
+        /**
+         * Declare an optional string with a default value.
+         * 
+         * @param name     The name of this string
+         * @param fallback The value used if it is missing
+         * @return {@link Builder}
+         */
+        public Builder optionalString(@NotNull String name, @NotNull String fallback) {
+            return add(new Parameter(name, Type.STRING, false, null, fallback, 0));
+        }
+
+        /**
+         * Declare a required integer.
+         * 
+         * @param name The name of this integer
+         * @return {@link Builder}
+         */
+        public Builder requiredInt(@NotNull String name) {
+            return add(new Parameter(name, Type.INT, true, null, null, 0));
+        }
+
+        /**
+         * Declare an optional integer.
+         * 
+         * @param name The name of this integer
+         * @return {@link Builder}
+         */
+        public Builder optionalInt(@NotNull String name) {
+            return add(new Parameter(name, Type.INT, false, null, null, 0));
+        }
+
+        /**
+         * Declare an optional integer with a default value.
+         * 
+         * @param name     The name of this integer
+         * @param fallback The value used if it is missing
+         * @return {@link Builder}
+         */
+        public Builder optionalInt(@NotNull String name, int fallback) {
+            return add(new Parameter(name, Type.INT, false, null, String.valueOf(fallback), 0));
+        }
+
+        /**
+         * Declare a required duration. (e.g. 1w2d5s)
+         * 
+         * @param name The name of this duration
+         * @return {@link Builder}
+         */
+        public Builder requiredDuration(@NotNull String name) {
+            return add(new Parameter(name, Type.DURATION, true, null, null, 0));
+        }
+
+        /**
+         * Declare an optional duration. (e.g. 1w2d5s)
+         * 
+         * @param name The name of this duration
+         * @return {@link Builder}
+         */
+        public Builder optionalDuration(@NotNull String name) {
+            return add(new Parameter(name, Type.DURATION, false, null, null, 0));
+        }
+
+        /**
+         * Declare a required timestamp, given as a duration from now.
+         * 
+         * @param name The name of this timestamp
+         * @return {@link Builder}
+         */
+        public Builder requiredTimeString(@NotNull String name) {
+            return add(new Parameter(name, Type.TIMESTAMP, true, null, null, 0));
+        }
+
+        /**
+         * Declare an optional timestamp, given as a duration from now.
+         * 
+         * @param name The name of this timestamp
+         * @return {@link Builder}
+         */
+        public Builder optionalTimeString(@NotNull String name) {
+            return add(new Parameter(name, Type.TIMESTAMP, false, null, null, 0));
+        }
+
+        /**
+         * Declare a required sentence made of the rest of the arguments.
+         * 
+         * @param name The name of this sentence
+         * @return {@link Builder}
+         */
+        public Builder requiredSentence(@NotNull String name) {
+            return requiredSentence(name, 0);
+        }
+
+        /**
+         * Declare a required sentence with the given length.
+         * 
+         * @param name   The name of this sentence
+         * @param length The number of words, or 0 for the rest of the arguments
+         * @return {@link Builder}
+         */
+        public Builder requiredSentence(@NotNull String name, int length) {
+            return add(new Parameter(name, Type.SENTENCE, true, null, null, length));
+        }
+
+        /**
+         * Declare an optional sentence made of the rest of the arguments.
+         * 
+         * @param name The name of this sentence
+         * @return {@link Builder}
+         */
+        public Builder optionalSentence(@NotNull String name) {
+            return add(new Parameter(name, Type.SENTENCE, false, null, null, 0));
+        }
+
+        /**
+         * Declare an optional sentence made of the rest of the arguments, with a
+         * default value.
+         * 
+         * @param name     The name of this sentence
+         * @param fallback The value used if it is missing
+         * @return {@link Builder}
+         */
+        public Builder optionalSentence(@NotNull String name, @NotNull String fallback) {
+            return add(new Parameter(name, Type.SENTENCE, false, null, fallback, 0));
+        }
+
+        /**
+         * Offer completions for the parameter declared last.
+         * 
+         * @param suggestions The completions to offer
+         * @return {@link Builder}
+         * @throws IllegalStateException if no parameter has been declared
+         */
+        public Builder suggest(@NotNull CompletionIndex suggestions) {
+            if (parameters.isEmpty()) {
+                throw new IllegalStateException("No parameter to suggest completions for");
+            }
+            parameters.get(parameters.size() - 1).suggestions = suggestions;
+            return this;
+        }
+
+        /**
+         * Check and compile the declared parameters.
+         * 
+         * @return {@link ArgumentSchema}
+         * @throws IllegalStateException if two parameters share a name or flag, a
+         *                               required argument follows an optional one,
+         *                               or an argument follows a sentence taking
+         *                               the rest of the arguments
+         */
+        public ArgumentSchema build() {
+            List<String> names = new ArrayList<>();
+            List<String> flags = new ArrayList<>();
+            Parameter previous = null;
+            for (Parameter parameter : parameters) {
+                if (names.contains(parameter.name)) {
+                    throw new IllegalStateException("Argument " + parameter.name + " is declared twice");
+                }
+                names.add(parameter.name);
+
+                if (parameter.isFlag()) {
+                    if (parameter.flag.isEmpty()) {
+                        throw new IllegalStateException("Flag " + parameter.name + " is empty");
+                    }
+                    if (flags.contains(parameter.flag)) {
+                        throw new IllegalStateException("Flag " + parameter.flag + " is declared twice");
+                    }
+                    flags.add(parameter.flag);
+                    continue;
+                }
+                if (previous != null && previous.type == Type.SENTENCE && previous.length == 0) {
+                    throw new IllegalStateException(
+                            "Argument " + parameter.name + " follows " + previous.name + ", which takes the rest");
+                }
+                // Optional arguments take whatever comes next, so a required one after
+                // them could never be given on its own
+                if (previous != null && !previous.required && parameter.required) {
+                    throw new IllegalStateException(
+                            "Required argument " + parameter.name + " follows optional " + previous.name);
+                }
+                if (parameter.length < 0) {
+                    throw new IllegalStateException("Sentence " + parameter.name + " has a negative length");
+                }
+                previous = parameter;
+            }
+            return new ArgumentSchema(parameters);
+        }
+    }
+}
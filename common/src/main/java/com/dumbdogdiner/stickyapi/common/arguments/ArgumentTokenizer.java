@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2020-2021 DumbDogDiner <dumbdogdiner.com>. All rights reserved.
+ * Licensed under the MIT license, see LICENSE for more information...
+ */
+package com.dumbdogdiner.stickyapi.common.arguments;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Splits command input into arguments, keeping quoted strings together.
+ * <p>
+ * Arguments are separated by whitespace. A double or single quote at the start
+ * of an argument, or straight after an <code>=</code> as in
+ * <code>--reason="being rude"</code>, runs to the matching quote, and a
+ * backslash inside quotes escapes the next character. A quote that is never
+ * closed is kept as it is.
+ *
+ * @since 3.0
+ */
+public final class ArgumentTokenizer {
+    private ArgumentTokenizer() {
+    }
+
+    /**
+     * Re-split arguments that were split on spaces, such as those a server passes
+     * to a command, so that quoted strings become single arguments.
+     *
+     * @param args The arguments to tokenize
+     * @return {@link List} of arguments
+     */
+    public static List<String> tokenize(@NotNull List<String> args) {
+        return tokenize(String.join(" ", args));
+    }
+
+    /**
+     * Split a line of input into arguments.
+     *
+     * @param input The input to tokenize
+     * @return {@link List} of arguments
+     */
+    public static List<String> tokenize(@NotNull String input) {
+        List<String> tokens = new ArrayList<>();
+        StringBuilder token = new StringBuilder();
+        boolean inToken = false;
+        // Once a quote is found to be unclosed, no later one of the same kind closes
+        boolean unclosedDouble = false;
+        boolean unclosedSingle = false;
+
+        int length = input.length();
+        int i = 0;
+        while (i < length) {
+            char c = input.charAt(i);
+            if (Character.isWhitespace(c)) {
+                if (inToken) {
+                    tokens.add(token.toString());
+                    token.setLength(0);
+                    inToken = false;
+                }
+                i++;
+                continue;
+            }
+
+            boolean opensQuote = (c == '"' && !unclosedDouble) || (c == '\'' && !unclosedSingle);
+            // A token may be in progress but empty, after a quoted ""
+            if (opensQuote && (!inToken || (token.length() > 0 && token.charAt(token.length() - 1) == '='))) {
+                int end = read(input, i + 1, c, token);
+                if (end != -1) {
+                    inToken = true;
+                    i = end + 1;
+                    continue;
+                }
+
+                if (c == '"') {
+                    unclosedDouble = true;
+                } else {
+                    unclosedSingle = true;
+                }
+            }
+
+            token.append(c);
+            inToken = true;
+            i++;
+        }
+
+        if (inToken) {
+            tokens.add(token.toString());
+        }
+        return tokens;
+    }
+
+    /**
+     * Read a quoted string into the token, unescaping it.
+     *
+     * @return the index of the closing quote, or -1 if there is none, in which
+     *         case the token is left as it was
+     */
+    private static int read(String input, int start, char quote, StringBuilder token) {
+        int mark = token.length();
+        int length = input.length();
+        for (int i = start; i < length; i++) {
+            char c = input.charAt(i);
+            if (c == quote) {
+                return i;
+            }
+            if (c == '\\' && i + 1 < length) {
+                c = input.charAt(++i);
+            }
+            token.append(c);
+        }
+
+        token.setLength(mark);
+        return -1;
+    }
+}
@@ -10,6 +10,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Optional;
 
 import com.dumbdogdiner.stickyapi.common.util.Debugger;
 import com.dumbdogdiner.stickyapi.common.util.NumberUtil;
@@ -21,21 +22,65 @@ import org.jetbrains.annotations.Nullable;
 
 /**
  * Utility class for handling command arguments.
+ * <p>
+ * Arguments are read in place from the list they were constructed with. Flags
+ * and optional arguments mark their position as consumed in a bitmap rather
+ * than removing it, and required arguments move a cursor past themselves, so
+ * parsing never shifts or copies the arguments. Parsed values are stored once,
+ * with numbers, timestamps and durations kept as primitives so their getters do
+ * not parse them again.
+ * <p>
+ * A flag found before the arguments already read by required arguments is
+ * simply marked as consumed, and no longer causes the next argument to be
+ * skipped.
+ * <p>
+ * Flags are found through an index of the arguments built in a single scan the
+ * first time one is looked for, and match exactly. Flag values may also be given
+ * as <code>--key=value</code>. Arguments constructed with
+ * <code>expandFlags</code>, as {@link ArgumentSchema} does, also match grouped
+ * short flags such as <code>-sf</code> to <code>-s</code> and <code>-f</code>,
+ * and any flag to <code>--key=value</code>. Quoted strings are not handled here
+ * - see {@link ArgumentTokenizer}.
  */
 public class Arguments {
+    private static final Debugger debug = new Debugger(Arguments.class);
+
+    // The kinds of value a slot may hold
+    private static final byte STRING = 0;
+    private static final byte NUMBER = 1;
+    private static final byte TIMESTAMP = 2;
+    private static final byte DURATION = 3;
+
     @Getter
     private List<String> rawArgs;
 
-    @Getter
-    private ArrayList<String> unparsedArgs;
-    private HashMap<String, String> parsedArgs = new HashMap<>();
+    private final List<String> args;
+    private final int size;
+    // One bit per argument, set once an argument has been consumed out of order
+    private final long[] consumed;
+    // The index of the first argument not yet read by a required argument
+    private int cursor = 0;
+
+    // Whether grouped short flags and --key=value match plain flags
+    private final boolean expandFlags;
+    // The first position of each flag, built when the first flag is looked for
+    private HashMap<String, Integer> flags;
+    // The first position of each --key=value, by its key
+    private HashMap<String, Integer> options;
+    // Grouped short flags already matched, which may still match their other flags
+    private long[] grouped;
+
+    // Parsed arguments, by slot
+    private String[] names = new String[4];
+    private String[] values = new String[4];
+    private long[] numbers = new long[4];
+    private byte[] kinds = new byte[4];
+    private int slots = 0;
 
     @Getter
     private String invalidatedBy;
 
-    private int position = 0;
     private boolean valid = true;
-    private final Debugger debug = new Debugger(getClass());
 
     public void invalidate(@NotNull String name) {
         debug.print("Invalidated by argument " + name);
@@ -59,10 +104,44 @@ public class Arguments {
      * @since 2.0
      */
     public Arguments(@NotNull List<String> args) {
-        unparsedArgs = new ArrayList<String>(args);
+        this(args, false);
+    }
+
+    /**
+     * Construct a new argument class with the given input, optionally matching
+     * grouped short flags and <code>--key=value</code> to plain flags.
+     * <p>
+     * Expanded flags suit input known to use them. Without them, free text such
+     * as <code>-silly</code> is never read as the flags <code>-s</code>,
+     * <code>-i</code>, <code>-l</code> and <code>-y</code>.
+     * 
+     * @param args        Arguments to parse
+     * @param expandFlags Whether to expand grouped and <code>--key=value</code>
+     *                    flags
+     */
+    public Arguments(@NotNull List<String> args, boolean expandFlags) {
+        this.expandFlags = expandFlags;
+        this.args = args;
+        this.size = args.size();
+        this.consumed = new long[(size + 63) >>> 6];
         rawArgs = Collections.unmodifiableList(args);
     }
 
+    /**
+     * Get the arguments that have not been parsed yet.
+     * 
+     * @return {@link ArrayList} of the arguments, in order
+     */
+    public ArrayList<String> getUnparsedArgs() {
+        ArrayList<String> unparsed = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            if (!isConsumed(i)) {
+                unparsed.add(args.get(i));
+            }
+        }
+        return unparsed;
+    }
+
     /**
      * Create an optional flag.
      * 
@@ -82,17 +161,15 @@ public class Arguments {
      * @return {@link com.dumbdogdiner.stickyapi.common.arguments.Arguments}
      */
     public Arguments optionalFlag(@NotNull String name, @NotNull String flag) {
-        debug.print("Looking for optional flag " + name + "...");
-        int index = unparsedArgs.indexOf(flag);
+        int index = indexOf(flag);
         if (index == -1) {
-            debug.print("Could not find flag");
+            trace("Could not find optional flag", name, index);
             return this;
         }
 
-        debug.print("Found flag at position " + index + " - new args size = " + unparsedArgs.size());
-
-        parsedArgs.put(name, unparsedArgs.get(index));
-        unparsedArgs.remove(index);
+        trace("Found optional flag", name, index);
+        putString(name, args.get(index));
+        consumeFlag(index, flag);
 
         return this;
     }
@@ -105,32 +182,94 @@ public class Arguments {
      * @return {@link com.dumbdogdiner.stickyapi.common.arguments.Arguments}
      */
     public Arguments requiredFlag(@NotNull String name, @NotNull String flag) {
-        debug.print("Looking for required flag " + name + "...");
-        int index = unparsedArgs.indexOf(flag);
+        int index = indexOf(flag);
         if (index == -1) {
+            trace("Could not find required flag", name, index);
             invalidate(name);
-            debug.print("Could not find flag - marking as invalid");
             return this;
         }
 
-        debug.print("Found flag at position " + String.valueOf(index));
+        trace("Found required flag", name, index);
+        putString(name, args.get(index));
+        consumeFlag(index, flag);
 
-        parsedArgs.put(name, unparsedArgs.get(index));
-        unparsedArgs.remove(index);
+        return this;
+    }
 
+    /**
+     * Read the value of a flag, given either as <code>--key=value</code> or as
+     * the argument following the flag.
+     *
+     * @return true if the flag and its value were found
+     */
+    private boolean readFlagValue(String name, String flag) {
+        int index = indexOf(flag);
+        if (index == -1) {
+            index = available(options.get(flag));
+        }
+        if (index == -1) {
+            trace("Could not find flag", name, index);
+            return false;
+        }
+
+        String arg = args.get(index);
+        if (arg.length() > flag.length() && arg.charAt(flag.length()) == '=' && arg.startsWith(flag)) {
+            trace("Found flag with value", name, index);
+            putString(name, arg.substring(flag.length() + 1));
+            consumeFlag(index, flag);
+            return true;
+        }
+
+        int value = next(index + 1);
+        if (value >= size) {
+            trace("Could not find value of flag", name, index);
+            return false;
+        }
+
+        trace("Found flag followed by value", name, index);
+        putString(name, args.get(value));
+        consumeFlag(index, flag);
+        consume(value);
+        return true;
+    }
+
+    /**
+     * Create an optional flag taking a value, such as <code>-r "reason"</code> or
+     * <code>--reason=value</code>.
+     *
+     * @param name The name of this flag
+     * @param flag The flag to register
+     * @return {@link com.dumbdogdiner.stickyapi.common.arguments.Arguments}
+     */
+    public Arguments optionalFlagValue(@NotNull String name, @NotNull String flag) {
+        readFlagValue(name, flag);
+        return this;
+    }
+
+    /**
+     * Create a required flag taking a value, such as <code>-r "reason"</code> or
+     * <code>--reason=value</code>.
+     *
+     * @param name The name of this flag
+     * @param flag The flag to register
+     * @return {@link com.dumbdogdiner.stickyapi.common.arguments.Arguments}
+     */
+    public Arguments requiredFlagValue(@NotNull String name, @NotNull String flag) {
+        if (!readFlagValue(name, flag)) {
+            invalidate(name);
+        }
         return this;
     }
 
     private Arguments optionalStringImplementation(String name, String fallback) {
-        debug.print("Looking for optional string " + name + "...");
-        if (unparsedArgs.size() > position) {
-            parsedArgs.put(name, unparsedArgs.get(position));
-            unparsedArgs.remove(position);
-            debug.print("Found string at position " + String.valueOf(position) + " - new args size = "
-                    + String.valueOf(unparsedArgs.size()));
+        int index = next(cursor);
+        if (index < size) {
+            trace("Found optional string", name, index);
+            putString(name, args.get(index));
+            consume(index);
         } else {
-            debug.print("Could not find string, using default value of " + fallback);
-            parsedArgs.put(name, fallback);
+            trace("Could not find optional string, using default value", name, index);
+            putString(name, fallback);
         }
 
         return this;
@@ -165,14 +304,13 @@ public class Arguments {
      * @return {@link com.dumbdogdiner.stickyapi.common.arguments.Arguments}
      */
     public Arguments requiredString(String name) {
-        debug.print("Looking for required string " + name + "...");
-
-        if (unparsedArgs.size() > position) {
-            parsedArgs.put(name, unparsedArgs.get(position));
-            debug.print("Found string at position " + String.valueOf(position));
-            position++;
+        int index = next(cursor);
+        if (index < size) {
+            trace("Found required string", name, index);
+            putString(name, args.get(index));
+            cursor = index + 1;
         } else {
-            debug.print("Could not find string - marking as invalid");
+            trace("Could not find required string - marking as invalid", name, index);
             invalidate(name);
         }
 
@@ -180,33 +318,25 @@ public class Arguments {
     }
 
     private Arguments optionalSentenceImplementation(String name, String fallback, int length) {
-        int end = position + length;
-        debug.print("Looking for optional sentence - start = " + String.valueOf(position) + ", end = "
-                + String.valueOf(end) + ", length = " + String.valueOf(length));
-
-        if (position >= end) {
-            debug.print("Start cannot be greater than or equal to end, using default value of " + fallback);
-            parsedArgs.put(name, fallback);
+        if (length <= 0 || remaining() < length) {
+            trace("Could not find optional sentence, using default value", name, length);
+            putString(name, fallback);
             return this;
         }
 
-        if (unparsedArgs.size() < position + length) {
-            debug.print("Could not find sentence of appropriate length (args are size " + String.valueOf(position)
-                    + ") using default value of " + fallback);
-            parsedArgs.put(name, fallback);
-            return this;
-        }
-
-        String concatenated = String.join(" ",
-                Arrays.copyOfRange(unparsedArgs.toArray(new String[unparsedArgs.size()]), position, end));
-        parsedArgs.put(name, concatenated);
-
-        if (end > position) {
-            unparsedArgs.subList(position, end).clear();
+        StringBuilder sentence = new StringBuilder();
+        int index = cursor;
+        for (int word = 0; word < length; word++, index++) {
+            index = next(index);
+            if (word > 0) {
+                sentence.append(' ');
+            }
+            sentence.append(args.get(index));
+            consume(index);
         }
 
-        debug.print("Found sentence of length " + String.valueOf(length) + " - new args size = "
-                + String.valueOf(unparsedArgs.size()));
+        trace("Found optional sentence", name, length);
+        putString(name, sentence.toString());
 
         return this;
     }
@@ -219,8 +349,7 @@ public class Arguments {
      * @return {@link com.dumbdogdiner.stickyapi.common.arguments.Arguments}
      */
     public Arguments optionalSentence(@NotNull String name) {
-        debug.print("Using default length: " + String.valueOf(unparsedArgs.size() - position));
-        return optionalSentence(name, unparsedArgs.size() - position);
+        return optionalSentence(name, remaining());
     }
 
     /**
@@ -232,8 +361,7 @@ public class Arguments {
      * @return {@link com.dumbdogdiner.stickyapi.common.arguments.Arguments}
      */
     public Arguments optionalSentence(@NotNull String name, @Nullable String fallback) {
-        debug.print("Using default length: " + String.valueOf(unparsedArgs.size() - position));
-        return optionalSentence(name, fallback, unparsedArgs.size() - position);
+        return optionalSentence(name, fallback, remaining());
     }
 
     /**
@@ -273,8 +401,7 @@ public class Arguments {
      * @return {@link com.dumbdogdiner.stickyapi.common.arguments.Arguments}
      */
     public Arguments requiredSentence(@NotNull String name) {
-        debug.print("Using default length: " + String.valueOf(unparsedArgs.size() - position));
-        return requiredSentence(name, unparsedArgs.size() - position);
+        return requiredSentence(name, remaining());
     }
 
     /**
@@ -285,31 +412,26 @@ public class Arguments {
      * @return {@link com.dumbdogdiner.stickyapi.common.arguments.Arguments}
      */
     public Arguments requiredSentence(@NotNull String name, @NotNull int length) {
-        int end = position + length;
-        debug.print("Looking for required sentence - start = " + String.valueOf(position) + ", end = "
-                + String.valueOf(end) + ", length = " + String.valueOf(length));
-
         // Usually means there aren't enough args left
-        if (position >= end) {
-            debug.print("Start cannot be greater than or equal to end");
+        if (length <= 0 || remaining() < length) {
+            trace("Could not find required sentence - marking as invalid", name, length);
             invalidate(name);
             return this;
         }
 
-        if (unparsedArgs.size() < position + length) {
-            invalidate(name);
-            debug.print("Could not find sentence of appropriate length (args are size "
-                    + String.valueOf(unparsedArgs.size()) + ") - marking as invalid");
-            return this;
+        StringBuilder sentence = new StringBuilder();
+        int index = cursor;
+        for (int word = 0; word < length; word++, index++) {
+            index = next(index);
+            if (word > 0) {
+                sentence.append(' ');
+            }
+            sentence.append(args.get(index));
         }
+        cursor = index;
 
-        String concatenated = String.join(" ",
-                Arrays.copyOfRange(unparsedArgs.toArray(new String[unparsedArgs.size()]), position, end));
-        parsedArgs.put(name, concatenated);
-
-        position += length;
-
-        debug.print("Found sentence of length " + String.valueOf(length));
+        trace("Found required sentence", name, length);
+        putString(name, sentence.toString());
 
         return this;
     }
@@ -321,14 +443,15 @@ public class Arguments {
      * @return {@link com.dumbdogdiner.stickyapi.common.arguments.Arguments}
      */
     public Arguments optionalTimeString(@NotNull String name) {
-        debug.print("Looking for optional timestamp " + name + "...");
-        if (unparsedArgs.size() > position && TimeUtil.toTimestamp(unparsedArgs.get(position)) != null) {
-            parsedArgs.put(name, String.valueOf(TimeUtil.toTimestamp(unparsedArgs.get(position)).getTime()));
-            unparsedArgs.remove(position);
-            debug.print("Found timestamp at position " + String.valueOf(position) + " - new args size = "
-                    + String.valueOf(unparsedArgs.size()));
-        } else
-            debug.print("Could not find timestamp");
+        int index = next(cursor);
+        Timestamp timestamp = index < size ? TimeUtil.toTimestamp(args.get(index)) : null;
+        if (timestamp != null) {
+            trace("Found optional timestamp", name, index);
+            putNumber(name, TIMESTAMP, null, timestamp.getTime());
+            consume(index);
+        } else {
+            trace("Could not find optional timestamp", name, index);
+        }
 
         return this;
     }
@@ -340,30 +463,47 @@ public class Arguments {
      * @return {@link com.dumbdogdiner.stickyapi.common.arguments.Arguments}
      */
     public Arguments requiredTimeString(@NotNull String name) {
-        debug.print("Looking for required timestamp " + name + "...");
-        if (unparsedArgs.size() > position && TimeUtil.toTimestamp(unparsedArgs.get(position)) != null) {
-            parsedArgs.put(name, String.valueOf(TimeUtil.toTimestamp(unparsedArgs.get(position)).getTime()));
-            position++;
-            debug.print("Found timestamp at position " + String.valueOf(position) + " - new args size = "
-                    + String.valueOf(unparsedArgs.size()));
+        int index = next(cursor);
+        Timestamp timestamp = index < size ? TimeUtil.toTimestamp(args.get(index)) : null;
+        if (timestamp != null) {
+            trace("Found required timestamp", name, index);
+            putNumber(name, TIMESTAMP, null, timestamp.getTime());
+            cursor = index + 1;
         } else {
-            debug.print("Could not find timestamp");
+            trace("Could not find required timestamp - marking as invalid", name, index);
             invalidate(name);
         }
 
         return this;
     }
 
-    private Arguments optionalIntImplementation(@NotNull String name, @NotNull Integer fallback) {
-        debug.print("Looking for optional integer " + name + "...");
-        if (unparsedArgs.size() > position && NumberUtil.isNumeric(unparsedArgs.get(position))) {
-            parsedArgs.put(name, unparsedArgs.get(position));
-            position++;
-            debug.print("Found int at position " + String.valueOf(position) + " - new args size = "
-                    + String.valueOf(unparsedArgs.size()));
-        } else {
-            debug.print("Could not find int, using default value of " + fallback);
-            parsedArgs.put(name, fallback.toString());
+    /**
+     * Read an integer at the cursor, moving past it if found.
+     * 
+     * @return true if an integer was found
+     */
+    private boolean readInt(String name) {
+        int index = next(cursor);
+        if (index >= size || !NumberUtil.isNumeric(args.get(index))) {
+            trace("Could not find integer", name, index);
+            return false;
+        }
+
+        trace("Found integer", name, index);
+        String value = args.get(index);
+        try {
+            putNumber(name, NUMBER, value, Long.parseLong(value));
+        } catch (NumberFormatException e) {
+            // Empty, or too long to be a number - keep it as it was given
+            putString(name, value);
+        }
+        cursor = index + 1;
+        return true;
+    }
+
+    private Arguments optionalIntImplementation(@NotNull String name, @Nullable Integer fallback) {
+        if (!readInt(name) && fallback != null) {
+            putNumber(name, NUMBER, null, fallback);
         }
 
         return this;
@@ -403,15 +543,7 @@ public class Arguments {
      * @return {@link com.dumbdogdiner.stickyapi.common.arguments.Arguments}
      */
     public Arguments requiredInt(@NotNull String name) {
-        debug.print("Looking for optional required " + name + "...");
-
-        if (unparsedArgs.size() > position && NumberUtil.isNumeric(unparsedArgs.get(position))) {
-            parsedArgs.put(name, unparsedArgs.get(position));
-            position++;
-            debug.print("Found int at position " + String.valueOf(position) + " - new args size = "
-                    + String.valueOf(unparsedArgs.size()));
-        } else {
-            debug.print("Could not find int - marking as invalid");
+        if (!readInt(name)) {
             invalidate(name);
         }
 
@@ -425,15 +557,15 @@ public class Arguments {
      * @return {@link com.dumbdogdiner.stickyapi.common.arguments.Arguments}
      */
     public Arguments optionalDuration(@NotNull String name) {
-        debug.print("Looking for optional duration " + name + "...");
-
-        if (unparsedArgs.size() > position && TimeUtil.duration(unparsedArgs.get(position)).isPresent()) {
-            parsedArgs.put(name, unparsedArgs.get(position));
-            unparsedArgs.remove(position);
-            debug.print("Found duration at position " + String.valueOf(position) + " - new args size = "
-                    + String.valueOf(unparsedArgs.size()));
-        } else
-            debug.print("Could not find duration");
+        int index = next(cursor);
+        Optional<Long> duration = index < size ? TimeUtil.duration(args.get(index)) : Optional.empty();
+        if (duration.isPresent()) {
+            trace("Found optional duration", name, index);
+            putNumber(name, DURATION, args.get(index), duration.get());
+            consume(index);
+        } else {
+            trace("Could not find optional duration", name, index);
+        }
 
         return this;
     }
@@ -445,15 +577,14 @@ public class Arguments {
      * @return {@link com.dumbdogdiner.stickyapi.common.arguments.Arguments}
      */
     public Arguments requiredDuration(@NotNull String name) {
-        debug.print("Looking for required duration " + name + "...");
-
-        if (unparsedArgs.size() > position && TimeUtil.duration(unparsedArgs.get(position)).isPresent()) {
-            parsedArgs.put(name, unparsedArgs.get(position));
-            position++;
-            debug.print("Found duration at position " + String.valueOf(position) + " - new args size = "
-                    + String.valueOf(unparsedArgs.size()));
+        int index = next(cursor);
+        Optional<Long> duration = index < size ? TimeUtil.duration(args.get(index)) : Optional.empty();
+        if (duration.isPresent()) {
+            trace("Found required duration", name, index);
+            putNumber(name, DURATION, args.get(index), duration.get());
+            cursor = index + 1;
         } else {
-            debug.print("Could not find duration - marking as invalid");
+            trace("Could not find required duration - marking as invalid", name, index);
             invalidate(name);
         }
 
@@ -470,7 +601,15 @@ public class Arguments {
      * @since 2.0
      */
     public String getString(@NotNull String name) {
-        return parsedArgs.get(name);
+        int slot = slot(name);
+        if (slot == -1) {
+            return null;
+        }
+        if (values[slot] == null && kinds[slot] != STRING) {
+            // Numbers that were not given as text, such as fallbacks and timestamps
+            values[slot] = String.valueOf(numbers[slot]);
+        }
+        return values[slot];
     }
 
     /**
@@ -496,10 +635,14 @@ public class Arguments {
      * @return {@link java.sql.Timestamp}
      */
     public Timestamp getTimestamp(@NotNull String name) {
-        if (parsedArgs.get(name) == null) {
+        int slot = slot(name);
+        if (slot == -1) {
             return null;
         }
-        return new Timestamp(Long.parseLong(parsedArgs.get(name)));
+        if (kinds[slot] == TIMESTAMP || kinds[slot] == NUMBER) {
+            return new Timestamp(numbers[slot]);
+        }
+        return values[slot] == null ? null : new Timestamp(Long.parseLong(values[slot]));
     }
 
     /**
@@ -511,8 +654,13 @@ public class Arguments {
      * @return {@link java.lang.Integer}
      */
     public Integer getInt(@NotNull String name) {
+        int slot = slot(name);
+        if (slot != -1 && (kinds[slot] == NUMBER || kinds[slot] == TIMESTAMP)) {
+            long number = numbers[slot];
+            return number == (int) number ? Integer.valueOf((int) number) : null;
+        }
         try {
-            return Integer.parseInt(parsedArgs.get(name));
+            return Integer.parseInt(getString(name));
         } catch (NumberFormatException e) {
             return null;
         }
@@ -527,8 +675,16 @@ public class Arguments {
      * @return {@link java.lang.Double}
      */
     public Double getDouble(@NotNull String name) {
+        int slot = slot(name);
+        if (slot != -1 && (kinds[slot] == NUMBER || kinds[slot] == TIMESTAMP)) {
+            return (double) numbers[slot];
+        }
+        String value = getString(name);
+        if (value == null) {
+            return null;
+        }
         try {
-            return Double.parseDouble(parsedArgs.get(name));
+            return Double.parseDouble(value);
         } catch (NumberFormatException e) {
             return null;
         }
@@ -543,8 +699,12 @@ public class Arguments {
      * @return {@link java.lang.Long}
      */
     public Long getLong(@NotNull String name) {
+        int slot = slot(name);
+        if (slot != -1 && (kinds[slot] == NUMBER || kinds[slot] == TIMESTAMP)) {
+            return numbers[slot];
+        }
         try {
-            return Long.parseLong(parsedArgs.get(name));
+            return Long.parseLong(getString(name));
         } catch (NumberFormatException e) {
             return null;
         }
@@ -559,7 +719,8 @@ public class Arguments {
      * @return {@link java.lang.Boolean}
      */
     public Boolean exists(@NotNull String name) {
-        return parsedArgs.get(name) != null;
+        int slot = slot(name);
+        return slot != -1 && (values[slot] != null || kinds[slot] != STRING);
     }
 
     /**
@@ -583,7 +744,7 @@ public class Arguments {
      * @return {@link java.lang.Boolean}
      */
     public Boolean getBoolean(@NotNull String name) {
-        return Boolean.valueOf(parsedArgs.get(name));
+        return Boolean.valueOf(getString(name));
     }
 
     /**
@@ -595,7 +756,172 @@ public class Arguments {
      * @return {@link java.lang.Long}
      */
     public Long getDuration(@NotNull String name) {
-        return TimeUtil.duration(parsedArgs.get(name)).isPresent() ? TimeUtil.duration(parsedArgs.get(name)).get()
-                : null;
+        int slot = slot(name);
+        if (slot != -1 && kinds[slot] == DURATION) {
+            return numbers[slot];
+        }
+        String value = getString(name);
+        return value == null ? null : TimeUtil.duration(value).orElse(null);
+    }
+
+    private boolean isConsumed(int index) {
+        return (consumed[index >>> 6] & (1L << index)) != 0;
+    }
+
+    private void consume(int index) {
+        consumed[index >>> 6] |= 1L << index;
+    }
+
+    /**
+     * Find the first argument at or after the given index that has not been
+     * consumed.
+     * 
+     * @return its index, or the number of arguments if there is none
+     */
+    private int next(int index) {
+        while (index < size && isConsumed(index)) {
+            index++;
+        }
+        return index;
+    }
+
+    /**
+     * @return The number of arguments left to read from the cursor onwards
+     */
+    private int remaining() {
+        int remaining = 0;
+        for (int i = next(cursor); i < size; i = next(i + 1)) {
+            remaining++;
+        }
+        return remaining;
+    }
+
+    /**
+     * Find where a flag was given.
+     *
+     * @return its index, or -1 if it was not given or has been consumed
+     */
+    private int indexOf(String flag) {
+        if (flags == null) {
+            indexFlags();
+        }
+
+        Integer index = flags.get(flag);
+        if (index == null) {
+            return -1;
+        }
+        if (available(index) != -1) {
+            return index;
+        }
+
+        // The first match was read as another argument, so look for a later one
+        for (int i = index + 1; i < size; i++) {
+            if (!isConsumed(i) && flag.equals(args.get(i))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int available(Integer index) {
+        if (index == null || (isConsumed(index) && (grouped[index >>> 6] & (1L << index)) == 0)) {
+            return -1;
+        }
+        return index;
+    }
+
+    private void indexFlags() {
+        flags = new HashMap<>();
+        options = new HashMap<>();
+        grouped = new long[consumed.length];
+        for (int i = 0; i < size; i++) {
+            if (isConsumed(i)) {
+                continue;
+            }
+
+            String arg = args.get(i);
+            flags.putIfAbsent(arg, i);
+            if (arg.length() < 2 || arg.charAt(0) != '-') {
+                continue;
+            }
+
+            if (arg.charAt(1) == '-') {
+                int equals = arg.indexOf('=');
+                if (equals > 2) {
+                    options.putIfAbsent(arg.substring(0, equals), i);
+                    if (expandFlags) {
+                        flags.putIfAbsent(arg.substring(0, equals), i);
+                    }
+                }
+            } else if (expandFlags && arg.length() > 2 && isLetters(arg)) {
+                for (int j = 1; j < arg.length(); j++) {
+                    flags.putIfAbsent("-" + arg.charAt(j), i);
+                }
+            }
+        }
+    }
+
+    private static boolean isLetters(String arg) {
+        for (int i = 1; i < arg.length(); i++) {
+            if (!Character.isLetter(arg.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Consume a flag, leaving grouped short flags available to the others in
+     * their group.
+     */
+    private void consumeFlag(int index, String flag) {
+        consume(index);
+        String arg = args.get(index);
+        if (!arg.equals(flag) && arg.charAt(1) != '-') {
+            grouped[index >>> 6] |= 1L << index;
+        }
+    }
+
+    private int slot(String name) {
+        for (int i = 0; i < slots; i++) {
+            if (names[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int slotFor(String name) {
+        int slot = slot(name);
+        if (slot != -1) {
+            return slot;
+        }
+
+        if (slots == names.length) {
+            int capacity = slots * 2;
+            names = Arrays.copyOf(names, capacity);
+            values = Arrays.copyOf(values, capacity);
+            numbers = Arrays.copyOf(numbers, capacity);
+            kinds = Arrays.copyOf(kinds, capacity);
+        }
+        names[slots] = name;
+        return slots++;
+    }
+
+    private void putString(String name, String value) {
+        putNumber(name, STRING, value, 0L);
+    }
+
+    private void putNumber(String name, byte kind, String value, long number) {
+        int slot = slotFor(name);
+        kinds[slot] = kind;
+        values[slot] = value;
+        numbers[slot] = number;
+    }
+
+    private void trace(String message, String name, int index) {
+        if (Debugger.isEnabled()) {
+            debug.print(message + " " + name + " (" + index + ")");
+        }
     }
 }
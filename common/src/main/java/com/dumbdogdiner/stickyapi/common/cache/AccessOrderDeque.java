@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2020-2021 DumbDogDiner <dumbdogdiner.com>. All rights reserved.
+ * Licensed under the MIT license, see LICENSE for more information...
+ */
+package com.dumbdogdiner.stickyapi.common.cache;
+
+/**
+ * A doubly-linked list threaded through the cache entries themselves, so that
+ * appending, unlinking and reordering an entry are all O(1) and allocation
+ * free.
+ * <p>
+ * Not thread-safe - callers must hold the owning cache's eviction lock.
+ */
+final class AccessOrderDeque<T extends Cacheable> {
+    private CacheEntry<T> head;
+    private CacheEntry<T> tail;
+    private int size = 0;
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    CacheEntry<T> peekFirst() {
+        return head;
+    }
+
+    CacheEntry<T> peekLast() {
+        return tail;
+    }
+
+    void addLast(CacheEntry<T> entry) {
+        entry.queue = this;
+        entry.previous = tail;
+        entry.next = null;
+        if (tail == null) {
+            head = entry;
+        } else {
+            tail.next = entry;
+        }
+        tail = entry;
+        size++;
+    }
+
+    CacheEntry<T> pollFirst() {
+        CacheEntry<T> entry = head;
+        if (entry != null) {
+            remove(entry);
+        }
+        return entry;
+    }
+
+    void remove(CacheEntry<T> entry) {
+        if (entry.previous == null) {
+            head = entry.next;
+        } else {
+            entry.previous.next = entry.next;
+        }
+
+        if (entry.next == null) {
+            tail = entry.previous;
+        } else {
+            entry.next.previous = entry.previous;
+        }
+
+        entry.queue = null;
+        entry.previous = null;
+        entry.next = null;
+        size--;
+    }
+
+    void moveToBack(CacheEntry<T> entry) {
+        if (entry != tail) {
+            remove(entry);
+            addLast(entry);
+        }
+    }
+}
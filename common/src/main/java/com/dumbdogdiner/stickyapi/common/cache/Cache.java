@@ -4,11 +4,20 @@
  */
 package com.dumbdogdiner.stickyapi.common.cache;
 
+import java.util.AbstractCollection;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Callable;
 import java.util.concurrent.FutureTask;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.logging.Level;
 
+import com.dumbdogdiner.stickyapi.StickyAPI;
 import com.dumbdogdiner.stickyapi.common.util.Debugger;
 
 import org.jetbrains.annotations.NotNull;
@@ -18,8 +27,24 @@ import lombok.Setter;
 
 /**
  * General purpose cache for caching things that should be cached.
+ * <p>
+ * When <code>maxSize</code> is set, the cache evicts entries according to its
+ * {@link EvictionPolicy} in constant time. <code>maxWeight</code> bounds the
+ * total weight of the entries instead, as measured by a {@link Weigher}.
+ * <p>
+ * Entries older than <code>ttl</code> are expired automatically - lazily when
+ * they are read, and in the background by a timer shared between all caches.
+ * <p>
+ * Objects can also be looked up by attributes other than their key by
+ * registering a secondary index with {@link #index(String, Function)}.
+ * <p>
+ * With a {@link MappedFileTier} attached, entries evicted for size are kept on
+ * disk instead of being dropped, and survive restarts.
+ * <p>
+ * Hits, misses, evictions and more are counted without locking - see
+ * {@link #stats()} and {@link CacheRegistry}.
  */
-public class Cache<T extends Cacheable> {
+public class Cache<T extends Cacheable> implements ManagedCache {
     public interface Predicate<T extends Cacheable> {
         /**
          * Matching function that should evaluate to true if a given object matches any
@@ -31,22 +56,75 @@ public class Cache<T extends Cacheable> {
         boolean match(T object);
     }
 
-    private ConcurrentHashMap<String, T> objects = new ConcurrentHashMap<String, T>();
-    private ConcurrentHashMap<String, Long> objectInsertionTimestamps = new ConcurrentHashMap<String, Long>();
+    private ConcurrentHashMap<String, CacheEntry<T>> objects = new ConcurrentHashMap<>();
 
+    /**
+     * Guards the eviction queues and the frequency sketch. Reads only ever try to
+     * take it, so a contended cache falls back to approximate ordering rather
+     * than blocking on every get.
+     */
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    // FIFO and LRU keep everything in the window, W-TinyLFU uses it as the
+    // admission window in front of the probation and protected segments.
+    private final AccessOrderDeque<T> window = new AccessOrderDeque<>();
+    private final AccessOrderDeque<T> probation = new AccessOrderDeque<>();
+    private final AccessOrderDeque<T> protectedSegment = new AccessOrderDeque<>();
+    private final FrequencySketch sketch = new FrequencySketch();
+    private final WriteOrderDeque<T> writeOrder = new WriteOrderDeque<>();
+    private final Map<String, SecondaryIndex<T>> indexes = new ConcurrentHashMap<>();
+    final StatsCounter statsCounter = new StatsCounter();
+
+    /**
+     * The name this cache is listed under in {@link CacheRegistry#stats()}.
+     * Defaults to the simple name of the cached class.
+     */
     @Getter
     @Setter
+    private String name;
+
+    @Getter
     private Long ttl = (long) (30 * 60e3);
 
-    // private int memoryUsage = 0;
-    // @Getter @Setter
-    // private int maxMemoryUsage = 0;
+    @Getter
+    private int maxSize = 0;
 
+    /**
+     * The maximum total weight of the entries in this cache, or 0 if unbounded.
+     */
+    @Getter
+    private long maxWeight = 0;
+
+    /**
+     * Weighs entries when <code>maxWeight</code> is set. Defaults to
+     * {@link Weigher#memory()}.
+     */
+    @Getter
+    private Weigher<? super T> weigher = Weigher.memory();
+
+    /**
+     * Where entries evicted for size are spilled to, if anywhere. Misses are
+     * looked up here before giving up.
+     */
     @Getter
     @Setter
-    private int maxSize = 0;
+    private MappedFileTier<T> secondTier;
 
+    /**
+     * The total weight of the linked entries. Guarded by the eviction lock.
+     */
+    private long totalWeight = 0;
+
+    @Getter
+    private EvictionPolicy evictionPolicy = EvictionPolicy.FIFO;
+
+    /**
+     * A one-shot task that expires entries when run.
+     * 
+     * @deprecated Expiry now runs automatically, see {@link #cleanUp()}
+     */
     @Getter
+    @Deprecated
     private FutureTask<?> objectExpiryTask = new FutureTask<>(new Callable<Boolean>() {
         @Override
         public Boolean call() {
@@ -54,12 +132,7 @@ public class Cache<T extends Cacheable> {
                 return false;
             }
 
-            objectInsertionTimestamps.forEach((k, v) -> {
-                if (v + ttl < System.currentTimeMillis()) {
-                    debug.print("Evicting " + k + " from " + clazz.getSimpleName() + " cache");
-                    removeKey(k);
-                }
-            });
+            cleanUp();
             return true;
         }
     });
@@ -68,6 +141,8 @@ public class Cache<T extends Cacheable> {
 
     public Cache(Class<T> clazz) {
         this.clazz = clazz;
+        this.name = clazz.getSimpleName();
+        CacheMaintenance.register(this);
     }
 
     private Debugger debug = new Debugger(getClass());
@@ -81,23 +156,181 @@ public class Cache<T extends Cacheable> {
         return objects.size();
     }
 
-    // /**
-    // * Get the memory usage of this cache, specifying the units of the returned
-    // value.
-    // * @param units The units the result
-    // * @return Approximate memory usage
-    // */
-    // public Double memoryUsage(MemoryUtil.Unit units) {
-    // return MemoryUtil.formatBits(memoryUsage, units);
-    // }
+    /**
+     * Take a snapshot of this cache's statistics.
+     * 
+     * @return {@link CacheStats}
+     */
+    @Override
+    public CacheStats stats() {
+        return statsCounter.snapshot(size());
+    }
+
+    /**
+     * Set the maximum number of entries this cache may hold. Entries over the new
+     * limit are evicted straight away.
+     * 
+     * @param maxSize The maximum size, or 0 for an unbounded cache
+     */
+    public void setMaxSize(int maxSize) {
+        evictionLock.lock();
+        try {
+            this.maxSize = maxSize;
+            if (evictionPolicy == EvictionPolicy.TINY_LFU) {
+                sketch.ensureCapacity(maxSize);
+            }
+            evictEntries();
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Set the time to live of entries in this cache. Applies to entries already in
+     * the cache as well.
+     * 
+     * @param ttl The time to live in milliseconds, or 0 to never expire entries
+     */
+    public void setTtl(@NotNull Long ttl) {
+        evictionLock.lock();
+        try {
+            this.ttl = ttl;
+            for (CacheEntry<T> entry = writeOrder.peekFirst(); entry != null; entry = entry.writeNext) {
+                entry.expirationTime = expirationTime(entry.insertionTime);
+            }
+            expireEntries(System.currentTimeMillis());
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Remove all expired entries from the cache. This is called periodically for
+     * every cache, so there is usually no need to call it yourself.
+     * <p>
+     * Only looks at the entries that have actually expired. If the second tier is
+     * mostly dead records, it is also compacted in the background.
+     */
+    @Override
+    public void cleanUp() {
+        evictionLock.lock();
+        try {
+            expireEntries(System.currentTimeMillis());
+        } finally {
+            evictionLock.unlock();
+        }
+
+        MappedFileTier<T> tier = secondTier;
+        if (tier != null) {
+            tier.compactInBackground();
+        }
+    }
+
+    /**
+     * Write every entry held in memory to the second tier and flush it to disk, so
+     * that the whole cache can be restored after a restart. Usually called when
+     * the plugin is disabled.
+     */
+    public void persist() {
+        MappedFileTier<T> tier = secondTier;
+        if (tier == null) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        for (CacheEntry<T> entry : objects.values()) {
+            if (!entry.retired && !entry.isExpired(now)) {
+                tier.write(entry.value, entry.insertionTime);
+            }
+        }
+        tier.flush();
+    }
+
+    /**
+     * Set the policy used to pick entries for eviction. Existing entries keep
+     * their relative order.
+     * 
+     * @param evictionPolicy The new policy
+     */
+    public void setEvictionPolicy(@NotNull EvictionPolicy evictionPolicy) {
+        evictionLock.lock();
+        try {
+            List<CacheEntry<T>> ordered = new ArrayList<>(linkedSize());
+            drainTo(probation, ordered);
+            drainTo(protectedSegment, ordered);
+            drainTo(window, ordered);
+
+            this.evictionPolicy = evictionPolicy;
+            if (evictionPolicy == EvictionPolicy.TINY_LFU) {
+                sketch.ensureCapacity(maxSize);
+            }
+
+            for (CacheEntry<T> entry : ordered) {
+                admit(entry);
+            }
+            evictEntries();
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Set the maximum total weight of the entries in this cache. Entries over the
+     * new limit are evicted straight away.
+     * <p>
+     * Bounding by weight works with every {@link EvictionPolicy}, but W-TinyLFU
+     * sizes its segments by <code>maxSize</code>, so without one it behaves like
+     * LRU.
+     * 
+     * @param maxWeight The maximum total weight, or 0 for no limit
+     */
+    public void setMaxWeight(long maxWeight) {
+        evictionLock.lock();
+        try {
+            boolean reweigh = this.maxWeight <= 0 && maxWeight > 0;
+            this.maxWeight = maxWeight;
+            if (reweigh) {
+                reweighEntries();
+            }
+            evictEntries();
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Set the weigher used to weigh entries. Entries already in the cache are
+     * weighed again.
+     * 
+     * @param weigher The new weigher
+     */
+    public void setWeigher(@NotNull Weigher<? super T> weigher) {
+        evictionLock.lock();
+        try {
+            this.weigher = weigher;
+            if (maxWeight > 0) {
+                reweighEntries();
+            }
+            evictEntries();
+        } finally {
+            evictionLock.unlock();
+        }
+    }
 
-    // /**
-    // * Get the approximate memory usage of this cache in kilobytes.
-    // * @return Approximate memory usage
-    // */
-    // public Double memoryUsage() {
-    // return memoryUsage(MemoryUtil.Unit.KILOBYTES);
-    // }
+    /**
+     * Return the total weight of the entries in this cache. Always 0 while
+     * <code>maxWeight</code> is not set.
+     * 
+     * @return {@link Long}
+     */
+    public long getTotalWeight() {
+        evictionLock.lock();
+        try {
+            return totalWeight;
+        } finally {
+            evictionLock.unlock();
+        }
+    }
 
     /**
      * Retrieve an object from the cache.
@@ -106,13 +339,37 @@ public class Cache<T extends Cacheable> {
      * @return The requested object, if it exists
      */
     public T get(@NotNull String key) {
-        debug.reset();
-        T object = objects.get(key);
+        CacheEntry<T> entry = getEntry(key);
+        return entry == null ? null : entry.value;
+    }
 
-        if (object != null)
-            debug.print("Got cached entry for " + clazz.getSimpleName() + " with key " + key);
+    /**
+     * Look up the live entry for a key, recording the access.
+     */
+    CacheEntry<T> getEntry(String key) {
+        // Debug output is guarded everywhere, so that a cache hit allocates nothing
+        // while debugging is off
+        if (Debugger.isEnabled()) {
+            debug.reset();
+        }
+        CacheEntry<T> entry = objects.get(key);
+        MappedFileTier<T> tier = secondTier;
+        if (entry == null && tier != null) {
+            entry = promote(tier, key);
+        }
 
-        return object;
+        if (entry == null || expireIfNeeded(entry)) {
+            statsCounter.recordMiss();
+            recordMiss(key);
+            return null;
+        }
+
+        statsCounter.recordHit();
+        recordAccess(entry);
+        if (Debugger.isEnabled()) {
+            debug.print("Got cached entry for " + clazz.getSimpleName() + " with key " + key);
+        }
+        return entry;
     }
 
     /**
@@ -121,7 +378,28 @@ public class Cache<T extends Cacheable> {
      * @return All values in the cache
      */
     public Collection<T> getAll() {
-        return objects.values();
+        return new AbstractCollection<T>() {
+            @Override
+            public Iterator<T> iterator() {
+                Iterator<CacheEntry<T>> entries = objects.values().iterator();
+                return new Iterator<T>() {
+                    @Override
+                    public boolean hasNext() {
+                        return entries.hasNext();
+                    }
+
+                    @Override
+                    public T next() {
+                        return entries.next().value;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return objects.size();
+            }
+        };
     }
 
     /**
@@ -132,61 +410,117 @@ public class Cache<T extends Cacheable> {
      * @return The first object that evaluates the tester to true, if there is one
      */
     public T find(@NotNull Predicate<T> tester) {
-        debug.reset();
-        for (T object : objects.values()) {
-            if (tester.match(object)) {
-                debug.print("Found cached entry for " + clazz.getSimpleName() + " with key " + object.getKey());
-                return object;
+        if (Debugger.isEnabled()) {
+            debug.reset();
+        }
+        int scanned = 0;
+        for (CacheEntry<T> entry : objects.values()) {
+            if (expireIfNeeded(entry)) {
+                continue;
+            }
+            scanned++;
+            if (tester.match(entry.value)) {
+                statsCounter.recordFind(scanned);
+                if (Debugger.isEnabled()) {
+                    debug.print("Found cached entry for " + clazz.getSimpleName() + " with key " + entry.key);
+                }
+                return entry.value;
+            }
+        }
+        statsCounter.recordFind(scanned);
+        if (Debugger.isEnabled()) {
+            debug.print("Failed to find " + clazz.getSimpleName() + " using parsed matcher");
+        }
+        return null;
+    }
+
+    /**
+     * Register a secondary index, allowing objects to be looked up by the value
+     * the extractor returns for them using {@link #findBy(String, Object)}.
+     * Objects already in the cache are indexed straight away.
+     * <p>
+     * The extracted value must not change while an object is cached - store a new
+     * object with {@link #update(Cacheable)} instead.
+     * 
+     * @param name      The name of the index
+     * @param extractor Returns the indexed value for an object, or null to leave
+     *                  it out of the index
+     */
+    public void index(@NotNull String name, @NotNull Function<? super T, ?> extractor) {
+        SecondaryIndex<T> index = new SecondaryIndex<>(extractor);
+        if (indexes.putIfAbsent(name, index) != null) {
+            throw new IllegalArgumentException("Index " + name + " is already registered");
+        }
+
+        for (CacheEntry<T> entry : objects.values()) {
+            index.add(entry);
+        }
+    }
+
+    /**
+     * Find an object using a secondary index.
+     * 
+     * @param name  The name of the index
+     * @param value The indexed value to look for
+     * @return An object with the given value, if there is one
+     */
+    public T findBy(@NotNull String name, @NotNull Object value) {
+        for (CacheEntry<T> entry : getIndex(name).get(value)) {
+            if (entry.retired || expireIfNeeded(entry)) {
+                continue;
             }
+            recordAccess(entry);
+            return entry.value;
         }
-        debug.print("Failed to find " + clazz.getSimpleName() + " using parsed matcher");
         return null;
     }
 
+    /**
+     * Find all objects with the given value using a secondary index.
+     * 
+     * @param name  The name of the index
+     * @param value The indexed value to look for
+     * @return All objects with the given value
+     */
+    public List<T> findAllBy(@NotNull String name, @NotNull Object value) {
+        List<T> found = new ArrayList<>();
+        for (CacheEntry<T> entry : getIndex(name).get(value)) {
+            if (entry.retired || expireIfNeeded(entry)) {
+                continue;
+            }
+            recordAccess(entry);
+            found.add(entry.value);
+        }
+        return found;
+    }
+
     /**
      * Store an object in the cache.
      * 
      * @param object The object to store
      */
     public void put(@NotNull T object) {
-        debug.reset();
-
-        if (objects.containsKey(object.getKey())) {
-            debug.print(
-                    "Skipping insertion for " + clazz.getSimpleName() + " " + object.getKey() + " - already exists.");
-            return;
+        if (Debugger.isEnabled()) {
+            debug.reset();
         }
 
-        if (maxSize > 0) {
-            while (objects.size() >= maxSize) {
-                removeOldestEntry();
+        long now = System.currentTimeMillis();
+        CacheEntry<T> entry = new CacheEntry<>(object.getKey(), object, now, expirationTime(now));
+        entry.weight = weigh(object);
+        if (!insert(entry, now)) {
+            if (Debugger.isEnabled()) {
+                debug.print("Skipping insertion for " + clazz.getSimpleName() + " " + object.getKey()
+                        + " - already exists.");
             }
+            return;
         }
+        statsCounter.recordPut();
+        // Don't let an older spilled copy come back once this one is gone
+        removeFromSecondTier(entry.key);
 
-        // This causes a StackOverflow, no big deal just remove this feature!
-        // Or, you know, fix memory util but that's more work than commenting a few
-        // lines
-        // which didn't really work in the first place
-        // int size = MemoryUtil.getSizeOf(object);
-        // if (maxMemoryUsage > 0 && memoryUsage + size > maxMemoryUsage) {
-        // Runnable memoryReleaser = new Runnable() {
-        // @Override
-        // public void run() {
-        // synchronized (this) {
-        // while (memoryUsage + size > maxMemoryUsage) {
-        // removeOldestEntry();
-        // }
-        // memoryUsage += size;
-        // debug.print("Released memory from " + clazz.getSimpleName() +" cache");
-        // }
-        // }
-        // };
-        // StickyAPI.getPool().submit(memoryReleaser);
-        // }
-
-        objects.put(object.getKey(), object);
-        objectInsertionTimestamps.put(object.getKey(), System.currentTimeMillis());
-        debug.print("Created cached entry for " + clazz.getSimpleName() + " with key " + object.getKey());
+        if (Debugger.isEnabled()) {
+            debug.print("Created cached entry for " + clazz.getSimpleName() + " with key " + object.getKey());
+        }
     }
 
     /**
@@ -195,10 +529,39 @@ public class Cache<T extends Cacheable> {
      * @param object The object to update
      */
     public void update(@NotNull T object) {
-        if (objects.containsKey(object.getKey())) {
-            remove(object);
+        if (Debugger.isEnabled()) {
+            debug.reset();
+        }
+
+        long now = System.currentTimeMillis();
+        CacheEntry<T> entry = new CacheEntry<>(object.getKey(), object, now, expirationTime(now));
+        entry.weight = weigh(object);
+        CacheEntry<T> replaced = objects.put(entry.key, entry);
+        statsCounter.recordPut();
+        addToIndexes(entry);
+        removeFromSecondTier(entry.key);
+        if (replaced != null) {
+            replaced.retired = true;
+            removeFromIndexes(replaced);
+            statsCounter.recordRemoval(RemovalCause.REPLACED);
+        }
+
+        evictionLock.lock();
+        try {
+            if (replaced != null && replaced.queue != null) {
+                detach(replaced);
+            }
+            if (!entry.retired) {
+                link(entry);
+            }
+            expireEntries(now);
+            evictEntries();
+        } finally {
+            evictionLock.unlock();
+        }
+        if (Debugger.isEnabled()) {
+            debug.print("Updated cached entry for " + clazz.getSimpleName() + " with key " + object.getKey());
         }
-        put(object);
     }
 
     /**
@@ -208,21 +571,28 @@ public class Cache<T extends Cacheable> {
      * @return The removed object, if it exists
      */
     public T remove(@NotNull T object) {
-        debug.reset();
-        T didRemove = objects.remove(object.getKey());
+        if (Debugger.isEnabled()) {
+            debug.reset();
+        }
+        CacheEntry<T> entry = objects.remove(object.getKey());
 
-        if (didRemove == null) {
-            debug.print("Could not remove entry for " + clazz.getSimpleName() + " with key " + object.getKey()
-                    + " - does not exist");
+        if (entry == null) {
+            if (Debugger.isEnabled()) {
+                debug.print("Could not remove entry for " + clazz.getSimpleName() + " with key " + object.getKey()
+                        + " - does not exist");
+            }
             return null;
         }
 
-        // if (maxMemoryUsage > 0) {
-        // memoryUsage -= MemoryUtil.getSizeOf(object);
-        // }
+        unlink(entry);
+        removeFromIndexes(entry);
+        removeFromSecondTier(entry.key);
+        statsCounter.recordRemoval(RemovalCause.EXPLICIT);
 
-        debug.print("Removed entry for " + clazz.getSimpleName() + " with key " + object.getKey());
-        return didRemove;
+        if (Debugger.isEnabled()) {
+            debug.print("Removed entry for " + clazz.getSimpleName() + " with key " + object.getKey());
+        }
+        return entry.value;
     }
 
     /**
@@ -232,31 +602,29 @@ public class Cache<T extends Cacheable> {
      * @return The removed object, if it exists
      */
     public T removeKey(@NotNull String key) {
-        T object = objects.get(key);
-        if (object == null) {
+        CacheEntry<T> entry = objects.get(key);
+        if (entry == null) {
+            removeFromSecondTier(key);
             return null;
         }
 
-        return remove(object);
+        return remove(entry.value);
     }
 
     /**
-     * Fetch the oldest entry in the cache.
+     * Fetch the oldest entry in the cache - that is, the entry the eviction policy
+     * would remove next.
      * 
      * @return The oldest entry in the cache, if it exists
      */
     public T getOldestEntry() {
-        String oldest = null;
-        Long oldestTimestamp = Long.MAX_VALUE;
-
-        for (String k : objectInsertionTimestamps.keySet()) {
-            Long v = objectInsertionTimestamps.get(k);
-            if (v < oldestTimestamp) {
-                oldest = k;
-                oldestTimestamp = v;
-            }
+        evictionLock.lock();
+        try {
+            CacheEntry<T> victim = selectVictim();
+            return victim == null ? null : victim.value;
+        } finally {
+            evictionLock.unlock();
         }
-        return objects.get(oldest);
     }
 
     /**
@@ -265,6 +633,360 @@ public class Cache<T extends Cacheable> {
      * @return The oldest entry in the cache, if it exists
      */
     public T removeOldestEntry() {
-        return remove(getOldestEntry());
+        evictionLock.lock();
+        try {
+            CacheEntry<T> victim = selectVictim();
+            if (victim == null) {
+                return null;
+            }
+            evict(victim, RemovalCause.EXPLICIT);
+            return victim.value;
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Record a read of the given entry. Skipped if another thread is busy with the
+     * eviction queues, since read order only needs to be approximately right.
+     */
+    private void recordAccess(CacheEntry<T> entry) {
+        if (evictionPolicy == EvictionPolicy.FIFO || !evictionLock.tryLock()) {
+            return;
+        }
+
+        try {
+            if (entry.queue == null) {
+                return;
+            }
+
+            if (evictionPolicy == EvictionPolicy.LRU) {
+                window.moveToBack(entry);
+                return;
+            }
+
+            sketch.increment(entry.key.hashCode());
+            if (entry.queue == probation) {
+                // Requested again while on probation - promote it
+                probation.remove(entry);
+                protectedSegment.addLast(entry);
+                while (protectedSegment.size() > protectedMaximum()) {
+                    probation.addLast(protectedSegment.pollFirst());
+                }
+            } else {
+                entry.queue.moveToBack(entry);
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Misses still count towards a key's popularity under W-TinyLFU, so that a key
+     * which keeps getting loaded wins admission.
+     */
+    private void recordMiss(String key) {
+        if (evictionPolicy != EvictionPolicy.TINY_LFU || !evictionLock.tryLock()) {
+            return;
+        }
+
+        try {
+            sketch.increment(key.hashCode());
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Remove the given entry if it has expired. Used to expire entries lazily as
+     * they are read.
+     * 
+     * @return True if the entry was expired
+     */
+    private boolean expireIfNeeded(CacheEntry<T> entry) {
+        if (entry.expirationTime == Long.MAX_VALUE || !entry.isExpired(System.currentTimeMillis())) {
+            return false;
+        }
+
+        if (objects.remove(entry.key, entry)) {
+            unlink(entry);
+            removeFromIndexes(entry);
+            statsCounter.recordRemoval(RemovalCause.EXPIRED);
+            if (Debugger.isEnabled()) {
+                debug.print("Expired entry for " + clazz.getSimpleName() + " with key " + entry.key);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Expire entries from the head of the write order until one is found that is
+     * still alive. Must hold the eviction lock.
+     */
+    private void expireEntries(long now) {
+        CacheEntry<T> entry;
+        while ((entry = writeOrder.peekFirst()) != null && entry.isExpired(now)) {
+            evict(entry, RemovalCause.EXPIRED);
+        }
+    }
+
+    private long expirationTime(long insertionTime) {
+        return ttl <= 0 ? Long.MAX_VALUE : insertionTime + ttl;
+    }
+
+    /**
+     * Add a new entry to the eviction queues. Must hold the eviction lock.
+     */
+    private void link(CacheEntry<T> entry) {
+        writeOrder.add(entry);
+        totalWeight += entry.weight;
+        admit(entry);
+    }
+
+    /**
+     * Take a linked entry out of the eviction queues. Must hold the eviction lock.
+     */
+    private void detach(CacheEntry<T> entry) {
+        entry.queue.remove(entry);
+        writeOrder.remove(entry);
+        totalWeight -= entry.weight;
+    }
+
+    /**
+     * Place an entry into the eviction queues according to the current policy.
+     * Must hold the eviction lock.
+     */
+    private void admit(CacheEntry<T> entry) {
+        window.addLast(entry);
+        if (evictionPolicy != EvictionPolicy.TINY_LFU) {
+            return;
+        }
+
+        sketch.increment(entry.key.hashCode());
+        while (window.size() > windowMaximum()) {
+            probation.addLast(window.pollFirst());
+        }
+    }
+
+    /**
+     * Retire an entry that has already been removed from the map.
+     */
+    private void unlink(CacheEntry<T> entry) {
+        entry.retired = true;
+        evictionLock.lock();
+        try {
+            if (entry.queue != null) {
+                detach(entry);
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Evict entries until the cache is back within its bounds. Must hold the
+     * eviction lock.
+     */
+    private void evictEntries() {
+        while ((maxSize > 0 && linkedSize() > maxSize) || (maxWeight > 0 && totalWeight > maxWeight)) {
+            CacheEntry<T> victim = selectVictim();
+            if (victim == null) {
+                return;
+            }
+            evict(victim, RemovalCause.SIZE);
+        }
+    }
+
+    /**
+     * Pick the entry to evict next. Must hold the eviction lock.
+     * <p>
+     * For W-TinyLFU, the newest entry on probation (usually just pushed out of the
+     * window) competes with the oldest one, and whichever has been requested less
+     * often loses.
+     */
+    private CacheEntry<T> selectVictim() {
+        if (evictionPolicy != EvictionPolicy.TINY_LFU) {
+            return window.peekFirst();
+        }
+
+        CacheEntry<T> victim = probation.peekFirst();
+        if (victim == null) {
+            victim = protectedSegment.isEmpty() ? window.peekFirst() : protectedSegment.peekFirst();
+            return victim;
+        }
+
+        CacheEntry<T> candidate = probation.peekLast();
+        if (candidate == victim) {
+            return victim;
+        }
+
+        int candidateFrequency = sketch.frequency(candidate.key.hashCode());
+        int victimFrequency = sketch.frequency(victim.key.hashCode());
+        return candidateFrequency > victimFrequency ? victim : candidate;
+    }
+
+    /**
+     * Unlink and remove the given entry. Must hold the eviction lock.
+     */
+    private void evict(CacheEntry<T> victim, RemovalCause cause) {
+        detach(victim);
+        victim.retired = true;
+        // Someone else may have removed it from the map already, and counted it
+        if (objects.remove(victim.key, victim)) {
+            removeFromIndexes(victim);
+            statsCounter.recordRemoval(cause);
+            if (cause == RemovalCause.SIZE && secondTier != null) {
+                spill(secondTier, victim);
+            }
+        }
+        if (Debugger.isEnabled()) {
+            debug.print("Evicted entry for " + clazz.getSimpleName() + " with key " + victim.key);
+        }
+    }
+
+    /**
+     * Store a new entry unless the key is already taken by a live entry.
+     * 
+     * @return False if another entry was already present
+     */
+    private boolean insert(CacheEntry<T> entry, long now) {
+        CacheEntry<T> existing = objects.putIfAbsent(entry.key, entry);
+        if (existing != null && expireIfNeeded(existing)) {
+            existing = objects.putIfAbsent(entry.key, entry);
+        }
+        if (existing != null) {
+            return false;
+        }
+        addToIndexes(entry);
+
+        evictionLock.lock();
+        try {
+            // A concurrent remove may have beaten us to the lock
+            if (!entry.retired) {
+                link(entry);
+            }
+            expireEntries(now);
+            evictEntries();
+        } finally {
+            evictionLock.unlock();
+        }
+        return true;
+    }
+
+    /**
+     * Move an entry back from the second tier into memory, keeping its original
+     * insertion time so that it expires on schedule.
+     */
+    private CacheEntry<T> promote(MappedFileTier<T> tier, String key) {
+        CacheEntry<T> entry;
+        try {
+            entry = tier.take(key);
+        } catch (RuntimeException e) {
+            StickyAPI.getLogger().log(Level.WARNING, "Failed to read " + key + " from the second tier", e);
+            return null;
+        }
+        if (entry == null) {
+            return null;
+        }
+
+        long now = System.currentTimeMillis();
+        entry.expirationTime = expirationTime(entry.insertionTime);
+        if (entry.isExpired(now)) {
+            return null;
+        }
+
+        entry.weight = weigh(entry.value);
+        // Lost to a concurrent put - theirs is newer anyway
+        return insert(entry, now) ? entry : objects.get(key);
+    }
+
+    /**
+     * Write an entry evicted for size to the second tier. Must hold the eviction
+     * lock.
+     */
+    private void spill(MappedFileTier<T> tier, CacheEntry<T> entry) {
+        try {
+            tier.write(entry.value, entry.insertionTime);
+        } catch (RuntimeException e) {
+            StickyAPI.getLogger().log(Level.WARNING, "Failed to spill " + entry.key + " to the second tier", e);
+        }
+    }
+
+    private void removeFromSecondTier(String key) {
+        MappedFileTier<T> tier = secondTier;
+        if (tier == null) {
+            return;
+        }
+
+        try {
+            tier.remove(key);
+        } catch (RuntimeException e) {
+            StickyAPI.getLogger().log(Level.WARNING, "Failed to remove " + key + " from the second tier", e);
+        }
+    }
+
+    private long weigh(T object) {
+        if (maxWeight <= 0) {
+            return 0;
+        }
+
+        long weight = weigher.weigh(object);
+        if (weight < 0) {
+            throw new IllegalStateException("Weigher returned a negative weight for " + object.getKey());
+        }
+        return weight;
+    }
+
+    /**
+     * Weigh every linked entry again. Must hold the eviction lock.
+     */
+    private void reweighEntries() {
+        totalWeight = 0;
+        for (CacheEntry<T> entry = writeOrder.peekFirst(); entry != null; entry = entry.writeNext) {
+            entry.weight = weigh(entry.value);
+            totalWeight += entry.weight;
+        }
+    }
+
+    private SecondaryIndex<T> getIndex(String name) {
+        SecondaryIndex<T> index = indexes.get(name);
+        if (index == null) {
+            throw new IllegalArgumentException("No index named " + name);
+        }
+        return index;
+    }
+
+    private void addToIndexes(CacheEntry<T> entry) {
+        for (SecondaryIndex<T> index : indexes.values()) {
+            index.add(entry);
+        }
+    }
+
+    /**
+     * Drop an entry from the secondary indexes. The entry must already be retired.
+     */
+    private void removeFromIndexes(CacheEntry<T> entry) {
+        for (SecondaryIndex<T> index : indexes.values()) {
+            index.remove(entry);
+        }
+    }
+
+    private int linkedSize() {
+        return window.size() + probation.size() + protectedSegment.size();
+    }
+
+    private int windowMaximum() {
+        return maxSize <= 0 ? Integer.MAX_VALUE : Math.max(1, maxSize / 100);
+    }
+
+    private int protectedMaximum() {
+        return (maxSize - windowMaximum()) * 4 / 5;
+    }
+
+    private static <T extends Cacheable> void drainTo(AccessOrderDeque<T> deque, List<CacheEntry<T>> out) {
+        CacheEntry<T> entry;
+        while ((entry = deque.pollFirst()) != null) {
+            out.add(entry);
+        }
     }
 }
@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2020-2021 DumbDogDiner <dumbdogdiner.com>. All rights reserved.
+ * Licensed under the MIT license, see LICENSE for more information...
+ */
+package com.dumbdogdiner.stickyapi.common.cache;
+
+/**
+ * A single value stored in a {@link Cache}, along with its expiry deadline and
+ * the links used to keep it in eviction and write order.
+ */
+final class CacheEntry<T extends Cacheable> {
+    final String key;
+    final T value;
+    final long insertionTime;
+
+    /**
+     * The time in milliseconds after which this entry is expired, or
+     * {@link Long#MAX_VALUE} if it never expires. Rewritten under the eviction
+     * lock when the cache's ttl changes.
+     */
+    volatile long expirationTime;
+
+    /**
+     * Set once the entry has been removed from the cache's map, so a concurrent
+     * insert does not link it back into an eviction queue.
+     */
+    volatile boolean retired = false;
+
+    /**
+     * The weight charged against the cache's <code>maxWeight</code>. Set before
+     * the entry is linked, and afterwards only changed under the eviction lock.
+     */
+    long weight = 0;
+
+    // Guarded by the owning cache's eviction lock
+    AccessOrderDeque<T> queue;
+    CacheEntry<T> previous;
+    CacheEntry<T> next;
+    CacheEntry<T> writePrevious;
+    CacheEntry<T> writeNext;
+
+    CacheEntry(String key, T value, long insertionTime, long expirationTime) {
+        this.key = key;
+        this.value = value;
+        this.insertionTime = insertionTime;
+        this.expirationTime = expirationTime;
+    }
+
+    boolean isExpired(long now) {
+        return expirationTime <= now;
+    }
+}
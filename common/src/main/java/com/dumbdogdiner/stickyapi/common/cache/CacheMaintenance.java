@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2020-2021 DumbDogDiner <dumbdogdiner.com>. All rights reserved.
+ * Licensed under the MIT license, see LICENSE for more information...
+ */
+package com.dumbdogdiner.stickyapi.common.cache;
+
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+import com.dumbdogdiner.stickyapi.StickyAPI;
+
+/**
+ * Drives expiry for every cache in the {@link CacheRegistry} from StickyAPI's
+ * shared timer thread, so plugins no longer need to schedule expiry tasks
+ * themselves.
+ */
+final class CacheMaintenance {
+    private CacheMaintenance() {
+    }
+
+    /**
+     * How often each cache is swept for expired entries, in milliseconds.
+     */
+    static final long INTERVAL = 1000L;
+
+    static {
+        StickyAPI.getTimer().scheduleAtFixedRate(CacheMaintenance::run, INTERVAL, INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    static void register(ManagedCache cache) {
+        CacheRegistry.register(cache);
+    }
+
+    private static void run() {
+        for (ManagedCache cache : CacheRegistry.getManagedCaches()) {
+            // Never let one cache kill the timer for everyone else
+            try {
+                cache.cleanUp();
+            } catch (Throwable t) {
+                StickyAPI.getLogger().log(Level.WARNING, "Failed to expire cache entries", t);
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2020-2021 DumbDogDiner <dumbdogdiner.com>. All rights reserved.
+ * Licensed under the MIT license, see LICENSE for more information...
+ */
+package com.dumbdogdiner.stickyapi.common.cache;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Keeps track of every live {@link Cache}, so that their statistics can be
+ * collected in one place.
+ * <p>
+ * Caches register themselves when created and are only weakly referenced, so
+ * they are forgotten once garbage collected.
+ */
+public final class CacheRegistry {
+    private CacheRegistry() {
+    }
+
+    private static final ConcurrentLinkedQueue<WeakReference<ManagedCache>> caches = new ConcurrentLinkedQueue<>();
+
+    static void register(ManagedCache cache) {
+        caches.add(new WeakReference<>(cache));
+    }
+
+    /**
+     * Return all caches that are still alive.
+     * 
+     * @return {@link List}
+     */
+    public static List<Cache<?>> getCaches() {
+        List<Cache<?>> live = new ArrayList<>();
+        for (ManagedCache cache : getManagedCaches()) {
+            if (cache instanceof Cache) {
+                live.add((Cache<?>) cache);
+            }
+        }
+        return live;
+    }
+
+    /**
+     * Return all primitive-keyed caches that are still alive.
+     * 
+     * @return {@link List}
+     */
+    public static List<PrimitiveCache<?>> getPrimitiveCaches() {
+        List<PrimitiveCache<?>> live = new ArrayList<>();
+        for (ManagedCache cache : getManagedCaches()) {
+            if (cache instanceof PrimitiveCache) {
+                live.add((PrimitiveCache<?>) cache);
+            }
+        }
+        return live;
+    }
+
+    static List<ManagedCache> getManagedCaches() {
+        List<ManagedCache> live = new ArrayList<>();
+        Iterator<WeakReference<ManagedCache>> iterator = caches.iterator();
+        while (iterator.hasNext()) {
+            ManagedCache cache = iterator.next().get();
+            if (cache == null) {
+                iterator.remove();
+            } else {
+                live.add(cache);
+            }
+        }
+        return live;
+    }
+
+    /**
+     * Take a snapshot of the statistics of every live cache, keyed by cache name.
+     * Caches sharing a name are suffixed with a number.
+     * 
+     * @return {@link Map}
+     */
+    public static Map<String, CacheStats> stats() {
+        Map<String, CacheStats> stats = new LinkedHashMap<>();
+        for (ManagedCache cache : getManagedCaches()) {
+            String name = cache.getName();
+            for (int i = 2; stats.containsKey(name); i++) {
+                name = cache.getName() + "#" + i;
+            }
+            stats.put(name, cache.stats());
+        }
+        return stats;
+    }
+}
@@ -0,0 +1,29 @@
+/*
+ * Copyright (c) 2020-2021 DumbDogDiner <dumbdogdiner.com>. All rights reserved.
+ * Licensed under the MIT license, see LICENSE for more information...
+ */
+package com.dumbdogdiner.stickyapi.common.cache;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Converts cached objects to and from bytes, so they can be stored in a
+ * {@link MappedFileTier}.
+ */
+public interface CacheSerializer<T> {
+    /**
+     * Convert an object to bytes.
+     * 
+     * @param object The object to serialize
+     * @return The serialized object
+     */
+    byte[] serialize(@NotNull T object);
+
+    /**
+     * Convert bytes produced by {@link #serialize(Object)} back to an object.
+     * 
+     * @param bytes The serialized object
+     * @return The object
+     */
+    T deserialize(byte[] bytes);
+}
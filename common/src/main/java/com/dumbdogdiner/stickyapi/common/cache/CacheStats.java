@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2020-2021 DumbDogDiner <dumbdogdiner.com>. All rights reserved.
+ * Licensed under the MIT license, see LICENSE for more information...
+ */
+package com.dumbdogdiner.stickyapi.common.cache;
+
+import org.jetbrains.annotations.NotNull;
+
+import lombok.Getter;
+
+/**
+ * An immutable snapshot of a {@link Cache}'s counters, taken with
+ * {@link Cache#stats()}. Counters only ever grow, so the difference between two
+ * snapshots gives the activity in between.
+ */
+public final class CacheStats {
+    /**
+     * The number of entries in the cache when the snapshot was taken.
+     */
+    @Getter
+    private final int size;
+
+    /**
+     * The number of lookups through {@link Cache#get(String)} that found an
+     * entry.
+     */
+    @Getter
+    private final long hitCount;
+
+    /**
+     * The number of lookups through {@link Cache#get(String)} that found nothing.
+     */
+    @Getter
+    private final long missCount;
+
+    /**
+     * The number of objects stored through {@link Cache#put(Cacheable)} or
+     * {@link Cache#update(Cacheable)}.
+     */
+    @Getter
+    private final long putCount;
+
+    /**
+     * The number of calls to {@link Cache#find(Cache.Predicate)}.
+     */
+    @Getter
+    private final long findCount;
+
+    /**
+     * The total number of entries tested by {@link Cache#find(Cache.Predicate)}.
+     */
+    @Getter
+    private final long findScanCount;
+
+    /**
+     * The number of loads by a {@link LoadingCache} that completed normally.
+     */
+    @Getter
+    private final long loadSuccessCount;
+
+    /**
+     * The number of loads by a {@link LoadingCache} that failed.
+     */
+    @Getter
+    private final long loadFailureCount;
+
+    /**
+     * The total time spent loading, in nanoseconds.
+     */
+    @Getter
+    private final long totalLoadTime;
+
+    private final long[] removalCounts;
+
+    CacheStats(int size, long hitCount, long missCount, long putCount, long[] removalCounts, long findCount,
+            long findScanCount, long loadSuccessCount, long loadFailureCount, long totalLoadTime) {
+        this.size = size;
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.putCount = putCount;
+        this.removalCounts = removalCounts;
+        this.findCount = findCount;
+        this.findScanCount = findScanCount;
+        this.loadSuccessCount = loadSuccessCount;
+        this.loadFailureCount = loadFailureCount;
+        this.totalLoadTime = totalLoadTime;
+    }
+
+    /**
+     * Return the number of entries that left the cache for the given reason.
+     * 
+     * @param cause The removal cause
+     * @return {@link Long}
+     */
+    public long getRemovalCount(@NotNull RemovalCause cause) {
+        return removalCounts[cause.ordinal()];
+    }
+
+    /**
+     * Return the number of entries evicted to keep the cache within its
+     * <code>maxSize</code>.
+     * 
+     * @return {@link Long}
+     */
+    public long getEvictionCount() {
+        return getRemovalCount(RemovalCause.SIZE);
+    }
+
+    /**
+     * Return the number of entries that expired.
+     * 
+     * @return {@link Long}
+     */
+    public long getExpiryCount() {
+        return getRemovalCount(RemovalCause.EXPIRED);
+    }
+
+    /**
+     * Return the fraction of lookups that found an entry, or 1 if there have been
+     * no lookups.
+     * 
+     * @return {@link Double}
+     */
+    public double getHitRate() {
+        long requests = hitCount + missCount;
+        return requests == 0 ? 1.0 : (double) hitCount / requests;
+    }
+
+    /**
+     * Return the average number of entries tested per
+     * {@link Cache#find(Cache.Predicate)} call.
+     * 
+     * @return {@link Double}
+     */
+    public double getAverageFindScanLength() {
+        return findCount == 0 ? 0.0 : (double) findScanCount / findCount;
+    }
+
+    /**
+     * Return the average time spent per load, in nanoseconds.
+     * 
+     * @return {@link Double}
+     */
+    public double getAverageLoadPenalty() {
+        long loads = loadSuccessCount + loadFailureCount;
+        return loads == 0 ? 0.0 : (double) totalLoadTime / loads;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "CacheStats{size=%d, hitRate=%.3f, hits=%d, misses=%d, puts=%d, evictions=%d, expiries=%d, removals=%d, replacements=%d, averageFindScan=%.1f, averageLoad=%.0fns}",
+                size, getHitRate(), hitCount, missCount, putCount, getEvictionCount(), getExpiryCount(),
+                getRemovalCount(RemovalCause.EXPLICIT), getRemovalCount(RemovalCause.REPLACED),
+                getAverageFindScanLength(), getAverageLoadPenalty());
+    }
+}
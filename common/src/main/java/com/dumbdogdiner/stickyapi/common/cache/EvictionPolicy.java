@@ -0,0 +1,27 @@
+/*
+ * Copyright (c) 2020-2021 DumbDogDiner <dumbdogdiner.com>. All rights reserved.
+ * Licensed under the MIT license, see LICENSE for more information...
+ */
+package com.dumbdogdiner.stickyapi.common.cache;
+
+/**
+ * The strategy a bounded {@link Cache} uses to pick which entry to evict once
+ * its <code>maxSize</code> is reached. All policies evict in O(1).
+ */
+public enum EvictionPolicy {
+    /**
+     * Evict the entry that was inserted first, regardless of how often it is
+     * read.
+     */
+    FIFO,
+    /**
+     * Evict the entry that was least recently read or inserted.
+     */
+    LRU,
+    /**
+     * Window TinyLFU - new entries enter a small LRU window, and only displace an
+     * entry of the main area if they have been requested more often. Gives better
+     * hit rates than LRU for caches that see bursts of one-off lookups.
+     */
+    TINY_LFU
+}
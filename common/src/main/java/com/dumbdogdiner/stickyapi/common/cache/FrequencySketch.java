@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2020-2021 DumbDogDiner <dumbdogdiner.com>. All rights reserved.
+ * Licensed under the MIT license, see LICENSE for more information...
+ */
+package com.dumbdogdiner.stickyapi.common.cache;
+
+/**
+ * A 4-bit count-min sketch estimating how often a key has been requested, used
+ * as the admission filter for {@link EvictionPolicy#TINY_LFU}.
+ * <p>
+ * Each <code>long</code> in the table holds sixteen 4-bit counters. A key maps
+ * to four counters spread over four table slots, and its frequency is the
+ * smallest of them. Once the number of increments reaches ten times the cache
+ * size all counters are halved, so that old popularity fades out.
+ * <p>
+ * Not thread-safe - callers must hold the owning cache's eviction lock.
+ */
+final class FrequencySketch {
+    private static final long[] SEEDS = { 0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL,
+            0xcbf29ce484222325L };
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final long ONE_MASK = 0x1111111111111111L;
+
+    private long[] table = new long[1];
+    private int tableMask = 0;
+    private int sampleSize = 10;
+    private int size = 0;
+
+    /**
+     * Grow the sketch so it can track roughly <code>maximumSize</code> keys.
+     * Growing forgets all previously recorded frequencies.
+     */
+    void ensureCapacity(int maximumSize) {
+        int maximum = Math.min(Math.max(maximumSize, 1), 1 << 30);
+        if (table.length >= maximum) {
+            return;
+        }
+
+        table = new long[Integer.highestOneBit(maximum - 1) << 1];
+        tableMask = table.length - 1;
+        sampleSize = (maximum > Integer.MAX_VALUE / 10) ? Integer.MAX_VALUE : 10 * maximum;
+        size = 0;
+    }
+
+    int frequency(int hashCode) {
+        int hash = spread(hashCode);
+        int start = (hash & 3) << 2;
+        int frequency = Integer.MAX_VALUE;
+        for (int i = 0; i < 4; i++) {
+            long word = table[indexOf(hash, i)];
+            int count = (int) ((word >>> ((start + i) << 2)) & 0xfL);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+    void increment(int hashCode) {
+        int hash = spread(hashCode);
+        int start = (hash & 3) << 2;
+        boolean added = false;
+        for (int i = 0; i < 4; i++) {
+            added |= incrementAt(indexOf(hash, i), start + i);
+        }
+
+        if (added && ++size >= sampleSize) {
+            reset();
+        }
+    }
+
+    private boolean incrementAt(int index, int counter) {
+        int offset = counter << 2;
+        long mask = 0xfL << offset;
+        if ((table[index] & mask) != mask) {
+            table[index] += 1L << offset;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Halve every counter. Odd counters lose their remainder, which is accounted
+     * for when adjusting the sample size.
+     */
+    private void reset() {
+        int odd = 0;
+        for (int i = 0; i < table.length; i++) {
+            odd += Long.bitCount(table[i] & ONE_MASK);
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        size = (size >>> 1) - (odd >>> 2);
+    }
+
+    private int indexOf(int hash, int depth) {
+        long h = (hash + SEEDS[depth]) * SEEDS[depth];
+        h += h >>> 32;
+        return ((int) h) & tableMask;
+    }
+
+    private static int spread(int x) {
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        return (x >>> 16) ^ x;
+    }
+}
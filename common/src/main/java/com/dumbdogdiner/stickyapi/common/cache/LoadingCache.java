@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2020-2021 DumbDogDiner <dumbdogdiner.com>. All rights reserved.
+ * Licensed under the MIT license, see LICENSE for more information...
+ */
+package com.dumbdogdiner.stickyapi.common.cache;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import org.jetbrains.annotations.NotNull;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * A {@link Cache} that loads missing entries itself using an asynchronous
+ * loader, for example a database query.
+ * <p>
+ * Concurrent requests for the same missing key share a single load, so a burst
+ * of lookups (e.g. many players joining at once) only hits the backing store
+ * once per key. All lookups return futures, so callers on the main thread never
+ * block.
+ */
+public class LoadingCache<T extends Cacheable> extends Cache<T> {
+    private final Function<String, CompletableFuture<T>> loader;
+
+    /**
+     * Loads that are currently in flight, keyed by the requested key.
+     */
+    private final ConcurrentHashMap<String, CompletableFuture<T>> loads = new ConcurrentHashMap<>();
+
+    /**
+     * How long after being written an entry is reloaded in the background, in
+     * milliseconds. The stale value keeps being served until the reload
+     * completes. 0 disables refreshing.
+     */
+    @Getter
+    @Setter
+    private long refreshAfterWrite = 0L;
+
+    /**
+     * Create a new loading cache.
+     * 
+     * @param clazz  The class of the cached objects
+     * @param loader Loads the object for a key, completing with null if there is
+     *               no such object
+     */
+    public LoadingCache(@NotNull Class<T> clazz, @NotNull Function<String, CompletableFuture<T>> loader) {
+        super(clazz);
+        this.loader = loader;
+    }
+
+    /**
+     * Retrieve an object from the cache, loading it if it is not present.
+     * <p>
+     * If the cached entry is due for a refresh, the cached object is returned and
+     * a reload is started in the background.
+     * 
+     * @param key The key of the object
+     * @return A future completing with the object, or null if the loader found
+     *         nothing
+     */
+    public CompletableFuture<T> getAsync(@NotNull String key) {
+        CacheEntry<T> entry = getEntry(key);
+        if (entry == null) {
+            return load(key, false);
+        }
+
+        if (refreshAfterWrite > 0 && System.currentTimeMillis() - entry.insertionTime >= refreshAfterWrite) {
+            load(key, true);
+        }
+        return CompletableFuture.completedFuture(entry.value);
+    }
+
+    /**
+     * Reload an object, replacing the cached one once the load completes. Joins
+     * the load already in flight for this key, if any.
+     * 
+     * @param key The key of the object
+     * @return A future completing with the reloaded object
+     */
+    public CompletableFuture<T> refresh(@NotNull String key) {
+        return load(key, true);
+    }
+
+    /**
+     * Return the number of loads currently in flight.
+     * 
+     * @return {@link Integer}
+     */
+    public int pendingLoads() {
+        return loads.size();
+    }
+
+    private CompletableFuture<T> load(String key, boolean replace) {
+        CompletableFuture<T> pending = loads.get(key);
+        if (pending != null) {
+            return pending;
+        }
+
+        CompletableFuture<T> future = new CompletableFuture<>();
+        pending = loads.putIfAbsent(key, future);
+        if (pending != null) {
+            return pending;
+        }
+
+        long start = System.nanoTime();
+        CompletableFuture<T> source;
+        try {
+            source = loader.apply(key);
+        } catch (Throwable t) {
+            source = CompletableFuture.failedFuture(t);
+        }
+
+        if (source == null) {
+            source = CompletableFuture.failedFuture(new NullPointerException("The loader returned a null future"));
+        }
+
+        source.whenComplete((value, error) -> {
+            statsCounter.recordLoad(error == null, System.nanoTime() - start);
+
+            // Store before releasing the in-flight slot, so that nobody can miss
+            // both and start a second load
+            Throwable failure = error;
+            try {
+                if (error == null && value != null) {
+                    if (replace) {
+                        update(value);
+                    } else {
+                        put(value);
+                    }
+                }
+            } catch (Throwable t) {
+                // e.g. an entry too heavy for the cache - everyone waiting must
+                // still hear about it
+                failure = t;
+            } finally {
+                loads.remove(key, future);
+            }
+
+            if (failure != null) {
+                future.completeExceptionally(failure);
+            } else {
+                future.complete(value);
+            }
+        });
+        return future;
+    }
+}
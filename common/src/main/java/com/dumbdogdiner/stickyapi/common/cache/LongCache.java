@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2020-2021 DumbDogDiner <dumbdogdiner.com>. All rights reserved.
+ * Licensed under the MIT license, see LICENSE for more information...
+ */
+package com.dumbdogdiner.stickyapi.common.cache;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A cache keyed by <code>long</code>, for example database row IDs. Keys are
+ * never boxed or turned into strings.
+ * 
+ * @see PrimitiveCache
+ */
+public class LongCache<T> extends PrimitiveCache<T> {
+    /**
+     * Retrieve an object from the cache.
+     * 
+     * @param key The key of the object
+     * @return The requested object, if it exists
+     */
+    public T get(long key) {
+        return get(0L, key);
+    }
+
+    /**
+     * Store an object in the cache, unless the key is already in use.
+     * 
+     * @param key   The key to store the object under
+     * @param value The object to store
+     * @return False if the object was not stored
+     */
+    public boolean put(long key, @NotNull T value) {
+        return put(0L, key, value, false);
+    }
+
+    /**
+     * Store an object in the cache, replacing any object with the same key.
+     * 
+     * @param key   The key to store the object under
+     * @param value The object to store
+     * @return False if the object was not stored, because TinyLFU rejected a new
+     *         key
+     */
+    public boolean update(long key, @NotNull T value) {
+        return put(0L, key, value, true);
+    }
+
+    /**
+     * Remove an object from the cache.
+     * 
+     * @param key The key to remove
+     * @return The removed object, if it exists
+     */
+    public T remove(long key) {
+        return remove(0L, key);
+    }
+}
@@ -0,0 +1,16 @@
+/*
+ * Copyright (c) 2020-2021 DumbDogDiner <dumbdogdiner.com>. All rights reserved.
+ * Licensed under the MIT license, see LICENSE for more information...
+ */
+package com.dumbdogdiner.stickyapi.common.cache;
+
+/**
+ * What the {@link CacheRegistry} and the maintenance timer need from a cache.
+ */
+interface ManagedCache {
+    String getName();
+
+    CacheStats stats();
+
+    void cleanUp();
+}
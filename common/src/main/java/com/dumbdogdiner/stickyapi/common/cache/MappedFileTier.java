@@ -0,0 +1,458 @@
+/*
+ * Copyright (c) 2020-2021 DumbDogDiner <dumbdogdiner.com>. All rights reserved.
+ * Licensed under the MIT license, see LICENSE for more information...
+ */
+package com.dumbdogdiner.stickyapi.common.cache;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+
+import com.dumbdogdiner.stickyapi.StickyAPI;
+import com.dumbdogdiner.stickyapi.common.util.reflection.UnsafeUtil;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A second cache tier stored in a memory-mapped file, which survives restarts.
+ * Attach it to a {@link Cache} with {@link Cache#setSecondTier(MappedFileTier)}
+ * - entries evicted for size are then spilled here, and moved back into memory
+ * when requested again.
+ * <p>
+ * The file is an append-only log of records. Opening it replays the log in one
+ * sequential pass to rebuild the key index. Removals are written as tombstones,
+ * and once more than half of the log is dead it is compacted on StickyAPI's
+ * pool, during the owning cache's periodic clean up. Compaction copies from a
+ * snapshot, so writers are only held up while the files are swapped.
+ * <p>
+ * The file may not exceed 2GB.
+ */
+public class MappedFileTier<T extends Cacheable> implements Closeable {
+    private static final int MAGIC = 0x53434348; // "SCCH"
+    private static final int HEADER_SIZE = 8;
+    private static final int RECORD_HEADER_SIZE = 1 + 4 + 4 + 8;
+    private static final int INITIAL_SIZE = 1 << 20;
+
+    private static final byte END = 0;
+    private static final byte VALUE = 1;
+    private static final byte TOMBSTONE = 2;
+
+    private final Path file;
+    private final CacheSerializer<T> serializer;
+    private final Map<String, Integer> index = new HashMap<>();
+
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int position;
+    private long liveBytes = 0;
+
+    private final AtomicBoolean compacting = new AtomicBoolean();
+    // Held for the whole of a compaction, which only takes the tier's lock briefly
+    private final Object compactionLock = new Object();
+
+    /**
+     * Open or create a tier stored in the given file.
+     * 
+     * @param file       The file to store entries in
+     * @param serializer Converts entries to and from bytes
+     * @throws IOException If the file could not be opened
+     */
+    public MappedFileTier(@NotNull Path file, @NotNull CacheSerializer<T> serializer) throws IOException {
+        this.file = file;
+        this.serializer = serializer;
+        open();
+    }
+
+    /**
+     * Return the number of entries stored in this tier.
+     * 
+     * @return {@link Integer}
+     */
+    public synchronized int size() {
+        return index.size();
+    }
+
+    /**
+     * Check whether this tier holds an entry for the given key.
+     * 
+     * @param key The key to look for
+     * @return {@link Boolean}
+     */
+    public synchronized boolean containsKey(@NotNull String key) {
+        return index.containsKey(key);
+    }
+
+    /**
+     * Write all changes through to the disk.
+     */
+    public synchronized void flush() {
+        ensureOpen();
+        buffer.force();
+    }
+
+    /**
+     * Rewrite the file with only the live entries. This happens automatically
+     * in the background, but may be called manually.
+     * <p>
+     * The live entries are copied from a snapshot without holding the tier's
+     * lock, so other threads may keep reading and writing meanwhile. They are
+     * only blocked while the records written since the snapshot are carried
+     * over and the files are swapped.
+     */
+    public void compact() {
+        synchronized (compactionLock) {
+            Map<String, Integer> live;
+            long snapshotBytes;
+            int snapshotEnd;
+            synchronized (this) {
+                ensureOpen();
+                live = new HashMap<>(index);
+                snapshotBytes = liveBytes;
+                snapshotEnd = position;
+            }
+
+            // Records before the snapshot's end are never written again, so are
+            // read through a mapping of our own that closing the tier cannot touch
+            Path temporary = file.resolveSibling(file.getFileName() + ".compact");
+            Map<String, Integer> compacted = new HashMap<>(live.size() * 4 / 3 + 1);
+            int compactedEnd;
+            try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ);
+                    FileChannel out = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                            StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ,
+                            StandardOpenOption.WRITE)) {
+                MappedByteBuffer source = in.map(FileChannel.MapMode.READ_ONLY, 0, snapshotEnd);
+                MappedByteBuffer target = out.map(FileChannel.MapMode.READ_WRITE, 0,
+                        Math.max(INITIAL_SIZE, HEADER_SIZE + snapshotBytes + 1));
+                try {
+                    target.putInt(MAGIC).putInt(0);
+                    ByteBuffer record = source.duplicate();
+                    for (Map.Entry<String, Integer> entry : live.entrySet()) {
+                        int offset = entry.getValue();
+                        int length = RECORD_HEADER_SIZE + source.getInt(offset + 1) + source.getInt(offset + 5);
+                        compacted.put(entry.getKey(), target.position());
+                        record.limit(offset + length).position(offset);
+                        target.put(record);
+                    }
+                    compactedEnd = target.position();
+                    target.put(END);
+                    target.force();
+                } finally {
+                    unmap(source);
+                    unmap(target);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to compact " + file, e);
+            }
+
+            synchronized (this) {
+                swap(temporary, compacted, snapshotBytes, snapshotEnd, compactedEnd);
+            }
+        }
+    }
+
+    /**
+     * Carry the records written since a compaction's snapshot over to the
+     * compacted file, and replace the file with it.
+     */
+    private void swap(Path temporary, Map<String, Integer> compacted, long snapshotBytes, int snapshotEnd,
+            int compactedEnd) {
+        IOException failure = null;
+        boolean replaced = false;
+        try {
+            if (!channel.isOpen()) {
+                // Closed while compacting, so the file is left as it was
+                Files.deleteIfExists(temporary);
+                return;
+            }
+
+            int tail = position - snapshotEnd;
+            try (FileChannel out = FileChannel.open(temporary, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer target = out.map(FileChannel.MapMode.READ_WRITE, compactedEnd, tail + 1);
+                try {
+                    ByteBuffer source = buffer.duplicate();
+                    source.limit(position).position(snapshotEnd);
+                    target.put(source);
+                    target.put(END);
+                    target.force();
+                } finally {
+                    unmap(target);
+                }
+            }
+
+            // A mapped file cannot be replaced on every platform, so let go of it
+            // first, then open whichever file is left
+            release();
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            replaced = true;
+        } catch (IOException e) {
+            failure = e;
+        }
+        try {
+            if (replaced) {
+                open(compacted, snapshotBytes, compactedEnd);
+            } else if (!channel.isOpen()) {
+                open();
+            }
+        } catch (IOException e) {
+            if (failure == null) {
+                failure = e;
+            } else {
+                failure.addSuppressed(e);
+            }
+        }
+        if (failure != null) {
+            throw new UncheckedIOException("Failed to replace " + file, failure);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        release();
+    }
+
+    /**
+     * Check whether more than half of the file is dead, so that compacting it is
+     * worthwhile.
+     */
+    synchronized boolean needsCompaction() {
+        return channel.isOpen() && position > INITIAL_SIZE && liveBytes < (position - HEADER_SIZE) / 2;
+    }
+
+    /**
+     * Compact the file on StickyAPI's pool if it needs it, unless a compaction is
+     * already pending. Never compacts on the calling thread.
+     */
+    void compactInBackground() {
+        if (!needsCompaction() || !compacting.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            StickyAPI.getPool().execute(() -> {
+                try {
+                    if (needsCompaction()) {
+                        compact();
+                    }
+                } catch (RuntimeException e) {
+                    StickyAPI.getLogger().log(Level.WARNING, "Failed to compact " + file, e);
+                } finally {
+                    compacting.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Try again at the next clean up
+            compacting.set(false);
+        }
+    }
+
+    /**
+     * Remove and return the entry for the given key, or return null if there is
+     * none. The returned entry keeps the time it was first inserted into the
+     * cache.
+     */
+    synchronized CacheEntry<T> take(String key) {
+        ensureOpen();
+        Integer offset = index.get(key);
+        if (offset == null) {
+            return null;
+        }
+
+        int keyLength = buffer.getInt(offset + 1);
+        int valueLength = buffer.getInt(offset + 5);
+        long insertionTime = buffer.getLong(offset + 9);
+        byte[] bytes = new byte[valueLength];
+        buffer.position(offset + RECORD_HEADER_SIZE + keyLength);
+        buffer.get(bytes);
+        remove(key);
+        return new CacheEntry<>(key, serializer.deserialize(bytes), insertionTime, Long.MAX_VALUE);
+    }
+
+    /**
+     * Store an object, replacing any previous entry for its key.
+     */
+    synchronized void write(T object, long insertionTime) {
+        ensureOpen();
+        byte[] key = object.getKey().getBytes(StandardCharsets.UTF_8);
+        byte[] value = serializer.serialize(object);
+        int offset = append(VALUE, key, value, insertionTime);
+
+        Integer previous = index.put(object.getKey(), offset);
+        if (previous != null) {
+            liveBytes -= recordLength(previous);
+        }
+        liveBytes += recordLength(offset);
+    }
+
+    /**
+     * Remove the entry for the given key, if there is one.
+     */
+    synchronized void remove(String key) {
+        ensureOpen();
+        Integer previous = index.remove(key);
+        if (previous == null) {
+            return;
+        }
+
+        liveBytes -= recordLength(previous);
+        append(TOMBSTONE, key.getBytes(StandardCharsets.UTF_8), new byte[0], 0L);
+    }
+
+    /**
+     * The buffer is unmapped once the channel is closed, and touching it then
+     * would crash the JVM.
+     */
+    private void ensureOpen() {
+        if (!channel.isOpen()) {
+            throw new IllegalStateException(file + " has been closed");
+        }
+    }
+
+    /**
+     * Flush and unmap the file, and close the channel.
+     */
+    private void release() throws IOException {
+        if (!channel.isOpen()) {
+            return;
+        }
+        buffer.force();
+        unmap(buffer);
+        channel.close();
+    }
+
+    /**
+     * Unmap a buffer straight away, rather than whenever it is garbage collected.
+     * The buffer must never be used again.
+     */
+    private static void unmap(MappedByteBuffer buffer) {
+        try {
+            UnsafeUtil.getUnsafe().invokeCleaner(buffer);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // Left to the garbage collector - only a problem where mapped files
+            // cannot be replaced, such as on Windows
+        }
+    }
+
+    private void open() throws IOException {
+        map();
+        index.clear();
+        liveBytes = 0;
+        if (buffer.getInt(0) != MAGIC) {
+            // New or foreign file - start an empty log
+            buffer.putInt(0, MAGIC).putInt(4, 0).put(HEADER_SIZE, END);
+        }
+
+        position = HEADER_SIZE;
+        replay();
+    }
+
+    /**
+     * Open a compacted file whose index up to the given position is already
+     * known, replaying only the records after it.
+     */
+    private void open(Map<String, Integer> known, long knownBytes, int end) throws IOException {
+        map();
+        index.clear();
+        index.putAll(known);
+        liveBytes = knownBytes;
+        position = end;
+        replay();
+    }
+
+    private void map() throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        long size = Math.max(channel.size(), INITIAL_SIZE);
+        if (size > Integer.MAX_VALUE) {
+            channel.close();
+            throw new IOException(file + " is larger than 2GB");
+        }
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+
+    /**
+     * Replay the log from the current position, stopping at the first record
+     * that was not fully written.
+     */
+    private void replay() {
+        while (position + RECORD_HEADER_SIZE <= buffer.capacity()) {
+            byte type = buffer.get(position);
+            int keyLength = buffer.getInt(position + 1);
+            int valueLength = buffer.getInt(position + 5);
+            if ((type != VALUE && type != TOMBSTONE) || keyLength < 0 || valueLength < 0
+                    || (long) position + RECORD_HEADER_SIZE + keyLength + valueLength > buffer.capacity()) {
+                break;
+            }
+
+            byte[] key = new byte[keyLength];
+            buffer.position(position + RECORD_HEADER_SIZE);
+            buffer.get(key);
+            String name = new String(key, StandardCharsets.UTF_8);
+
+            Integer previous = type == VALUE ? index.put(name, position) : index.remove(name);
+            if (previous != null) {
+                liveBytes -= recordLength(previous);
+            }
+            if (type == VALUE) {
+                liveBytes += recordLength(position);
+            }
+            position += RECORD_HEADER_SIZE + keyLength + valueLength;
+        }
+    }
+
+    /**
+     * Append a record and return its offset. The type byte is written last, so a
+     * record torn by a crash reads as the end of the log.
+     */
+    private int append(byte type, byte[] key, byte[] value, long insertionTime) {
+        int length = RECORD_HEADER_SIZE + key.length + value.length;
+        ensureCapacity((long) position + length + 1);
+
+        int offset = position;
+        buffer.putInt(offset + 1, key.length);
+        buffer.putInt(offset + 5, value.length);
+        buffer.putLong(offset + 9, insertionTime);
+        buffer.position(offset + RECORD_HEADER_SIZE);
+        buffer.put(key);
+        buffer.put(value);
+        buffer.put(offset + length, END);
+        buffer.put(offset, type);
+
+        position += length;
+        return offset;
+    }
+
+    private void ensureCapacity(long required) {
+        if (required <= buffer.capacity()) {
+            return;
+        }
+        if (required > Integer.MAX_VALUE) {
+            throw new IllegalStateException(file + " would grow beyond 2GB");
+        }
+
+        long size = Math.min(Integer.MAX_VALUE, Math.max(required, (long) buffer.capacity() * 2));
+        try {
+            MappedByteBuffer previous = buffer;
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            unmap(previous);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to grow " + file, e);
+        }
+    }
+
+    private int recordLength(int offset) {
+        return RECORD_HEADER_SIZE + buffer.getInt(offset + 1) + buffer.getInt(offset + 5);
+    }
+}
@@ -0,0 +1,503 @@
+/*
+ * Copyright (c) 2020-2021 DumbDogDiner <dumbdogdiner.com>. All rights reserved.
+ * Licensed under the MIT license, see LICENSE for more information...
+ */
+package com.dumbdogdiner.stickyapi.common.cache;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.jetbrains.annotations.NotNull;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Base for caches keyed by primitives rather than strings, see
+ * {@link LongCache} and {@link UUIDCache}.
+ * <p>
+ * Keys are stored as pairs of longs in an open-addressing hash table made of
+ * plain arrays, with the eviction and expiry order threaded through it as
+ * index links. Looking up an entry allocates nothing, and an entry costs about
+ * 50 bytes on top of its value, compared to the several objects a
+ * {@link Cache} entry needs.
+ * <p>
+ * Eviction and expiry follow the same rules as {@link Cache}. Under
+ * {@link EvictionPolicy#TINY_LFU}, new entries are only admitted into a full
+ * cache if they have been requested more often than the entry they would
+ * replace. The table is guarded by a single lock, which is only held for a few
+ * array reads and writes per operation.
+ */
+public abstract class PrimitiveCache<T> implements ManagedCache {
+    private static final int NIL = -1;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final FrequencySketch sketch = new FrequencySketch();
+    final StatsCounter statsCounter = new StatsCounter();
+
+    // Guarded by the lock. A slot is free when its value is null.
+    private long[] his;
+    private long[] los;
+    private Object[] values;
+    private long[] insertionTimes;
+    private int[] previous;
+    private int[] next;
+    private int[] writePrevious;
+    private int[] writeNext;
+    private int mask;
+    private int size = 0;
+    private int head = NIL;
+    private int tail = NIL;
+    private int writeHead = NIL;
+    private int writeTail = NIL;
+
+    /**
+     * The name this cache is listed under in {@link CacheRegistry#stats()}.
+     */
+    @Getter
+    @Setter
+    private String name;
+
+    @Getter
+    private long ttl = (long) (30 * 60e3);
+
+    @Getter
+    private int maxSize = 0;
+
+    @Getter
+    private EvictionPolicy evictionPolicy = EvictionPolicy.FIFO;
+
+    PrimitiveCache() {
+        this.name = getClass().getSimpleName();
+        allocate(INITIAL_CAPACITY);
+        CacheMaintenance.register(this);
+    }
+
+    /**
+     * Return the size of this cache.
+     * 
+     * @return The size of this cache.
+     */
+    public int size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Set the maximum number of entries this cache may hold. Entries over the new
+     * limit are evicted straight away.
+     * 
+     * @param maxSize The maximum size, or 0 for an unbounded cache
+     */
+    public void setMaxSize(int maxSize) {
+        lock.lock();
+        try {
+            this.maxSize = maxSize;
+            if (evictionPolicy == EvictionPolicy.TINY_LFU) {
+                sketch.ensureCapacity(maxSize);
+            }
+            while (maxSize > 0 && size > maxSize) {
+                delete(head, RemovalCause.SIZE);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Set the time to live of entries in this cache. Applies to entries already in
+     * the cache as well.
+     * 
+     * @param ttl The time to live in milliseconds, or 0 to never expire entries
+     */
+    public void setTtl(long ttl) {
+        lock.lock();
+        try {
+            this.ttl = ttl;
+            expireEntries(System.currentTimeMillis());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Set the policy used to pick entries for eviction. Existing entries keep
+     * their relative order.
+     * 
+     * @param evictionPolicy The new policy
+     */
+    public void setEvictionPolicy(@NotNull EvictionPolicy evictionPolicy) {
+        lock.lock();
+        try {
+            this.evictionPolicy = evictionPolicy;
+            if (evictionPolicy == EvictionPolicy.TINY_LFU) {
+                sketch.ensureCapacity(maxSize);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Remove all expired entries from the cache. This is called periodically for
+     * every cache, so there is usually no need to call it yourself.
+     */
+    @Override
+    public void cleanUp() {
+        lock.lock();
+        try {
+            expireEntries(System.currentTimeMillis());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Remove every entry from the cache.
+     */
+    public void clear() {
+        lock.lock();
+        try {
+            while (head != NIL) {
+                delete(head, RemovalCause.EXPLICIT);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Take a snapshot of this cache's statistics.
+     * 
+     * @return {@link CacheStats}
+     */
+    @Override
+    public CacheStats stats() {
+        return statsCounter.snapshot(size());
+    }
+
+    @SuppressWarnings("unchecked")
+    final T get(long hi, long lo) {
+        lock.lock();
+        try {
+            int hash = hash(hi, lo);
+            if (evictionPolicy == EvictionPolicy.TINY_LFU) {
+                sketch.increment(hash);
+            }
+
+            int slot = find(hi, lo, hash);
+            if (slot == NIL || expireIfNeeded(slot, System.currentTimeMillis())) {
+                statsCounter.recordMiss();
+                return null;
+            }
+
+            statsCounter.recordHit();
+            if (evictionPolicy != EvictionPolicy.FIFO) {
+                moveToBack(slot);
+            }
+            return (T) values[slot];
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return False if a live entry already exists, or TinyLFU rejected the value
+     */
+    final boolean put(long hi, long lo, T value, boolean replace) {
+        // A null value marks a free slot, so would break the probe chain
+        Objects.requireNonNull(value, "Cannot cache a null value");
+        lock.lock();
+        try {
+            long now = System.currentTimeMillis();
+            expireEntries(now);
+
+            int hash = hash(hi, lo);
+            int slot = find(hi, lo, hash);
+            if (slot != NIL) {
+                if (!replace) {
+                    return false;
+                }
+                delete(slot, RemovalCause.REPLACED);
+            }
+
+            if (maxSize > 0 && size >= maxSize) {
+                if (evictionPolicy == EvictionPolicy.TINY_LFU
+                        && sketch.frequency(hash) < sketch.frequency(hash(his[head], los[head]))) {
+                    // Not popular enough to displace anything. It was never
+                    // stored, so this is not counted as an eviction
+                    return false;
+                }
+                delete(head, RemovalCause.SIZE);
+            }
+
+            insert(hi, lo, hash, value, now);
+            statsCounter.recordPut();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    final T remove(long hi, long lo) {
+        lock.lock();
+        try {
+            int slot = find(hi, lo, hash(hi, lo));
+            if (slot == NIL) {
+                return null;
+            }
+
+            T value = (T) values[slot];
+            delete(slot, RemovalCause.EXPLICIT);
+            return value;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void allocate(int capacity) {
+        his = new long[capacity];
+        los = new long[capacity];
+        values = new Object[capacity];
+        insertionTimes = new long[capacity];
+        previous = new int[capacity];
+        next = new int[capacity];
+        writePrevious = new int[capacity];
+        writeNext = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    private int find(long hi, long lo, int hash) {
+        for (int slot = hash & mask; values[slot] != null; slot = (slot + 1) & mask) {
+            if (his[slot] == hi && los[slot] == lo) {
+                return slot;
+            }
+        }
+        return NIL;
+    }
+
+    private void insert(long hi, long lo, int hash, Object value, long insertionTime) {
+        if ((size + 1) * 4L > values.length * 3L) {
+            resize();
+        }
+
+        int slot = hash & mask;
+        while (values[slot] != null) {
+            slot = (slot + 1) & mask;
+        }
+
+        his[slot] = hi;
+        los[slot] = lo;
+        values[slot] = value;
+        insertionTimes[slot] = insertionTime;
+        size++;
+
+        previous[slot] = tail;
+        next[slot] = NIL;
+        if (tail == NIL) {
+            head = slot;
+        } else {
+            next[tail] = slot;
+        }
+        tail = slot;
+
+        writePrevious[slot] = writeTail;
+        writeNext[slot] = NIL;
+        if (writeTail == NIL) {
+            writeHead = slot;
+        } else {
+            writeNext[writeTail] = slot;
+        }
+        writeTail = slot;
+    }
+
+    /**
+     * Remove the entry in the given slot, then shift later entries of the same
+     * probe sequence back so that lookups never need tombstones.
+     */
+    private void delete(int slot, RemovalCause cause) {
+        unlinkOrder(slot);
+        unlinkWriteOrder(slot);
+        values[slot] = null;
+        size--;
+        statsCounter.recordRemoval(cause);
+
+        int gap = slot;
+        for (int current = (slot + 1) & mask; values[current] != null; current = (current + 1) & mask) {
+            int ideal = hash(his[current], los[current]) & mask;
+            // Only move entries whose ideal slot does not lie between the gap and
+            // where they are now
+            if (((current - ideal) & mask) >= ((current - gap) & mask)) {
+                move(current, gap);
+                gap = current;
+            }
+        }
+    }
+
+    private void move(int from, int to) {
+        his[to] = his[from];
+        los[to] = los[from];
+        values[to] = values[from];
+        insertionTimes[to] = insertionTimes[from];
+        values[from] = null;
+
+        previous[to] = previous[from];
+        next[to] = next[from];
+        if (previous[to] == NIL) {
+            head = to;
+        } else {
+            next[previous[to]] = to;
+        }
+        if (next[to] == NIL) {
+            tail = to;
+        } else {
+            previous[next[to]] = to;
+        }
+
+        writePrevious[to] = writePrevious[from];
+        writeNext[to] = writeNext[from];
+        if (writePrevious[to] == NIL) {
+            writeHead = to;
+        } else {
+            writeNext[writePrevious[to]] = to;
+        }
+        if (writeNext[to] == NIL) {
+            writeTail = to;
+        } else {
+            writePrevious[writeNext[to]] = to;
+        }
+    }
+
+    /**
+     * Double the table, keeping both the eviction and the write order.
+     */
+    private void resize() {
+        long[] oldHis = his;
+        long[] oldLos = los;
+        Object[] oldValues = values;
+        long[] oldInsertionTimes = insertionTimes;
+        int[] oldNext = next;
+        int[] oldWriteNext = writeNext;
+        int oldHead = head;
+        int oldWriteHead = writeHead;
+
+        allocate(oldValues.length * 2);
+        int[] moved = new int[oldValues.length];
+        Arrays.fill(moved, NIL);
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] == null) {
+                continue;
+            }
+
+            int slot = hash(oldHis[i], oldLos[i]) & mask;
+            while (values[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            his[slot] = oldHis[i];
+            los[slot] = oldLos[i];
+            values[slot] = oldValues[i];
+            insertionTimes[slot] = oldInsertionTimes[i];
+            moved[i] = slot;
+        }
+
+        head = tail = NIL;
+        for (int i = oldHead; i != NIL; i = oldNext[i]) {
+            int slot = moved[i];
+            previous[slot] = tail;
+            next[slot] = NIL;
+            if (tail == NIL) {
+                head = slot;
+            } else {
+                next[tail] = slot;
+            }
+            tail = slot;
+        }
+
+        writeHead = writeTail = NIL;
+        for (int i = oldWriteHead; i != NIL; i = oldWriteNext[i]) {
+            int slot = moved[i];
+            writePrevious[slot] = writeTail;
+            writeNext[slot] = NIL;
+            if (writeTail == NIL) {
+                writeHead = slot;
+            } else {
+                writeNext[writeTail] = slot;
+            }
+            writeTail = slot;
+        }
+    }
+
+    private void moveToBack(int slot) {
+        if (slot == tail) {
+            return;
+        }
+
+        unlinkOrder(slot);
+        previous[slot] = tail;
+        next[slot] = NIL;
+        next[tail] = slot;
+        tail = slot;
+    }
+
+    private void unlinkOrder(int slot) {
+        if (previous[slot] == NIL) {
+            head = next[slot];
+        } else {
+            next[previous[slot]] = next[slot];
+        }
+        if (next[slot] == NIL) {
+            tail = previous[slot];
+        } else {
+            previous[next[slot]] = previous[slot];
+        }
+    }
+
+    private void unlinkWriteOrder(int slot) {
+        if (writePrevious[slot] == NIL) {
+            writeHead = writeNext[slot];
+        } else {
+            writeNext[writePrevious[slot]] = writeNext[slot];
+        }
+        if (writeNext[slot] == NIL) {
+            writeTail = writePrevious[slot];
+        } else {
+            writePrevious[writeNext[slot]] = writePrevious[slot];
+        }
+    }
+
+    private boolean isExpired(int slot, long now) {
+        return ttl > 0 && now - insertionTimes[slot] >= ttl;
+    }
+
+    private boolean expireIfNeeded(int slot, long now) {
+        if (!isExpired(slot, now)) {
+            return false;
+        }
+        delete(slot, RemovalCause.EXPIRED);
+        return true;
+    }
+
+    /**
+     * Expire entries from the head of the write order until one is found that is
+     * still alive.
+     */
+    private void expireEntries(long now) {
+        while (writeHead != NIL && isExpired(writeHead, now)) {
+            delete(writeHead, RemovalCause.EXPIRED);
+        }
+    }
+
+    private static int hash(long hi, long lo) {
+        long h = hi * 0x9e3779b97f4a7c15L ^ lo;
+        h = (h ^ (h >>> 33)) * 0xff51afd7ed558ccdL;
+        h = (h ^ (h >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return (int) (h ^ (h >>> 33));
+    }
+}
@@ -0,0 +1,28 @@
+/*
+ * Copyright (c) 2020-2021 DumbDogDiner <dumbdogdiner.com>. All rights reserved.
+ * Licensed under the MIT license, see LICENSE for more information...
+ */
+package com.dumbdogdiner.stickyapi.common.cache;
+
+/**
+ * Why an entry left a {@link Cache}.
+ */
+public enum RemovalCause {
+    /**
+     * The entry was removed by {@link Cache#remove(Cacheable)} or one of its
+     * variants.
+     */
+    EXPLICIT,
+    /**
+     * The entry was overwritten by {@link Cache#update(Cacheable)}.
+     */
+    REPLACED,
+    /**
+     * The entry was evicted to keep the cache within its <code>maxSize</code>.
+     */
+    SIZE,
+    /**
+     * The entry outlived the cache's <code>ttl</code>.
+     */
+    EXPIRED
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2020-2021 DumbDogDiner <dumbdogdiner.com>. All rights reserved.
+ * Licensed under the MIT license, see LICENSE for more information...
+ */
+package com.dumbdogdiner.stickyapi.common.cache;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Maps an attribute of the cached objects back to the entries holding it, so
+ * that a {@link Cache} can be searched by that attribute without a scan.
+ * <p>
+ * Each attribute value locks only its own bucket while being updated. The index
+ * may briefly contain entries that have just been removed from the cache, so
+ * callers must skip retired entries.
+ */
+final class SecondaryIndex<T extends Cacheable> {
+    private final Function<? super T, ?> extractor;
+    private final ConcurrentHashMap<Object, Set<CacheEntry<T>>> buckets = new ConcurrentHashMap<>();
+
+    SecondaryIndex(Function<? super T, ?> extractor) {
+        this.extractor = extractor;
+    }
+
+    void add(CacheEntry<T> entry) {
+        Object value = extractor.apply(entry.value);
+        if (value == null) {
+            return;
+        }
+
+        buckets.compute(value, (k, bucket) -> {
+            if (bucket == null) {
+                bucket = ConcurrentHashMap.newKeySet();
+            }
+            bucket.add(entry);
+            return bucket;
+        });
+
+        // Lost a race with a remove that ran before we were added - undo it
+        if (entry.retired) {
+            remove(entry);
+        }
+    }
+
+    void remove(CacheEntry<T> entry) {
+        Object value = extractor.apply(entry.value);
+        if (value == null) {
+            return;
+        }
+
+        buckets.computeIfPresent(value, (k, bucket) -> {
+            bucket.remove(entry);
+            return bucket.isEmpty() ? null : bucket;
+        });
+    }
+
+    Set<CacheEntry<T>> get(Object value) {
+        Set<CacheEntry<T>> bucket = buckets.get(value);
+        return bucket == null ? Collections.emptySet() : bucket;
+    }
+}
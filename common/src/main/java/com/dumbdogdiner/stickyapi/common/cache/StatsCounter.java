@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2020-2021 DumbDogDiner <dumbdogdiner.com>. All rights reserved.
+ * Licensed under the MIT license, see LICENSE for more information...
+ */
+package com.dumbdogdiner.stickyapi.common.cache;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The live counters behind a cache's {@link CacheStats}. Every counter is a
+ * {@link LongAdder}, so recording never contends between threads.
+ */
+final class StatsCounter {
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder puts = new LongAdder();
+    private final LongAdder[] removals = new LongAdder[RemovalCause.values().length];
+    private final LongAdder finds = new LongAdder();
+    private final LongAdder findScanned = new LongAdder();
+    private final LongAdder loadSuccesses = new LongAdder();
+    private final LongAdder loadFailures = new LongAdder();
+    private final LongAdder loadTime = new LongAdder();
+
+    StatsCounter() {
+        for (int i = 0; i < removals.length; i++) {
+            removals[i] = new LongAdder();
+        }
+    }
+
+    void recordHit() {
+        hits.increment();
+    }
+
+    void recordMiss() {
+        misses.increment();
+    }
+
+    void recordPut() {
+        puts.increment();
+    }
+
+    void recordRemoval(RemovalCause cause) {
+        removals[cause.ordinal()].increment();
+    }
+
+    void recordFind(int scanned) {
+        finds.increment();
+        findScanned.add(scanned);
+    }
+
+    void recordLoad(boolean success, long nanos) {
+        (success ? loadSuccesses : loadFailures).increment();
+        loadTime.add(nanos);
+    }
+
+    CacheStats snapshot(int size) {
+        long[] removalCounts = new long[removals.length];
+        for (int i = 0; i < removals.length; i++) {
+            removalCounts[i] = removals[i].sum();
+        }
+        return new CacheStats(size, hits.sum(), misses.sum(), puts.sum(), removalCounts, finds.sum(),
+                findScanned.sum(), loadSuccesses.sum(), loadFailures.sum(), loadTime.sum());
+    }
+}
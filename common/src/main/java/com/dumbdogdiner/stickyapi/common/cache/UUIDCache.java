@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2020-2021 DumbDogDiner <dumbdogdiner.com>. All rights reserved.
+ * Licensed under the MIT license, see LICENSE for more information...
+ */
+package com.dumbdogdiner.stickyapi.common.cache;
+
+import java.util.UUID;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A cache keyed by {@link UUID}, for example player IDs. Keys are stored as
+ * their two halves and never turned into strings.
+ * 
+ * @see PrimitiveCache
+ */
+public class UUIDCache<T> extends PrimitiveCache<T> {
+    /**
+     * Retrieve an object from the cache.
+     * 
+     * @param key The key of the object
+     * @return The requested object, if it exists
+     */
+    public T get(@NotNull UUID key) {
+        return get(key.getMostSignificantBits(), key.getLeastSignificantBits());
+    }
+
+    /**
+     * Store an object in the cache, unless the key is already in use.
+     * 
+     * @param key   The key to store the object under
+     * @param value The object to store
+     * @return False if the object was not stored
+     */
+    public boolean put(@NotNull UUID key, @NotNull T value) {
+        return put(key.getMostSignificantBits(), key.getLeastSignificantBits(), value, false);
+    }
+
+    /**
+     * Store an object in the cache, replacing any object with the same key.
+     * 
+     * @param key   The key to store the object under
+     * @param value The object to store
+     * @return False if the object was not stored, because TinyLFU rejected a new
+     *         key
+     */
+    public boolean update(@NotNull UUID key, @NotNull T value) {
+        return put(key.getMostSignificantBits(), key.getLeastSignificantBits(), value, true);
+    }
+
+    /**
+     * Remove an object from the cache.
+     * 
+     * @param key The key to remove
+     * @return The removed object, if it exists
+     */
+    public T remove(@NotNull UUID key) {
+        return remove(key.getMostSignificantBits(), key.getLeastSignificantBits());
+    }
+}
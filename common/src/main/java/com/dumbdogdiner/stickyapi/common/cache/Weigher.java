@@ -0,0 +1,35 @@
+/*
+ * Copyright (c) 2020-2021 DumbDogDiner <dumbdogdiner.com>. All rights reserved.
+ * Licensed under the MIT license, see LICENSE for more information...
+ */
+package com.dumbdogdiner.stickyapi.common.cache;
+
+import com.dumbdogdiner.stickyapi.common.util.MemoryUtil;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Calculates how much of a {@link Cache}'s <code>maxWeight</code> an object
+ * uses up. Objects are weighed once, when they are stored.
+ */
+@FunctionalInterface
+public interface Weigher<T> {
+    /**
+     * Return the weight of the given object. Must not be negative.
+     * 
+     * @param object The object to weigh
+     * @return {@link Long}
+     */
+    long weigh(@NotNull T object);
+
+    /**
+     * Return a weigher that charges each object its approximate size in bytes, as
+     * estimated by {@link MemoryUtil#getSizeOf(Object)}.
+     * 
+     * @param <T> The type of the objects to weigh
+     * @return {@link Weigher}
+     */
+    static <T> Weigher<T> memory() {
+        return object -> (MemoryUtil.getSizeOf(object) + 7) / 8;
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2020-2021 DumbDogDiner <dumbdogdiner.com>. All rights reserved.
+ * Licensed under the MIT license, see LICENSE for more information...
+ */
+package com.dumbdogdiner.stickyapi.common.cache;
+
+/**
+ * Keeps cache entries in the order they were inserted. Since every entry of a
+ * cache shares the same ttl, this is also the order in which they expire, so
+ * expired entries can always be found at the head of the deque.
+ * <p>
+ * Entries are ordered by their insertion time rather than by when they are
+ * added, so that an entry promoted back from a second tier, which keeps its
+ * original insertion time, does not hide expired entries behind it.
+ * <p>
+ * Not thread-safe - callers must hold the owning cache's eviction lock.
+ */
+final class WriteOrderDeque<T extends Cacheable> {
+    private CacheEntry<T> head;
+    private CacheEntry<T> tail;
+
+    CacheEntry<T> peekFirst() {
+        return head;
+    }
+
+    /**
+     * Add an entry in insertion time order. Usually the entry is the newest, so
+     * this appends it - otherwise the entries older than it are skipped from the
+     * head.
+     */
+    void add(CacheEntry<T> entry) {
+        if (tail == null || tail.insertionTime <= entry.insertionTime) {
+            addLast(entry);
+            return;
+        }
+
+        CacheEntry<T> next = head;
+        while (next.insertionTime <= entry.insertionTime) {
+            next = next.writeNext;
+        }
+        entry.writeNext = next;
+        entry.writePrevious = next.writePrevious;
+        if (next.writePrevious == null) {
+            head = entry;
+        } else {
+            next.writePrevious.writeNext = entry;
+        }
+        next.writePrevious = entry;
+    }
+
+    private void addLast(CacheEntry<T> entry) {
+        entry.writePrevious = tail;
+        entry.writeNext = null;
+        if (tail == null) {
+            head = entry;
+        } else {
+            tail.writeNext = entry;
+        }
+        tail = entry;
+    }
+
+    void remove(CacheEntry<T> entry) {
+        if (entry.writePrevious == null) {
+            head = entry.writeNext;
+        } else {
+            entry.writePrevious.writeNext = entry.writeNext;
+        }
+
+        if (entry.writeNext == null) {
+            tail = entry.writePrevious;
+        } else {
+            entry.writeNext.writePrevious = entry.writePrevious;
+        }
+
+        entry.writePrevious = null;
+        entry.writeNext = null;
+    }
+}
@@ -8,6 +8,8 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 
+import com.dumbdogdiner.stickyapi.common.arguments.ArgumentSchema;
+
 import org.jetbrains.annotations.NotNull;
 
 import lombok.Getter;
@@ -31,9 +33,36 @@ public abstract class CommandBuilder<T extends CommandBuilder<T>> {
     List<String> aliases = new ArrayList<>();
     @Getter
     Long cooldown = 0L;
+
+    /**
+     * Tracks when each sender may next run this command. May be shared with other
+     * commands.
+     */
+    @Getter
+    Cooldown cooldowns = Cooldown.fixed(0L);
     @Getter
     HashMap<String, T> subCommands = new HashMap<>();
 
+    /**
+     * The arguments this command takes, or null if its executor reads them itself.
+     */
+    @Getter
+    ArgumentSchema argumentSchema;
+
+    /**
+     * Runs the asynchronous executions of this command, and holds its timeout and
+     * concurrency limits.
+     */
+    @Getter
+    final CommandEngine engine = new CommandEngine();
+
+    /**
+     * This command and its sub-commands, as compiled when it was last built. Null
+     * if it has not been built yet.
+     */
+    @Getter
+    DispatchTrie<T> dispatchTrie;
+
     /**
      * Create a new [@link CommandBuilder} instance
      * <p>
@@ -73,6 +102,61 @@ public abstract class CommandBuilder<T extends CommandBuilder<T>> {
      */
     public T cooldown(@NotNull Long cooldown) {
         this.cooldown = cooldown;
+        this.cooldowns = Cooldown.fixed(cooldown);
+        return (T) this;
+    }
+
+    /**
+     * Set the cooldown for this command. Passing the same {@link Cooldown} to
+     * several commands makes them share it, and
+     * {@link Cooldown#tokenBucket(int, long)} allows bursts of uses.
+     * 
+     * @param cooldown to use
+     * @return {@link CommandBuilder}
+     */
+    public T cooldown(@NotNull Cooldown cooldown) {
+        this.cooldown = cooldown.getInterval();
+        this.cooldowns = cooldown;
+        return (T) this;
+    }
+
+    /**
+     * Set how long an asynchronous execution of this command may run before it is
+     * aborted with {@link ExitCode#EXIT_TIMEOUT}
+     * 
+     * @param timeout in milliseconds, or 0 for no timeout
+     * @return {@link CommandBuilder}
+     */
+    public T timeout(@NotNull Long timeout) {
+        this.engine.setTimeout(timeout);
+        return (T) this;
+    }
+
+    /**
+     * Limit how many asynchronous executions of this command may run at once.
+     * Executions over the limit exit with {@link ExitCode#EXIT_BUSY}.
+     * 
+     * @param maxConcurrent          across all senders, or 0 for no limit
+     * @param maxConcurrentPerSender for a single sender, or 0 for no limit
+     * @return {@link CommandBuilder}
+     */
+    public T concurrency(@NotNull Integer maxConcurrent, @NotNull Integer maxConcurrentPerSender) {
+        this.engine.setMaxConcurrent(maxConcurrent);
+        this.engine.setMaxConcurrentPerSender(maxConcurrentPerSender);
+        return (T) this;
+    }
+
+    /**
+     * Declare the arguments this command takes. They are read before the executor
+     * runs, which is passed them already parsed, and the command exits with
+     * {@link ExitCode#EXIT_INVALID_SYNTAX} if a required one is missing. The schema
+     * also provides the <code>usage</code> variable and completes the arguments.
+     * 
+     * @param schema The arguments
+     * @return {@link CommandBuilder}
+     */
+    public T arguments(@NotNull ArgumentSchema schema) {
+        this.argumentSchema = schema;
         return (T) this;
     }
 
@@ -175,4 +259,16 @@ public abstract class CommandBuilder<T extends CommandBuilder<T>> {
         this.subCommands.put(builder.name, builder);
         return (T) this;
     }
+
+    /**
+     * Compile this command and its sub-commands into a {@link DispatchTrie}.
+     * Called when the command is built - later changes to the sub-commands take
+     * effect the next time it is.
+     * 
+     * @return {@link DispatchTrie}
+     */
+    protected DispatchTrie<T> compile() {
+        this.dispatchTrie = DispatchTrie.compile((T) this);
+        return this.dispatchTrie;
+    }
 }
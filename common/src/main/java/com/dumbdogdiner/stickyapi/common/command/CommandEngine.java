@@ -0,0 +1,310 @@
+/*
+ * Copyright (c) 2020-2021 DumbDogDiner <dumbdogdiner.com>. All rights reserved.
+ * Licensed under the MIT license, see LICENSE for more information...
+ */
+package com.dumbdogdiner.stickyapi.common.command;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+
+import com.dumbdogdiner.stickyapi.StickyAPI;
+
+import org.jetbrains.annotations.NotNull;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Runs the asynchronous executions of a single command, enforcing its timeout
+ * and concurrency limits.
+ * <p>
+ * Every execution is tracked against the UUID of the sender that started it, so
+ * that {@link #cancelAll(UUID)} can abort everything a player still has in
+ * flight when they leave. Results are handed back through a caller-supplied
+ * executor, which platforms use to hop back onto their main thread.
+ *
+ * @since 3.0
+ */
+public class CommandEngine {
+    /**
+     * A UUID for senders that cannot be told apart. Prefer
+     * {@link #senderId(String)}, so that each sender is tracked separately.
+     */
+    public static final UUID CONSOLE = new UUID(0L, 0L);
+
+    /**
+     * Derive a stable UUID for a sender that has none of its own, such as the
+     * console, an RCON connection or a command block, so that each has its own
+     * cooldown and concurrency slots.
+     *
+     * @param identity Something that tells the sender apart from every other, such
+     *                 as its type and name
+     * @return {@link UUID}
+     */
+    public static UUID senderId(@NotNull String identity) {
+        return UUID.nameUUIDFromBytes(identity.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static final Map<UUID, Set<Execution>> executionsBySender = new ConcurrentHashMap<>();
+
+    /**
+     * How long an execution may run before it is aborted with
+     * {@link ExitCode#EXIT_TIMEOUT}, in milliseconds. Zero disables the timeout.
+     */
+    @Getter
+    @Setter
+    private volatile long timeout = 0L;
+
+    /**
+     * How many executions of this command may run at once. Zero means unlimited.
+     */
+    @Getter
+    @Setter
+    private volatile int maxConcurrent = 0;
+
+    /**
+     * How many executions of this command a single sender may run at once. Zero
+     * means unlimited.
+     */
+    @Getter
+    @Setter
+    private volatile int maxConcurrentPerSender = 0;
+
+    // Guarded by this
+    private int running = 0;
+    private final Map<UUID, Integer> runningBySender = new HashMap<>();
+
+    /**
+     * Run a blocking command body on {@link StickyAPI#getPool()}.
+     * <p>
+     * The returned future completes on <code>callback</code> with the body's exit
+     * code, {@link ExitCode#EXIT_ERROR} if it threw,
+     * {@link ExitCode#EXIT_TIMEOUT} if it ran out of time or
+     * {@link ExitCode#EXIT_BUSY} if a concurrency limit was reached or the pool
+     * is saturated. It is cancelled if the sender's executions are cancelled, and
+     * cancelling it interrupts the body. If <code>callback</code> refuses the
+     * result, for example because its plugin has been disabled, the future
+     * completes exceptionally with the error it threw.
+     *
+     * @param sender   The UUID of the sender running the command
+     * @param body     The command body
+     * @param callback The executor the result is delivered on
+     * @return {@link CompletableFuture}
+     */
+    public CompletableFuture<ExitCode> execute(@NotNull UUID sender, @NotNull Callable<ExitCode> body,
+            @NotNull Executor callback) {
+        return start(sender, callback, execution -> {
+            CompletableFuture<ExitCode> work = new CompletableFuture<>();
+            execution.task = StickyAPI.getPool().submit(() -> {
+                try {
+                    work.complete(body.call());
+                } catch (Throwable e) {
+                    work.completeExceptionally(e);
+                }
+            });
+            return work;
+        });
+    }
+
+    /**
+     * Run a non-blocking command body, which returns a future for its own work
+     * rather than occupying a thread.
+     * <p>
+     * Timeouts and cancellation cancel the future the body returned. Results are
+     * reported the same way as {@link #execute(UUID, Callable, Executor)}.
+     *
+     * @param sender   The UUID of the sender running the command
+     * @param body     The command body
+     * @param callback The executor the result is delivered on
+     * @return {@link CompletableFuture}
+     */
+    public CompletableFuture<ExitCode> executeAsync(@NotNull UUID sender,
+            @NotNull Supplier<CompletableFuture<ExitCode>> body, @NotNull Executor callback) {
+        return start(sender, callback, execution -> body.get());
+    }
+
+    /**
+     * Cancel every execution, of any command, the given sender has in flight.
+     *
+     * @param sender The UUID of the sender
+     */
+    public static void cancelAll(@NotNull UUID sender) {
+        Set<Execution> executions = executionsBySender.get(sender);
+        if (executions != null) {
+            for (Execution execution : executions) {
+                execution.abort(false);
+            }
+        }
+    }
+
+    /**
+     * @return The number of executions of this command currently running
+     */
+    public synchronized int getRunning() {
+        return running;
+    }
+
+    @FunctionalInterface
+    private interface Launcher {
+        CompletableFuture<ExitCode> launch(Execution execution);
+    }
+
+    private CompletableFuture<ExitCode> start(UUID sender, Executor callback, Launcher launcher) {
+        CompletableFuture<ExitCode> result = new CompletableFuture<>();
+        if (!acquire(sender)) {
+            deliver(callback, result, ExitCode.EXIT_BUSY);
+            return result;
+        }
+
+        Execution execution = new Execution(sender, result, callback);
+        executionsBySender.compute(sender, (key, executions) -> {
+            if (executions == null) {
+                executions = ConcurrentHashMap.newKeySet();
+            }
+            executions.add(execution);
+            return executions;
+        });
+        result.whenComplete((code, error) -> {
+            if (result.isCancelled()) {
+                execution.abort(false);
+            }
+        });
+
+        long timeout = this.timeout;
+        if (timeout > 0) {
+            execution.timer = StickyAPI.getTimer().schedule(() -> execution.abort(true), timeout,
+                    TimeUnit.MILLISECONDS);
+        }
+
+        try {
+            execution.work = launcher.launch(execution);
+        } catch (Throwable e) {
+            execution.work = CompletableFuture.failedFuture(e);
+        }
+        if (execution.work == null) {
+            execution.work = CompletableFuture.failedFuture(new NullPointerException("A null future was returned"));
+        }
+        execution.work.whenComplete(execution::finish);
+        if (execution.aborted) {
+            // Cancelled before the work was assigned
+            execution.work.cancel(false);
+        }
+        return result;
+    }
+
+    private synchronized boolean acquire(UUID sender) {
+        int bySender = runningBySender.getOrDefault(sender, 0);
+        if ((maxConcurrent > 0 && running >= maxConcurrent)
+                || (maxConcurrentPerSender > 0 && bySender >= maxConcurrentPerSender)) {
+            return false;
+        }
+        running++;
+        runningBySender.put(sender, bySender + 1);
+        return true;
+    }
+
+    private synchronized void release(UUID sender) {
+        running--;
+        int bySender = runningBySender.getOrDefault(sender, 1) - 1;
+        if (bySender <= 0) {
+            runningBySender.remove(sender);
+        } else {
+            runningBySender.put(sender, bySender);
+        }
+    }
+
+    private final class Execution {
+        final UUID sender;
+        final CompletableFuture<ExitCode> result;
+        final Executor callback;
+
+        volatile CompletableFuture<ExitCode> work;
+        volatile Future<?> task;
+        volatile ScheduledFuture<?> timer;
+        volatile boolean aborted = false;
+        volatile boolean timedOut = false;
+
+        Execution(UUID sender, CompletableFuture<ExitCode> result, Executor callback) {
+            this.sender = sender;
+            this.result = result;
+            this.callback = callback;
+        }
+
+        void abort(boolean timedOut) {
+            if (timedOut) {
+                this.timedOut = true;
+            }
+            aborted = true;
+
+            // Cancel the work before interrupting, so a body that returns when
+            // interrupted can't complete it first
+            CompletableFuture<ExitCode> work = this.work;
+            if (work != null) {
+                work.cancel(false);
+            }
+            Future<?> task = this.task;
+            if (task != null) {
+                task.cancel(true);
+            }
+        }
+
+        void finish(ExitCode code, Throwable error) {
+            ScheduledFuture<?> timer = this.timer;
+            if (timer != null) {
+                timer.cancel(false);
+            }
+            release(sender);
+            executionsBySender.computeIfPresent(sender, (key, executions) -> {
+                executions.remove(this);
+                return executions.isEmpty() ? null : executions;
+            });
+
+            if (error instanceof CompletionException && error.getCause() != null) {
+                error = error.getCause();
+            }
+
+            if (error instanceof RejectedExecutionException) {
+                // The pool is saturated, so the body never started
+                code = ExitCode.EXIT_BUSY;
+            } else if (error instanceof CancellationException) {
+                if (!timedOut) {
+                    result.cancel(false);
+                    return;
+                }
+                code = ExitCode.EXIT_TIMEOUT;
+            } else if (error != null) {
+                StickyAPI.getLogger().log(Level.SEVERE, "A command threw an exception", error);
+                code = ExitCode.EXIT_ERROR;
+            } else if (code == null) {
+                StickyAPI.getLogger().log(Level.SEVERE, "A command returned a null exit code");
+                code = ExitCode.EXIT_ERROR;
+            }
+
+            deliver(callback, result, code);
+        }
+    }
+
+    private static void deliver(Executor callback, CompletableFuture<ExitCode> result, ExitCode code) {
+        try {
+            callback.execute(() -> result.complete(code));
+        } catch (RuntimeException e) {
+            // Otherwise the result would never complete
+            result.completeExceptionally(e);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2020-2021 DumbDogDiner <dumbdogdiner.com>. All rights reserved.
+ * Licensed under the MIT license, see LICENSE for more information...
+ */
+package com.dumbdogdiner.stickyapi.common.command;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import com.dumbdogdiner.stickyapi.common.cache.Cache;
+import com.dumbdogdiner.stickyapi.common.cache.Cacheable;
+import com.dumbdogdiner.stickyapi.common.cache.EvictionPolicy;
+import com.dumbdogdiner.stickyapi.common.scheduler.Scheduler;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Remembers a command's tab completions for one tick, keyed by sender and the
+ * input being completed.
+ * <p>
+ * Clients often ask for the same completion several times in quick succession,
+ * and servers may ask once asynchronously and once on the main thread, so
+ * repeated requests are answered without running the completer again.
+ *
+ * @since 3.0
+ */
+public final class CompletionCache {
+    /**
+     * The most completions remembered at once.
+     */
+    static final int MAX_SIZE = 1024;
+
+    private final Cache<Completion> cache = new Cache<>(Completion.class);
+
+    /**
+     * Create a new completion cache.
+     *
+     * @param name The name the cache's statistics are reported under
+     */
+    public CompletionCache(@NotNull String name) {
+        cache.setName(name);
+        cache.setTtl(Scheduler.TICK_MILLIS);
+        cache.setEvictionPolicy(EvictionPolicy.LRU);
+        cache.setMaxSize(MAX_SIZE);
+    }
+
+    /**
+     * Get the completions for the given input, computing them if they were not
+     * already computed in the last tick.
+     *
+     * @param sender   The UUID of the sender completing
+     * @param input    Everything the sender has typed after the command
+     * @param complete Computes the completions on a miss
+     * @return {@link List} of completions, which the caller is free to modify
+     */
+    public List<String> get(@NotNull UUID sender, @NotNull String input, @NotNull Supplier<List<String>> complete) {
+        String key = sender.toString() + ' ' + input;
+        Completion completion = cache.get(key);
+        if (completion != null) {
+            return new ArrayList<>(completion.completions);
+        }
+
+        List<String> completions = complete.get();
+        if (completions != null) {
+            cache.put(new Completion(key, new ArrayList<>(completions)));
+        }
+        return completions;
+    }
+
+    static final class Completion implements Cacheable {
+        private final String key;
+        final List<String> completions;
+
+        Completion(String key, List<String> completions) {
+            this.key = key;
+            this.completions = completions;
+        }
+
+        @Override
+        public String getKey() {
+            return key;
+        }
+    }
+}
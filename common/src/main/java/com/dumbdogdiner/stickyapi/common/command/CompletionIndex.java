@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) 2020-2021 DumbDogDiner <dumbdogdiner.com>. All rights reserved.
+ * Licensed under the MIT license, see LICENSE for more information...
+ */
+package com.dumbdogdiner.stickyapi.common.command;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.TreeSet;
+
+import com.dumbdogdiner.stickyapi.common.translation.LocaleProvider;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A sorted set of tab completion candidates, answering prefix queries in
+ * O(log n + k) for k matches.
+ * <p>
+ * Candidates are kept in an array sorted case-insensitively, so every candidate
+ * starting with a prefix sits in one run found by binary search. Reads never
+ * lock; changes copy the array and swap it in, which suits sources such as the
+ * online players that are queried far more often than they change.
+ *
+ * @since 3.0
+ */
+public final class CompletionIndex {
+    private static final String[] EMPTY = new String[0];
+
+    private volatile String[] candidates;
+
+    /**
+     * Create an empty index.
+     */
+    public CompletionIndex() {
+        this.candidates = EMPTY;
+    }
+
+    private CompletionIndex(String[] candidates) {
+        this.candidates = candidates;
+    }
+
+    /**
+     * Create an index of the given candidates.
+     *
+     * @param candidates The candidates
+     * @return {@link CompletionIndex}
+     */
+    public static CompletionIndex of(@NotNull Collection<String> candidates) {
+        return new CompletionIndex(sorted(candidates));
+    }
+
+    /**
+     * Create an index of the given candidates.
+     *
+     * @param candidates The candidates
+     * @return {@link CompletionIndex}
+     */
+    public static CompletionIndex of(@NotNull String... candidates) {
+        return of(Arrays.asList(candidates));
+    }
+
+    /**
+     * Create an index of the lower-cased names of an enum's constants.
+     *
+     * @param type The enum class
+     * @return {@link CompletionIndex}
+     */
+    public static CompletionIndex ofEnum(@NotNull Class<? extends Enum<?>> type) {
+        List<String> names = new ArrayList<>();
+        for (Enum<?> constant : type.getEnumConstants()) {
+            names.add(constant.name().toLowerCase(Locale.ROOT));
+        }
+        return of(names);
+    }
+
+    /**
+     * Create an index of the names of the locales a provider has loaded. Locales
+     * loaded later are not included.
+     *
+     * @param provider The locale provider
+     * @return {@link CompletionIndex}
+     */
+    public static CompletionIndex ofLocales(@NotNull LocaleProvider provider) {
+        return of(provider.getLoadedLocales().keySet());
+    }
+
+    /**
+     * Get every candidate starting with the given prefix, ignoring case.
+     *
+     * @param prefix The partial argument
+     * @return {@link List} of candidates, sorted case-insensitively
+     */
+    public List<String> complete(@NotNull String prefix) {
+        return complete(candidates, prefix);
+    }
+
+    /**
+     * Add a candidate, if it is not already present.
+     *
+     * @param candidate The candidate to add
+     * @return true if the candidate was added
+     */
+    public synchronized boolean add(@NotNull String candidate) {
+        String[] current = candidates;
+        int index = indexOf(current, candidate);
+        if (index >= 0) {
+            return false;
+        }
+
+        int insertion = -(index + 1);
+        String[] next = new String[current.length + 1];
+        System.arraycopy(current, 0, next, 0, insertion);
+        next[insertion] = candidate;
+        System.arraycopy(current, insertion, next, insertion + 1, current.length - insertion);
+        candidates = next;
+        return true;
+    }
+
+    /**
+     * Remove a candidate.
+     *
+     * @param candidate The candidate to remove
+     * @return true if the candidate was present
+     */
+    public synchronized boolean remove(@NotNull String candidate) {
+        String[] current = candidates;
+        int index = indexOf(current, candidate);
+        if (index < 0) {
+            return false;
+        }
+
+        String[] next = new String[current.length - 1];
+        System.arraycopy(current, 0, next, 0, index);
+        System.arraycopy(current, index + 1, next, index, next.length - index);
+        candidates = next;
+        return true;
+    }
+
+    /**
+     * Replace every candidate at once.
+     *
+     * @param candidates The new candidates
+     */
+    public void replaceAll(@NotNull Collection<String> candidates) {
+        String[] next = sorted(candidates);
+        synchronized (this) {
+            this.candidates = next;
+        }
+    }
+
+    /**
+     * @return The number of candidates
+     */
+    public int size() {
+        return candidates.length;
+    }
+
+    private static String[] sorted(Collection<String> candidates) {
+        TreeSet<String> set = new TreeSet<>(CompletionIndex::compare);
+        set.addAll(candidates);
+        return set.toArray(EMPTY);
+    }
+
+    /**
+     * Case-insensitive, falling back to case-sensitive so that candidates only
+     * differing in case are kept apart.
+     */
+    private static int compare(String first, String second) {
+        int comparison = String.CASE_INSENSITIVE_ORDER.compare(first, second);
+        return comparison != 0 ? comparison : first.compareTo(second);
+    }
+
+    /**
+     * Find a candidate in a sorted array.
+     *
+     * @return its index, or <code>-(insertion point) - 1</code> if absent
+     */
+    private static int indexOf(String[] sorted, String candidate) {
+        return Arrays.binarySearch(sorted, candidate, CompletionIndex::compare);
+    }
+
+    /**
+     * Find the first element of a sorted array that is not case-insensitively
+     * less than the given key.
+     */
+    static int lowerBound(String[] sorted, String key) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (String.CASE_INSENSITIVE_ORDER.compare(sorted[middle], key) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Collect the elements of a case-insensitively sorted array starting with the
+     * given prefix.
+     */
+    static List<String> complete(String[] sorted, String prefix) {
+        List<String> matches = new ArrayList<>();
+        for (int i = lowerBound(sorted, prefix); i < sorted.length
+                && sorted[i].regionMatches(true, 0, prefix, 0, prefix.length()); i++) {
+            matches.add(sorted[i]);
+        }
+        return matches;
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2020-2021 DumbDogDiner <dumbdogdiner.com>. All rights reserved.
+ * Licensed under the MIT license, see LICENSE for more information...
+ */
+package com.dumbdogdiner.stickyapi.common.command;
+
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+import com.dumbdogdiner.stickyapi.StickyAPI;
+
+import org.jetbrains.annotations.NotNull;
+
+import lombok.Getter;
+
+/**
+ * Per-sender rate limiting for commands, keyed by UUID.
+ * <p>
+ * A cooldown is a token bucket: each sender may use it <code>capacity</code>
+ * times in a burst, and regains one use every <code>interval</code>
+ * milliseconds. A plain cooldown is a bucket with a single token. Instead of a
+ * token count and a refill time, each sender is stored as the single time at
+ * which their bucket will be full again, which is updated atomically with
+ * {@link ConcurrentHashMap#compute}.
+ * <p>
+ * Senders whose bucket has refilled are indistinguishable from new senders, so
+ * they are purged periodically from StickyAPI's shared timer. Pass the same
+ * instance to several commands to have them share one cooldown.
+ *
+ * @since 3.0
+ */
+public final class Cooldown {
+    /**
+     * How often every cooldown is swept for refilled senders, in milliseconds.
+     */
+    static final long PURGE_INTERVAL = 30_000L;
+
+    private static final ConcurrentLinkedQueue<WeakReference<Cooldown>> cooldowns = new ConcurrentLinkedQueue<>();
+
+    static {
+        StickyAPI.getTimer().scheduleAtFixedRate(Cooldown::purgeAll, PURGE_INTERVAL, PURGE_INTERVAL,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * The number of uses a sender may make in a burst.
+     */
+    @Getter
+    private final int capacity;
+
+    /**
+     * How long it takes a sender to regain one use, in milliseconds.
+     */
+    @Getter
+    private final long interval;
+
+    private final ConcurrentHashMap<UUID, Long> fullAt = new ConcurrentHashMap<>();
+
+    private Cooldown(int capacity, long interval) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1");
+        }
+        if (interval < 0) {
+            throw new IllegalArgumentException("Interval cannot be negative");
+        }
+        this.capacity = capacity;
+        this.interval = interval;
+        cooldowns.add(new WeakReference<>(this));
+    }
+
+    /**
+     * Create a cooldown allowing one use per sender every
+     * <code>cooldown</code> milliseconds.
+     *
+     * @param cooldown in milliseconds, or 0 for no cooldown
+     * @return {@link Cooldown}
+     */
+    public static Cooldown fixed(long cooldown) {
+        return new Cooldown(1, cooldown);
+    }
+
+    /**
+     * Create a token bucket, allowing each sender a burst of
+     * <code>capacity</code> uses and refilling one every
+     * <code>refillInterval</code> milliseconds.
+     *
+     * @param capacity       The size of the burst
+     * @param refillInterval in milliseconds
+     * @return {@link Cooldown}
+     */
+    public static Cooldown tokenBucket(int capacity, long refillInterval) {
+        return new Cooldown(capacity, refillInterval);
+    }
+
+    /**
+     * Use up one token for the given sender, if they have one.
+     *
+     * @param sender The UUID of the sender
+     * @return 0 if the sender had a token, otherwise how long until they have one
+     *         in milliseconds
+     */
+    public long tryAcquire(@NotNull UUID sender) {
+        if (interval == 0) {
+            return 0;
+        }
+
+        long now = System.currentTimeMillis();
+        long burst = capacity * interval;
+        long[] remaining = { 0 };
+        fullAt.compute(sender, (key, full) -> {
+            long next = Math.max(full == null ? now : full, now) + interval;
+            if (next - now > burst) {
+                remaining[0] = next - now - burst;
+                return full;
+            }
+            return next;
+        });
+        return remaining[0];
+    }
+
+    /**
+     * Get how long until the given sender has a token, without using one.
+     *
+     * @param sender The UUID of the sender
+     * @return 0 if the sender has a token, otherwise how long until they have one
+     *         in milliseconds
+     */
+    public long getRemaining(@NotNull UUID sender) {
+        Long full = fullAt.get(sender);
+        if (full == null) {
+            return 0;
+        }
+        return Math.max(0, full - System.currentTimeMillis() - (capacity - 1) * interval);
+    }
+
+    /**
+     * Refill the given sender's bucket.
+     *
+     * @param sender The UUID of the sender
+     */
+    public void reset(@NotNull UUID sender) {
+        fullAt.remove(sender);
+    }
+
+    /**
+     * @return The number of senders currently being tracked
+     */
+    public int size() {
+        return fullAt.size();
+    }
+
+    /**
+     * Forget every sender whose bucket has refilled. This runs automatically, but
+     * may be called manually.
+     */
+    public void purge() {
+        long now = System.currentTimeMillis();
+        // Conditional on the value, so a sender who used the cooldown again
+        // since it was read is kept
+        fullAt.values().removeIf(full -> full <= now);
+    }
+
+    private static void purgeAll() {
+        Iterator<WeakReference<Cooldown>> iterator = cooldowns.iterator();
+        while (iterator.hasNext()) {
+            Cooldown cooldown = iterator.next().get();
+            if (cooldown == null) {
+                iterator.remove();
+                continue;
+            }
+            // Never let one cooldown kill the timer for everyone else
+            try {
+                cooldown.purge();
+            } catch (Throwable t) {
+                StickyAPI.getLogger().log(Level.WARNING, "Failed to purge cooldowns", t);
+            }
+        }
+    }
+}
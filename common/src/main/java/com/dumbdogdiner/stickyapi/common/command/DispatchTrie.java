@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2020-2021 DumbDogDiner <dumbdogdiner.com>. All rights reserved.
+ * Licensed under the MIT license, see LICENSE for more information...
+ */
+package com.dumbdogdiner.stickyapi.common.command;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import lombok.Getter;
+
+/**
+ * An immutable snapshot of a command and its sub-commands, compiled once when
+ * the command is built.
+ * <p>
+ * Each node keeps the names and aliases of its sub-commands in one sorted array,
+ * so resolving an argument is a binary search and completing a partial one is a
+ * binary search followed by a scan over the matches. Dispatch walks the
+ * arguments by index, and the remaining arguments can be taken as a
+ * {@link List#subList(int, int)} view instead of a copy.
+ *
+ * @param <T> The type of command builder
+ * @since 3.0
+ */
+public final class DispatchTrie<T extends CommandBuilder<T>> {
+    /**
+     * The command this node dispatches to.
+     */
+    @Getter
+    private final T command;
+
+    /**
+     * The node this one is a sub-command of, or null for the root.
+     */
+    @Getter
+    private final DispatchTrie<T> parent;
+
+    /**
+     * How many arguments were consumed to reach this node.
+     */
+    @Getter
+    private final int depth;
+
+    // Sorted case-insensitively, with children in the same order
+    private final String[] names;
+    private final DispatchTrie<T>[] children;
+
+    @SuppressWarnings("unchecked")
+    private DispatchTrie(T command, DispatchTrie<T> parent, int depth, Set<CommandBuilder<?>> path) {
+        this.command = command;
+        this.parent = parent;
+        this.depth = depth;
+
+        if (!path.add(command)) {
+            throw new IllegalStateException("Command " + command.getName() + " is its own sub-command");
+        }
+
+        // Names win over aliases, and earlier aliases over later ones
+        Map<String, T> byName = new LinkedHashMap<>();
+        for (T subCommand : command.getSubCommands().values()) {
+            byName.put(subCommand.getName(), subCommand);
+        }
+        for (T subCommand : command.getSubCommands().values()) {
+            if (subCommand.getAliases() != null) {
+                for (String alias : subCommand.getAliases()) {
+                    byName.putIfAbsent(alias, subCommand);
+                }
+            }
+        }
+
+        names = byName.keySet().toArray(new String[0]);
+        Arrays.sort(names, String.CASE_INSENSITIVE_ORDER);
+        children = new DispatchTrie[names.length];
+        Map<T, DispatchTrie<T>> compiled = new IdentityHashMap<>();
+        for (int i = 0; i < names.length; i++) {
+            T subCommand = byName.get(names[i]);
+            // Aliases share the node of the command they belong to
+            children[i] = compiled.computeIfAbsent(subCommand, key -> new DispatchTrie<>(key, this, depth + 1, path));
+        }
+
+        path.remove(command);
+    }
+
+    /**
+     * Compile a command and all of its sub-commands.
+     *
+     * @param <T>     The type of command builder
+     * @param command The root command
+     * @return {@link DispatchTrie}
+     * @throws IllegalStateException if a command is its own sub-command
+     */
+    public static <T extends CommandBuilder<T>> DispatchTrie<T> compile(@NotNull T command) {
+        return new DispatchTrie<>(command, null, 0,
+                Collections.newSetFromMap(new IdentityHashMap<CommandBuilder<?>, Boolean>()));
+    }
+
+    /**
+     * Get the sub-command with the given name or alias.
+     *
+     * @param name The exact name or alias
+     * @return {@link DispatchTrie}, or null if there is no such sub-command
+     */
+    public @Nullable DispatchTrie<T> child(@NotNull String name) {
+        for (int i = CompletionIndex.lowerBound(names, name); i < names.length
+                && names[i].equalsIgnoreCase(name); i++) {
+            if (names[i].equals(name)) {
+                return children[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Follow the given arguments down to the deepest matching sub-command.
+     *
+     * @param args The arguments the command was run with
+     * @return {@link DispatchTrie}; its depth is the number of arguments used
+     */
+    public DispatchTrie<T> resolve(@NotNull List<String> args) {
+        return resolve(args, args.size());
+    }
+
+    /**
+     * Follow the first <code>limit</code> arguments down to the deepest matching
+     * sub-command.
+     *
+     * @param args  The arguments the command was run with
+     * @param limit How many of the arguments may be used
+     * @return {@link DispatchTrie}; its depth is the number of arguments used
+     */
+    public DispatchTrie<T> resolve(@NotNull List<String> args, int limit) {
+        DispatchTrie<T> node = this;
+        for (int i = depth; i < limit; i++) {
+            DispatchTrie<T> child = node.child(args.get(i));
+            if (child == null) {
+                break;
+            }
+            node = child;
+        }
+        return node;
+    }
+
+    /**
+     * @return true if this command has sub-commands
+     */
+    public boolean hasChildren() {
+        return names.length > 0;
+    }
+
+    /**
+     * Get the sub-command names and aliases starting with the given prefix,
+     * ignoring case.
+     *
+     * @param prefix The partial argument
+     * @return {@link List} of names, sorted case-insensitively
+     */
+    public List<String> complete(@NotNull String prefix) {
+        return CompletionIndex.complete(names, prefix);
+    }
+}
@@ -58,5 +58,14 @@ public enum ExitCode {
      * Although there is no difference between EXIT_SUCCESS and EXIT_ERROR_SILENT,
      * prefer using this exit code when possible for clearer code
      */
-    EXIT_ERROR_SILENT;
+    EXIT_ERROR_SILENT,
+    /**
+     * If the command ran for longer than its timeout and was aborted
+     */
+    EXIT_TIMEOUT,
+    /**
+     * If the command could not start because too many executions of it were
+     * already running
+     */
+    EXIT_BUSY;
 }
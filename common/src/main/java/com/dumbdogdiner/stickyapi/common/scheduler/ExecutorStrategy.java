@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2020-2021 DumbDogDiner <dumbdogdiner.com>. All rights reserved.
+ * Licensed under the MIT license, see LICENSE for more information...
+ */
+package com.dumbdogdiner.stickyapi.common.scheduler;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * How StickyAPI runs asynchronous work, see
+ * {@link com.dumbdogdiner.stickyapi.StickyAPI#setExecutorStrategy(ExecutorStrategy)}.
+ */
+public enum ExecutorStrategy {
+	/**
+	 * Use virtual threads if the runtime supports them, otherwise a bounded pool.
+	 */
+	AUTO,
+	/**
+	 * Start a virtual thread per task. Blocking a virtual thread is cheap, so
+	 * this suits tasks that wait on I/O. Needs Java 21 or newer.
+	 */
+	VIRTUAL_THREADS,
+	/**
+	 * A fixed number of named platform threads with a bounded queue. Once the
+	 * queue is full, submissions fail with a
+	 * {@link java.util.concurrent.RejectedExecutionException} for the caller to
+	 * report. Tasks never run on the submitting thread, which may be the server
+	 * thread or the shared timer.
+	 */
+	BOUNDED_POOL;
+
+	/**
+	 * The number of threads in a bounded pool.
+	 */
+	public static final int POOL_SIZE = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+
+	/**
+	 * The number of tasks a bounded pool queues before pushing back.
+	 */
+	public static final int QUEUE_CAPACITY = 1024;
+
+	private static final Method VIRTUAL_EXECUTOR_FACTORY = findVirtualExecutorFactory();
+	private static final ThreadFactory VIRTUAL_THREAD_FACTORY = VIRTUAL_EXECUTOR_FACTORY == null ? null
+			: findVirtualThreadFactory();
+
+	/**
+	 * Check whether the running JVM supports virtual threads.
+	 * 
+	 * @return {@link Boolean}
+	 */
+	public static boolean isVirtualThreadSupported() {
+		return VIRTUAL_THREAD_FACTORY != null;
+	}
+
+	/**
+	 * Create a new executor using this strategy.
+	 * 
+	 * @return {@link MeteredExecutorService}
+	 * @throws UnsupportedOperationException If this is {@link #VIRTUAL_THREADS}
+	 *                                       and the JVM does not support them
+	 */
+	public MeteredExecutorService create() {
+		switch (this) {
+			case VIRTUAL_THREADS:
+				if (!isVirtualThreadSupported())
+					throw new UnsupportedOperationException("Virtual threads need Java 21 or newer");
+				return new MeteredExecutorService(createVirtual(), this);
+			case BOUNDED_POOL:
+				return new MeteredExecutorService(createBounded(), this);
+			default:
+				return isVirtualThreadSupported() ? VIRTUAL_THREADS.create() : BOUNDED_POOL.create();
+		}
+	}
+
+	private static ExecutorService createBounded() {
+		AtomicInteger count = new AtomicInteger();
+		ThreadFactory factory = r -> {
+			Thread thread = new Thread(r, "StickyAPI Worker #" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+
+		ThreadPoolExecutor pool = new ThreadPoolExecutor(POOL_SIZE, POOL_SIZE, 60L, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<>(QUEUE_CAPACITY), factory, new ThreadPoolExecutor.AbortPolicy());
+		pool.allowCoreThreadTimeOut(true);
+		return pool;
+	}
+
+	private static ExecutorService createVirtual() {
+		try {
+			return (ExecutorService) VIRTUAL_EXECUTOR_FACTORY.invoke(null, VIRTUAL_THREAD_FACTORY);
+		} catch (ReflectiveOperationException e) {
+			throw new UnsupportedOperationException("Failed to create a virtual thread executor", e);
+		}
+	}
+
+	/**
+	 * Build a factory for virtual threads named like the pool threads, i.e.
+	 * <code>Thread.ofVirtual().name("StickyAPI Virtual #", 1).factory()</code>.
+	 * Returns null where virtual threads are still a disabled preview feature.
+	 */
+	private static ThreadFactory findVirtualThreadFactory() {
+		try {
+			Class<?> builder = Class.forName("java.lang.Thread$Builder");
+			Object virtual = Thread.class.getMethod("ofVirtual").invoke(null);
+			virtual = builder.getMethod("name", String.class, long.class).invoke(virtual, "StickyAPI Virtual #", 1L);
+			return (ThreadFactory) builder.getMethod("factory").invoke(virtual);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Look up <code>Executors.newThreadPerTaskExecutor</code>, which only exists
+	 * on runtimes with virtual threads. StickyAPI is compiled for Java 11, so it
+	 * can only be reached reflectively.
+	 */
+	private static Method findVirtualExecutorFactory() {
+		try {
+			Thread.class.getMethod("ofVirtual");
+			return Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+		} catch (NoSuchMethodException e) {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2020-2021 DumbDogDiner <dumbdogdiner.com>. All rights reserved.
+ * Licensed under the MIT license, see LICENSE for more information...
+ */
+package com.dumbdogdiner.stickyapi.common.scheduler;
+
+import java.util.Spliterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Consumer;
+
+/**
+ * A large job that a {@link Scheduler} works through a few elements at a time,
+ * spread over as many ticks as it takes to stay within the job budget.
+ * <p>
+ * Only the scheduler feeds the job its elements and completes it. Callers
+ * follow it through {@link #getResult()}, and may stop it with
+ * {@link #cancel()}.
+ */
+public final class IncrementalJob<T> {
+	private final Spliterator<T> source;
+	private final Consumer<T> step;
+	private final long total;
+	private final CompletableFuture<Long> result = new CompletableFuture<>();
+	private volatile long processed = 0;
+
+	IncrementalJob(Spliterator<T> source, Consumer<? super T> action) {
+		this.source = source;
+		this.step = element -> {
+			action.accept(element);
+			processed++;
+		};
+		this.total = source.getExactSizeIfKnown();
+	}
+
+	/**
+	 * Return a stage that completes with the number of elements processed, or
+	 * with the exception the action threw. It cannot be completed from outside
+	 * the job.
+	 * 
+	 * @return {@link CompletionStage}
+	 */
+	public CompletionStage<Long> getResult() {
+		return result.minimalCompletionStage();
+	}
+
+	/**
+	 * Stop the job before its next element.
+	 * 
+	 * @return True if the job was cancelled, false if it had already finished
+	 */
+	public boolean cancel() {
+		return result.cancel(false);
+	}
+
+	/**
+	 * Return true if the job has finished, failed or been cancelled.
+	 * 
+	 * @return {@link Boolean}
+	 */
+	public boolean isDone() {
+		return result.isDone();
+	}
+
+	/**
+	 * Return true if the job was cancelled before it finished.
+	 * 
+	 * @return {@link Boolean}
+	 */
+	public boolean isCancelled() {
+		return result.isCancelled();
+	}
+
+	/**
+	 * Return the number of elements processed so far.
+	 * 
+	 * @return {@link Long}
+	 */
+	public long getProcessed() {
+		return processed;
+	}
+
+	/**
+	 * Return the total number of elements, or -1 if the source does not know its
+	 * size.
+	 * 
+	 * @return {@link Long}
+	 */
+	public long getTotal() {
+		return total;
+	}
+
+	/**
+	 * Return how far along the job is, between 0 and 1, or -1 if the total is
+	 * unknown.
+	 * 
+	 * @return {@link Double}
+	 */
+	public double getProgress() {
+		if (isDone()) {
+			return 1.0;
+		}
+		if (total < 0) {
+			return -1.0;
+		}
+		return total == 0 ? 1.0 : (double) processed / total;
+	}
+
+	/**
+	 * Process the next element. Only called from the synchronous thread.
+	 * 
+	 * @return True if there are more elements to process
+	 */
+	boolean step() {
+		try {
+			if (source.tryAdvance(step)) {
+				return true;
+			}
+			result.complete(processed);
+		} catch (Throwable t) {
+			result.completeExceptionally(t);
+		}
+		return false;
+	}
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2020-2021 DumbDogDiner <dumbdogdiner.com>. All rights reserved.
+ * Licensed under the MIT license, see LICENSE for more information...
+ */
+package com.dumbdogdiner.stickyapi.common.scheduler;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.jetbrains.annotations.NotNull;
+
+import lombok.Getter;
+
+/**
+ * Wraps an executor to count how many tasks are waiting, running and done, so
+ * that pool saturation can be monitored. Created by {@link ExecutorStrategy}.
+ */
+public final class MeteredExecutorService extends AbstractExecutorService {
+	private final ExecutorService delegate;
+
+	/**
+	 * The strategy this executor was created with.
+	 */
+	@Getter
+	private final ExecutorStrategy strategy;
+
+	private final AtomicInteger queued = new AtomicInteger();
+	private final AtomicInteger active = new AtomicInteger();
+	private final LongAdder completed = new LongAdder();
+	private final LongAdder rejected = new LongAdder();
+
+	MeteredExecutorService(ExecutorService delegate, ExecutorStrategy strategy) {
+		this.delegate = delegate;
+		this.strategy = strategy;
+	}
+
+	/**
+	 * Return the number of tasks submitted but not started yet.
+	 * 
+	 * @return {@link Integer}
+	 */
+	public int getQueueDepth() {
+		return queued.get();
+	}
+
+	/**
+	 * Return the number of tasks currently running.
+	 * 
+	 * @return {@link Integer}
+	 */
+	public int getActiveCount() {
+		return active.get();
+	}
+
+	/**
+	 * Return the number of tasks that have finished, normally or not.
+	 * 
+	 * @return {@link Long}
+	 */
+	public long getCompletedCount() {
+		return completed.sum();
+	}
+
+	/**
+	 * Return the number of tasks the executor refused, for example after shutdown.
+	 * 
+	 * @return {@link Long}
+	 */
+	public long getRejectedCount() {
+		return rejected.sum();
+	}
+
+	@Override
+	public void execute(@NotNull Runnable command) {
+		queued.incrementAndGet();
+		try {
+			delegate.execute(() -> {
+				queued.decrementAndGet();
+				active.incrementAndGet();
+				try {
+					command.run();
+				} finally {
+					active.decrementAndGet();
+					completed.increment();
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			queued.decrementAndGet();
+			rejected.increment();
+			throw e;
+		}
+	}
+
+	@Override
+	public void shutdown() {
+		delegate.shutdown();
+	}
+
+	@Override
+	public List<Runnable> shutdownNow() {
+		return delegate.shutdownNow();
+	}
+
+	@Override
+	public boolean isShutdown() {
+		return delegate.isShutdown();
+	}
+
+	@Override
+	public boolean isTerminated() {
+		return delegate.isTerminated();
+	}
+
+	@Override
+	public boolean awaitTermination(long timeout, @NotNull TimeUnit unit) throws InterruptedException {
+		return delegate.awaitTermination(timeout, unit);
+	}
+
+	@Override
+	public String toString() {
+		return "MeteredExecutorService{strategy=" + strategy + ", queued=" + getQueueDepth() + ", active="
+				+ getActiveCount() + ", completed=" + getCompletedCount() + ", rejected=" + getRejectedCount() + "}";
+	}
+}
@@ -6,28 +6,49 @@ package com.dumbdogdiner.stickyapi.common.scheduler;
 
 import java.time.DateTimeException;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
 import java.util.concurrent.RunnableFuture;
 import java.util.concurrent.Future;
 import java.util.concurrent.FutureTask;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.Queue;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.ArrayDeque;
+import java.util.function.Consumer;
+
+import org.jetbrains.annotations.NotNull;
 
 import lombok.Getter;
 import lombok.Setter;
 
 /**
  * Schedule async or sync runnables
+ * <p>
+ * Synchronous tasks are run by {@link #schedule()}, which should be called once
+ * per tick from the main thread. Any thread may submit them - submissions go
+ * through a lock-free queue and are then placed on a timing wheel keyed on
+ * ticks, so delayed and repeating tasks cost nothing until they are due.
+ * <p>
+ * Large jobs can be submitted as an {@link IncrementalJob}, which is worked
+ * through a few elements per tick instead of all at once.
  */
-// TODO: Make this... better...
 public class Scheduler {
 	/**
-	 * Array of tasks to be run on the main thread or synchronously
+	 * The length of a tick in milliseconds, used to convert dates to ticks.
+	 */
+	public static final long TICK_MILLIS = 50L;
+
+	/**
+	 * Tasks submitted for the synchronous thread that have not been picked up by
+	 * {@link #schedule()} yet. Safe to add to from any thread.
 	 */
 	@Getter
-	protected Queue<RunnableFuture<?>> synchronous = new ArrayDeque<RunnableFuture<?>>();
+	protected Queue<RunnableFuture<?>> synchronous = new ConcurrentLinkedQueue<RunnableFuture<?>>();
 	/**
 	 * Array of tasks to be run as part of a thread pool.
 	 */
@@ -40,6 +61,36 @@ public class Scheduler {
 	@Setter
 	protected ScheduledThreadPoolExecutor pool;
 
+	/**
+	 * How long {@link #schedule()} may spend running tasks per tick, in
+	 * nanoseconds. Tasks left over run first on the next tick. At least one task
+	 * always runs, so a single slow task cannot stall the queue.
+	 */
+	@Getter
+	@Setter
+	private long tickBudget = TimeUnit.MILLISECONDS.toNanos(10);
+
+	/**
+	 * How long {@link #schedule()} may spend on incremental jobs per tick, in
+	 * nanoseconds. The time is shared between all running jobs, and every job
+	 * processes at least one element per tick.
+	 */
+	@Getter
+	@Setter
+	private long jobBudget = TimeUnit.MILLISECONDS.toNanos(5);
+
+	/**
+	 * The number of times {@link #schedule()} has been called.
+	 */
+	@Getter
+	private volatile long currentTick = 0;
+
+	// Only touched by the thread calling schedule()
+	private final TimingWheel wheel = new TimingWheel();
+	private final Queue<RunnableFuture<?>> ready = new ArrayDeque<>();
+	private final Queue<IncrementalJob<?>> submittedJobs = new ConcurrentLinkedQueue<>();
+	private final Queue<IncrementalJob<?>> jobs = new ArrayDeque<>();
+
 	public Scheduler(int poolsz) {
 		this.pool = new ScheduledThreadPoolExecutor(poolsz);
 	}
@@ -78,30 +129,169 @@ public class Scheduler {
 	 * @param task to run
 	 */
 	public <T> Future<T> scheduleSynchronous(Callable<T> task) {
-		FutureTask<T> t = new FutureTask<T>(task);
-		this.synchronous.add(t);
-		return t;
+		return scheduleSynchronous(task, 0);
 	}
 
 	/**
-	 * Schedule a function/task to run synchronously at a certain datetime
+	 * Schedule a function/task to run synchronously at a certain datetime. The
+	 * time is rounded up to the next tick.
 	 * 
 	 * @param task to run
 	 * @param time to execute the task
 	 */
 	public <T> Future<T> scheduleSynchronous(Callable<T> task, Date time) {
-		// TODO: Make synchronous version of this?
-		return new FutureTask<T>(task);
+		long future = time.getTime();
+		long now = System.currentTimeMillis();
+		if (future <= now)
+			throw new DateTimeException("Get the time machine, morty! We're going back to the future!");
+
+		return scheduleSynchronous(task, (future - now + TICK_MILLIS - 1) / TICK_MILLIS);
+	}
+
+	/**
+	 * Schedule a function/task to run synchronously after the given number of
+	 * ticks.
+	 * 
+	 * @param task  to run
+	 * @param delay in ticks, 0 for the next tick
+	 */
+	public <T> Future<T> scheduleSynchronous(@NotNull Callable<T> task, long delay) {
+		if (delay < 0)
+			throw new IllegalArgumentException("Delay must not be negative");
+
+		SynchronousTask<T> t = new SynchronousTask<T>(task, currentTick + 1 + delay, 0);
+		this.synchronous.add(t);
+		return t;
+	}
+
+	/**
+	 * Schedule a task to run synchronously every <code>period</code> ticks, until
+	 * it is cancelled or throws.
+	 * 
+	 * @param task         to run
+	 * @param initialDelay in ticks before the first run, 0 for the next tick
+	 * @param period       in ticks between runs
+	 * @return A future that can be used to cancel the task
+	 */
+	public Future<?> scheduleSynchronousAtFixedRate(@NotNull Runnable task, long initialDelay, long period) {
+		if (initialDelay < 0)
+			throw new IllegalArgumentException("Delay must not be negative");
+		if (period <= 0)
+			throw new IllegalArgumentException("Period must be positive");
+
+		SynchronousTask<?> t = new SynchronousTask<Object>(Executors.callable(task), currentTick + 1 + initialDelay,
+				period);
+		this.synchronous.add(t);
+		return t;
+	}
+
+	/**
+	 * Run an action for every element of a large job on the synchronous thread,
+	 * spread across as many ticks as needed to stay within the job budget.
+	 * 
+	 * @param source the elements to process
+	 * @param action to run for each element
+	 * @return The job, to follow its progress and result
+	 */
+	public <T> IncrementalJob<T> scheduleIncremental(@NotNull Spliterator<T> source,
+			@NotNull Consumer<? super T> action) {
+		IncrementalJob<T> job = new IncrementalJob<T>(source, action);
+		this.submittedJobs.add(job);
+		return job;
 	}
 
 	/**
-	 * Run all pending synchronous calls until they're finished. NOTE: This should
-	 * be called in the application's eventloop or in a single thread.
+	 * Run an action for every element of a large job on the synchronous thread,
+	 * spread across as many ticks as needed to stay within the job budget.
+	 * 
+	 * @param source the elements to process
+	 * @param action to run for each element
+	 * @return The job, to follow its progress and result
+	 */
+	public <T> IncrementalJob<T> scheduleIncremental(@NotNull Iterator<T> source,
+			@NotNull Consumer<? super T> action) {
+		return scheduleIncremental(Spliterators.spliteratorUnknownSize(source, 0), action);
+	}
+
+	/**
+	 * Run the synchronous tasks due this tick, until they're finished or the tick
+	 * budget is used up. NOTE: This should be called once per tick in the
+	 * application's eventloop or in a single thread.
 	 */
 	public void schedule() {
-		RunnableFuture<?> task = null;
-		while ((task = this.synchronous.poll()) != null)
-			task.run();
+		long tick = ++currentTick;
+
+		RunnableFuture<?> submitted;
+		while ((submitted = this.synchronous.poll()) != null) {
+			if (!(submitted instanceof SynchronousTask)) {
+				ready.add(submitted);
+				continue;
+			}
+
+			SynchronousTask<?> task = (SynchronousTask<?>) submitted;
+			if (task.deadline <= tick)
+				ready.add(task);
+			else
+				wheel.add(task);
+		}
+		wheel.expire(tick, ready);
+
+		long start = System.nanoTime();
+		RunnableFuture<?> task;
+		while ((task = ready.poll()) != null) {
+			if (task instanceof SynchronousTask) {
+				SynchronousTask<?> t = (SynchronousTask<?>) task;
+				if (t.execute() && !t.isCancelled()) {
+					t.deadline = tick + t.period;
+					wheel.add(t);
+				}
+			} else {
+				task.run();
+			}
+
+			if (System.nanoTime() - start >= tickBudget)
+				break;
+		}
+
+		runJobs();
+	}
+
+	/**
+	 * Step through the running jobs in turn until the job budget is used up.
+	 */
+	private void runJobs() {
+		IncrementalJob<?> job;
+		while ((job = this.submittedJobs.poll()) != null)
+			jobs.add(job);
+
+		int guaranteed = jobs.size();
+		long start = System.nanoTime();
+		while ((job = jobs.poll()) != null) {
+			if (!job.isDone() && job.step())
+				jobs.add(job);
+
+			if (--guaranteed <= 0 && System.nanoTime() - start >= jobBudget)
+				break;
+		}
 	}
 
+	/**
+	 * Return the number of synchronous tasks waiting to run, including those that
+	 * are not due yet. Only exact when called from the synchronous thread.
+	 * 
+	 * @return {@link Integer}
+	 */
+	public int getPendingSynchronous() {
+		return this.synchronous.size() + ready.size() + wheel.size();
+	}
+
+	/**
+	 * Return the number of incremental jobs that have not finished yet. Only
+	 * exact when called from the synchronous thread.
+	 * 
+	 * @return {@link Integer}
+	 */
+	public int getPendingJobs() {
+		return this.submittedJobs.size() + jobs.size();
+	}
 }
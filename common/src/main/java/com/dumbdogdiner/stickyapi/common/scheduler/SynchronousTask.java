@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2020-2021 DumbDogDiner <dumbdogdiner.com>. All rights reserved.
+ * Licensed under the MIT license, see LICENSE for more information...
+ */
+package com.dumbdogdiner.stickyapi.common.scheduler;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+
+/**
+ * A task run on the synchronous thread by a {@link Scheduler}, either once or
+ * repeatedly.
+ */
+final class SynchronousTask<V> extends FutureTask<V> {
+	/**
+	 * The tick this task is due to run on next.
+	 */
+	long deadline;
+
+	/**
+	 * The number of ticks between runs, or 0 if this task only runs once.
+	 */
+	final long period;
+
+	SynchronousTask(Callable<V> callable, long deadline, long period) {
+		super(callable);
+		this.deadline = deadline;
+		this.period = period;
+	}
+
+	/**
+	 * Run the task once.
+	 * 
+	 * @return True if the task should be scheduled again
+	 */
+	boolean execute() {
+		if (period == 0) {
+			run();
+			return false;
+		}
+		return runAndReset();
+	}
+}
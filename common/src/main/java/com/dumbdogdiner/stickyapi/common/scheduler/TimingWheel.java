@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2020-2021 DumbDogDiner <dumbdogdiner.com>. All rights reserved.
+ * Licensed under the MIT license, see LICENSE for more information...
+ */
+package com.dumbdogdiner.stickyapi.common.scheduler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+
+/**
+ * A hashed timing wheel keyed on ticks. Adding a task and advancing by one tick
+ * are O(1) regardless of how many tasks are waiting - advancing only looks at
+ * the one bucket whose tick has come.
+ * <p>
+ * Tasks due further away than one rotation share a bucket with nearer ones and
+ * are skipped until their round comes up.
+ * <p>
+ * Not thread-safe - only the thread running the {@link Scheduler} touches it.
+ */
+final class TimingWheel {
+	private static final int SIZE = 512;
+	private static final int MASK = SIZE - 1;
+
+	@SuppressWarnings("unchecked")
+	private final List<SynchronousTask<?>>[] buckets = new List[SIZE];
+
+	private int size = 0;
+
+	TimingWheel() {
+		for (int i = 0; i < SIZE; i++) {
+			buckets[i] = new ArrayList<>();
+		}
+	}
+
+	int size() {
+		return size;
+	}
+
+	void add(SynchronousTask<?> task) {
+		buckets[(int) (task.deadline & MASK)].add(task);
+		size++;
+	}
+
+	/**
+	 * Move every task due on the given tick into <code>ready</code>, dropping any
+	 * that were cancelled while waiting.
+	 */
+	void expire(long tick, Queue<? super SynchronousTask<?>> ready) {
+		List<SynchronousTask<?>> bucket = buckets[(int) (tick & MASK)];
+		if (bucket.isEmpty()) {
+			return;
+		}
+
+		// Compact the bucket in place, keeping tasks in the order they were added
+		int kept = 0;
+		for (int i = 0; i < bucket.size(); i++) {
+			SynchronousTask<?> task = bucket.get(i);
+			if (task.isCancelled()) {
+				size--;
+			} else if (task.deadline <= tick) {
+				size--;
+				ready.add(task);
+			} else {
+				bucket.set(kept++, task);
+			}
+		}
+		bucket.subList(kept, bucket.size()).clear();
+	}
+}
@@ -5,10 +5,16 @@
 package com.dumbdogdiner.stickyapi.common.translation;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
 
+import com.dumbdogdiner.stickyapi.StickyAPI;
 import com.dumbdogdiner.stickyapi.common.config.FileConfiguration;
 import com.dumbdogdiner.stickyapi.common.config.providers.YamlProvider;
-import com.dumbdogdiner.stickyapi.common.util.Debugger;
 
 import org.jetbrains.annotations.NotNull;
 
@@ -16,18 +22,23 @@ import lombok.Getter;
 
 /**
  * Represents a wrapper around a locale configuration file.
+ * <p>
+ * Nodes are read once, when the locale is loaded, into a store keyed by their
+ * full path - so nested sections are read as <code>section.node</code>.
  */
 public class Locale {
-    private Debugger debug = new Debugger(getClass());
-
     @Getter
     Boolean isValid = false;
 
     @Getter
     File localeFile;
 
-    @Getter
-    FileConfiguration localeConfig;
+    // Every node by its dot separated path, with keys and values interned so
+    // that locales share the strings they have in common
+    private Map<String, String> nodes = Map.of();
+
+    // Nodes compiled the first time they are translated
+    private final ConcurrentHashMap<String, MessageTemplate> templates = new ConcurrentHashMap<>();
 
     /**
      * Create a new locale object
@@ -38,8 +49,9 @@ public class Locale {
      */
     public Locale(@NotNull File localeFile) {
         this.localeFile = localeFile;
-        try {
-            localeConfig = new YamlProvider(localeFile);
+        // The parsed tree is dropped once flattened, see getLocaleConfig
+        try (InputStream stream = new FileInputStream(localeFile)) {
+            nodes = intern(new YamlProvider(stream).getStrings());
             isValid = true;
         } catch (Exception e) {
             e.printStackTrace();
@@ -47,19 +59,71 @@ public class Locale {
         }
     }
 
+    private static Map<String, String> intern(Map<String, String> strings) {
+        Map<String, String> interned = new HashMap<>(strings.size() * 4 / 3 + 1);
+        for (Map.Entry<String, String> entry : strings.entrySet()) {
+            interned.put(entry.getKey().intern(), entry.getValue().intern());
+        }
+        return Map.copyOf(interned);
+    }
+
+    /**
+     * Get the configuration this locale was loaded from.
+     * <p>
+     * The configuration is not kept once the locale is loaded, so it is parsed
+     * from the locale file again on every call. If the file has changed since,
+     * it may disagree with the nodes this locale actually translates.
+     * <p>
+     * Returns the configuration, or null if the file can no longer be read
+     * 
+     * @return {@link FileConfiguration}
+     * @deprecated Reads the disk on every call. Use {@link #get(String)} to read
+     *             the loaded nodes.
+     */
+    @Deprecated
+    public FileConfiguration getLocaleConfig() {
+        try (InputStream stream = new FileInputStream(localeFile)) {
+            return new YamlProvider(stream);
+        } catch (Exception e) {
+            StickyAPI.getLogger().log(Level.WARNING, "Failed to read " + localeFile, e);
+            return null;
+        }
+    }
+
     /**
      * Get a locale value.
      * <p>
+     * Nodes in nested sections are read by their full path, such as
+     * <code>ban.reason</code>.
+     * <p>
      * Returns the node if it exists
      * 
      * @param node The node to get
      * @return {@link java.lang.String}
      */
     public String get(@NotNull String node) {
-        debug.reset().print("fetching node " + node);
-        debug.print("node value: " + localeConfig.getString(node));
+        return nodes.get(node);
+    }
 
-        return localeConfig.getString(node);
+    /**
+     * Get a locale value compiled into a template, compiling it the first time it
+     * is requested.
+     * <p>
+     * Returns the template if the node exists
+     * 
+     * @param node The node to get
+     * @return {@link MessageTemplate}
+     */
+    public MessageTemplate getTemplate(@NotNull String node) {
+        MessageTemplate template = templates.get(node);
+        if (template == null) {
+            String message = nodes.get(node);
+            if (message == null) {
+                return null;
+            }
+            template = templates.computeIfAbsent(node, key -> MessageTemplate.compile(message));
+        }
+        return template;
     }
 
 }
@@ -5,7 +5,23 @@
 package com.dumbdogdiner.stickyapi.common.translation;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.Map;
 import java.util.TreeMap;
 
@@ -20,6 +36,12 @@ import lombok.Setter;
  * Provides an interface between locale files and your plugin.
  */
 public class LocaleProvider {
+    /**
+     * The characters color codes are translated from by
+     * {@link #translate(String, Map)}.
+     */
+    public static final String COLOR_CHARS = "&";
+
     Debugger debug = new Debugger(getClass());
 
     @Getter
@@ -35,7 +57,22 @@ public class LocaleProvider {
      * @return {@link Locale}
      */
     @Getter
-    private Locale defaultLocale;
+    private volatile Locale defaultLocale;
+    private volatile String defaultLocaleName;
+
+    // The compiled, color translated nodes of each loaded locale, by locale name
+    private final ConcurrentHashMap<String, Templates> templates = new ConcurrentHashMap<>();
+
+    // The names of the locales to try for each locale tag, rebuilt on first use
+    // after the loaded locales or the default change
+    private volatile FallbackTable fallbacks;
+
+    // Watches the locale folder for changes, while enabled
+    private WatchService watcher;
+
+    // How long, in milliseconds, a changed locale file must be left alone
+    // before it is reloaded
+    static final long QUIET_PERIOD = 250L;
 
     /**
      * Construct a new LocaleProvider using the target folder for storing/loading
@@ -92,34 +129,248 @@ public class LocaleProvider {
             return false;
         }
 
-        loadedLocales.put(file.getName().substring(0, file.getName().length() - 4), locale);
+        putLocale(file.getName().substring(0, file.getName().length() - 4), locale);
         debug.print("Successfully loaded locale '" + file.getName().substring(0, file.getName().length() - 4) + "'");
 
         return true;
     }
 
     /**
-     * Load all available locales.
+     * Load a locale again from its file, replacing the loaded copy. Messages
+     * compiled from the old copy are discarded at the same time.
+     * <p>
+     * Returns True if the reload was successful. On failure, the loaded copy is
+     * kept.
+     * 
+     * @param name The name of the locale to reload
+     * @return {@link java.lang.Boolean}
+     */
+    public boolean reloadLocale(@NotNull String name) {
+        if (name.endsWith(".yml"))
+            name = name.substring(0, name.length() - 4);
+
+        File file = new File(localeFolder, name + ".yml");
+        if (!file.exists() || file.isDirectory()) {
+            debug.print("Could not reload locale '" + name + "' - file does not exist, or is directory");
+            return false;
+        }
+
+        Locale locale = new Locale(file);
+        if (!locale.getIsValid()) {
+            debug.print("Encountered an error while reloading the locale configuration - keeping loaded copy");
+            return false;
+        }
+
+        putLocale(name, locale);
+        return true;
+    }
+
+    /**
+     * Swap a locale in, dropping any templates compiled from the copy it replaces.
+     */
+    private void putLocale(String name, Locale locale) {
+        if (loadedLocales.put(name, locale) == null) {
+            clearFallbacks();
+        }
+        templates.remove(name);
+        if (name.equals(defaultLocaleName)) {
+            defaultLocale = locale;
+        }
+    }
+
+    /**
+     * Load all available locales. Files are parsed in parallel on the common
+     * pool, and this returns once every one has been loaded.
      * <p>
      * Returns The number of new locales loaded.
      * 
      * @return {@link java.lang.Integer}
      */
     public int loadAllLocales() {
-        int accumulator = 0;
+        File[] files = this.localeFolder.listFiles();
+        if (files == null)
+            return 0;
+
+        List<File> pending = new ArrayList<>();
+        List<CompletableFuture<Locale>> parsed = new ArrayList<>();
+        for (File file : files) {
+            if (!file.getName().endsWith(".yml") || file.isDirectory())
+                continue;
+            if (loadedLocales.containsKey(file.getName().substring(0, file.getName().length() - 4)))
+                continue;
 
-        for (File file : this.localeFolder.listFiles()) {
-            if (!file.getName().endsWith(".yml"))
+            pending.add(file);
+            parsed.add(CompletableFuture.supplyAsync(() -> new Locale(file)));
+        }
+
+        int accumulator = 0;
+        for (int i = 0; i < pending.size(); i++) {
+            String name = pending.get(i).getName().substring(0, pending.get(i).getName().length() - 4);
+            Locale locale = parsed.get(i).join();
+            if (!locale.getIsValid()) {
+                debug.print("Encountered an error while loading locale '" + name + "' - skipping load");
+                continue;
+            }
+            // Another thread may have loaded it while this one was parsing
+            if (loadedLocales.containsKey(name))
                 continue;
 
-            if (loadLocale(file))
-                ++accumulator;
+            putLocale(name, locale);
+            ++accumulator;
         }
 
         debug.print("Loaded " + accumulator + " locales");
         return accumulator;
     }
 
+    /**
+     * Watch the locale folder, loading new locale files and reloading changed
+     * ones as they are saved. Only the files that changed are parsed again, and
+     * each is swapped in as a whole, so translations never see a half-loaded
+     * locale. A changed file is only read once its size and modification time
+     * have held still for a quarter of a second, so a file still being written
+     * is not loaded part way through. A file that fails to parse leaves the
+     * loaded copy in place. Deleted files stay loaded.
+     * <p>
+     * Returns True if the folder is being watched
+     * 
+     * @return {@link java.lang.Boolean}
+     */
+    public synchronized boolean watchLocales() {
+        if (watcher != null)
+            return true;
+
+        WatchService service;
+        try {
+            Path folder = localeFolder.toPath();
+            service = folder.getFileSystem().newWatchService();
+            folder.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            debug.print("Could not watch locale folder - " + e.getMessage());
+            return false;
+        }
+
+        watcher = service;
+        Thread thread = new Thread(() -> watch(service), "StickyAPI Locale Watcher");
+        thread.setDaemon(true);
+        thread.start();
+        return true;
+    }
+
+    /**
+     * Stop watching the locale folder for changes.
+     */
+    public synchronized void stopWatchingLocales() {
+        if (watcher == null)
+            return;
+
+        try {
+            watcher.close();
+        } catch (IOException e) {
+            debug.print("Could not close locale watcher - " + e.getMessage());
+        }
+        watcher = null;
+    }
+
+    private void watch(WatchService service) {
+        // Files waiting for their quiet period to pass, by locale name
+        Map<String, PendingFile> pending = new LinkedHashMap<>();
+        while (true) {
+            WatchKey key;
+            try {
+                if (pending.isEmpty()) {
+                    key = service.take();
+                } else {
+                    long wait = TimeUnit.NANOSECONDS.toMillis(nextDeadline(pending) - System.nanoTime());
+                    key = service.poll(Math.max(1L, wait), TimeUnit.MILLISECONDS);
+                }
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+
+            if (key != null) {
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        // Events were lost, so check every file to be sure
+                        File[] files = localeFolder.listFiles((dir, name) -> name.endsWith(".yml"));
+                        for (File file : files == null ? new File[0] : files)
+                            schedule(pending, file.getName());
+                        continue;
+                    }
+                    String file = ((Path) event.context()).toString();
+                    if (file.endsWith(".yml"))
+                        schedule(pending, file);
+                }
+                if (!key.reset())
+                    return;
+            }
+
+            // An editor may report several events for one save, and may still be
+            // writing, so each file is parsed once it has stopped changing
+            long now = System.nanoTime();
+            Iterator<Map.Entry<String, PendingFile>> iterator = pending.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<String, PendingFile> entry = iterator.next();
+                PendingFile file = entry.getValue();
+                if (now - file.deadline < 0 || file.changed(now))
+                    continue;
+
+                iterator.remove();
+                String name = entry.getKey();
+                if (loadedLocales.containsKey(name)) {
+                    reloadLocale(name);
+                } else {
+                    loadLocale(name);
+                }
+            }
+        }
+    }
+
+    private void schedule(Map<String, PendingFile> pending, String file) {
+        String name = file.substring(0, file.length() - 4);
+        pending.computeIfAbsent(name, key -> new PendingFile(new File(localeFolder, file))).changed(System.nanoTime());
+    }
+
+    private static long nextDeadline(Map<String, PendingFile> pending) {
+        long next = Long.MAX_VALUE;
+        for (PendingFile file : pending.values()) {
+            if (next == Long.MAX_VALUE || file.deadline - next < 0)
+                next = file.deadline;
+        }
+        return next;
+    }
+
+    /**
+     * A changed locale file, reloaded once its size and modification time have
+     * held still for {@link #QUIET_PERIOD}.
+     */
+    private static final class PendingFile {
+        final File file;
+        long size = -1;
+        long modified = -1;
+        long deadline;
+
+        PendingFile(File file) {
+            this.file = file;
+        }
+
+        /**
+         * Check whether the file has changed since it was last seen, restarting
+         * its quiet period if it has.
+         */
+        boolean changed(long now) {
+            long size = file.length();
+            long modified = file.lastModified();
+            if (size == this.size && modified == this.modified)
+                return false;
+
+            this.size = size;
+            this.modified = modified;
+            deadline = now + TimeUnit.MILLISECONDS.toNanos(QUIET_PERIOD);
+            return true;
+        }
+    }
+
     /**
      * Translate a localization with the given variables.
      * <p>
@@ -137,13 +388,163 @@ public class LocaleProvider {
             return null;
         }
 
-        String message = get(node);
-        if (message == null) {
+        MessageTemplate template = getColoredTemplate(defaultLocaleName, node);
+        if (template == null) {
             debug.print("node does not exist");
             return null;
         }
 
-        return Translation.translate(this, message, "&", vars);
+        return template.render(this, vars);
+    }
+
+    /**
+     * Translate a localization for a player's locale, falling back to its language
+     * and then to the default locale when the node is missing. For example, a tag
+     * of <code>pt_BR</code> tries <code>pt_br</code>, then <code>pt</code> or any
+     * other <code>pt_</code> locale, then the default.
+     * <p>
+     * Locales are matched by the part of their name after the last dot, so
+     * <code>messages.pt_br</code> matches <code>pt_BR</code> and
+     * <code>pt-BR</code>.
+     * <p>
+     * Returns The configured node string, with vars interpolated when required
+     * 
+     * @param localeTag The player's locale, as reported by their client
+     * @param node      The configuration node to retrieve
+     * @param vars      A map of variables to interpolate into the configured node
+     *                  value
+     * @return {@link java.lang.String}
+     */
+    public String translate(@NotNull String localeTag, @NotNull String node, @NotNull Map<String, String> vars) {
+        if (node == null || node.equals(""))
+            return null;
+
+        // Nested nodes are filled through the same chain as the message itself
+        String[] fallbacks = getFallbacks(localeTag);
+        for (String name : fallbacks) {
+            MessageTemplate template = getColoredTemplate(name, node);
+            if (template != null)
+                return template.render(this, fallbacks, vars);
+        }
+        return null;
+    }
+
+    /**
+     * Translate a localization for a player's locale, falling back to its language
+     * and then to the default locale when the node is missing.
+     * <p>
+     * Returns The configured node string, with vars interpolated when required
+     * 
+     * @param locale The player's locale
+     * @param node   The configuration node to retrieve
+     * @param vars   A map of variables to interpolate into the configured node
+     *               value
+     * @return {@link java.lang.String}
+     * @see #translate(String, String, Map)
+     */
+    public String translate(@NotNull java.util.Locale locale, @NotNull String node,
+            @NotNull Map<String, String> vars) {
+        return translate(locale.toString(), node, vars);
+    }
+
+    /**
+     * Get the names of the locales tried, in order, for a locale tag.
+     * <p>
+     * Returns The locale names, which must not be modified
+     * 
+     * @param localeTag The locale tag, such as <code>pt_BR</code>
+     * @return {@link java.lang.String}[]
+     */
+    public String[] getFallbacks(@NotNull String localeTag) {
+        FallbackTable table = fallbacks;
+        if (table == null) {
+            table = buildFallbackTable();
+        }
+
+        String tag = normalizeTag(localeTag);
+        if (table.chains.containsKey(tag))
+            return table.chains.get(tag);
+        // A tag with no locale of its own falls back exactly as its language does
+        String language = languageOf(tag);
+        if (table.chains.containsKey(language))
+            return table.chains.get(language);
+        return table.defaultChain;
+    }
+
+    /**
+     * Build the chains for every loaded locale tag and language at once. Locking
+     * against {@link #clearFallbacks()} means a locale loaded while this runs
+     * always clears the table this installs, rather than being missed.
+     */
+    private synchronized FallbackTable buildFallbackTable() {
+        if (fallbacks != null)
+            return fallbacks;
+
+        Map<String, String[]> chains = new HashMap<>();
+        for (String name : loadedLocales.keySet()) {
+            String tag = tagOf(name);
+            chains.computeIfAbsent(tag, this::buildFallbacks);
+            chains.computeIfAbsent(languageOf(tag), this::buildFallbacks);
+        }
+        String[] defaultChain = defaultLocaleName != null ? new String[] { defaultLocaleName } : new String[0];
+
+        FallbackTable table = new FallbackTable(Map.copyOf(chains), defaultChain);
+        fallbacks = table;
+        return table;
+    }
+
+    private String[] buildFallbacks(String tag) {
+        Set<String> chain = new LinkedHashSet<>();
+        String language = languageOf(tag);
+
+        for (String name : loadedLocales.keySet()) {
+            if (tagOf(name).equals(tag))
+                chain.add(name);
+        }
+        for (String name : loadedLocales.keySet()) {
+            if (tagOf(name).equals(language))
+                chain.add(name);
+        }
+        for (String name : loadedLocales.keySet()) {
+            if (tagOf(name).startsWith(language + "_"))
+                chain.add(name);
+        }
+        if (defaultLocaleName != null)
+            chain.add(defaultLocaleName);
+
+        return chain.toArray(new String[0]);
+    }
+
+    private static String normalizeTag(String tag) {
+        return tag.toLowerCase(java.util.Locale.ROOT).replace('-', '_');
+    }
+
+    private static String tagOf(String name) {
+        return normalizeTag(name.substring(name.lastIndexOf('.') + 1));
+    }
+
+    private static String languageOf(String tag) {
+        int separator = tag.indexOf('_');
+        return separator == -1 ? tag : tag.substring(0, separator);
+    }
+
+    private synchronized void clearFallbacks() {
+        fallbacks = null;
+    }
+
+    /**
+     * The fallback chains for one set of loaded locales, replaced as a whole.
+     */
+    private static final class FallbackTable {
+        // Keyed by the tags and languages of the loaded locales only, so
+        // client-reported tags cannot grow it
+        final Map<String, String[]> chains;
+        final String[] defaultChain;
+
+        FallbackTable(Map<String, String[]> chains, String[] defaultChain) {
+            this.chains = chains;
+            this.defaultChain = defaultChain;
+        }
     }
 
     /**
@@ -160,11 +561,51 @@ public class LocaleProvider {
         if (node == null || node.equals(""))
             return null;
 
-        String message = get(node);
-        if (message == null)
+        MessageTemplate template = getTemplate(node);
+        if (template == null)
             return null;
 
-        return Translation.translateVariables(this, message, vars);
+        return template.render(this, vars);
+    }
+
+    /**
+     * Get a localized value from the default locale, compiled into a template.
+     * <p>
+     * Returns The compiled node, or null if it does not exist
+     * 
+     * @param node The configuration node to retrieve
+     * @return {@link MessageTemplate}
+     */
+    public MessageTemplate getTemplate(@NotNull String node) {
+        return defaultLocale == null ? null : defaultLocale.getTemplate(node);
+    }
+
+    /**
+     * Get a node of a loaded locale compiled into a template that translates
+     * color codes, compiling it the first time it is requested.
+     */
+    MessageTemplate getColoredTemplate(String name, String node) {
+        Locale locale = name == null ? null : loadedLocales.get(name);
+        if (locale == null) {
+            return null;
+        }
+
+        Templates cache = templates.get(name);
+        if (cache == null || cache.locale != locale) {
+            // First use, or the locale was reloaded since the cache was made
+            cache = templates.compute(name,
+                    (key, current) -> current != null && current.locale == locale ? current : new Templates(locale));
+        }
+
+        MessageTemplate template = cache.nodes.get(node);
+        if (template == null) {
+            MessageTemplate plain = locale.getTemplate(node);
+            if (plain == null) {
+                return null;
+            }
+            template = cache.nodes.computeIfAbsent(node, key -> plain.colored(COLOR_CHARS));
+        }
+        return template;
     }
 
     /**
@@ -208,6 +649,19 @@ public class LocaleProvider {
         return loadedLocales.get(name).get(node);
     }
 
+    /**
+     * Get a localized value from the first of the given locales that has it.
+     */
+    String find(String[] names, String node) {
+        for (String name : names) {
+            Locale locale = loadedLocales.get(name);
+            String value = locale == null ? null : locale.get(node);
+            if (value != null)
+                return value;
+        }
+        return null;
+    }
+
     /**
      * Get a variable, falling back to its default if it doesn't exist.
      * <p>
@@ -250,7 +704,9 @@ public class LocaleProvider {
             return false;
         }
 
+        defaultLocaleName = name;
         defaultLocale = loadedLocales.get(name);
+        clearFallbacks();
         return true;
     }
 
@@ -272,4 +728,16 @@ public class LocaleProvider {
     public TreeMap<String, String> newVariables() {
         return new TreeMap<String, String>(String.CASE_INSENSITIVE_ORDER);
     }
+
+    /**
+     * The templates compiled from one copy of a locale.
+     */
+    private static final class Templates {
+        final Locale locale;
+        final ConcurrentHashMap<String, MessageTemplate> nodes = new ConcurrentHashMap<>();
+
+        Templates(Locale locale) {
+            this.locale = locale;
+        }
+    }
 }
@@ -0,0 +1,235 @@
+/*
+ * Copyright (c) 2020-2021 DumbDogDiner <dumbdogdiner.com>. All rights reserved.
+ * Licensed under the MIT license, see LICENSE for more information...
+ */
+package com.dumbdogdiner.stickyapi.common.translation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import lombok.Getter;
+
+/**
+ * A message compiled into literal text, variable placeholders such as
+ * <code>{player}</code> and function calls such as
+ * <code>{count|pluralize:"y,ies"}</code>, so that it can be rendered any number
+ * of times without being parsed again.
+ * <p>
+ * Placeholders are filled from the variables first and the locale second, as
+ * with {@link Translation#translateVariables(LocaleProvider, String, Map)}.
+ * Values are inserted as they are, and are not themselves searched for
+ * placeholders. A placeholder that cannot be filled, or that calls a function
+ * not in {@link Translation#functions}, is left as it was written.
+ * <p>
+ * A template may also translate color codes as it renders - see
+ * {@link #colored(String)}.
+ *
+ * @since 3.0
+ */
+public final class MessageTemplate {
+    /**
+     * The message this template was compiled from.
+     */
+    @Getter
+    private final String source;
+
+    private final Segment[] segments;
+
+    /**
+     * The characters color codes are translated from, or null if they are not.
+     */
+    @Getter
+    private final String colorChars;
+
+    private MessageTemplate(String source, Segment[] segments, String colorChars) {
+        this.source = source;
+        this.segments = segments;
+        this.colorChars = colorChars;
+    }
+
+    /**
+     * Compile a message.
+     *
+     * @param message The message to compile
+     * @return {@link MessageTemplate}
+     */
+    public static MessageTemplate compile(@NotNull String message) {
+        List<Segment> segments = new ArrayList<>();
+        int literalStart = 0;
+        int open = message.indexOf('{');
+        while (open != -1) {
+            int close = message.indexOf('}', open + 1);
+            if (close == -1) {
+                break;
+            }
+            // The innermost brace is the placeholder, so "{a{b}" keeps "{a" as text
+            open = message.lastIndexOf('{', close);
+
+            if (open > literalStart) {
+                segments.add(new Literal(message.substring(literalStart, open)));
+            }
+            segments.add(placeholder(message.substring(open + 1, close), message.substring(open, close + 1)));
+
+            literalStart = close + 1;
+            open = message.indexOf('{', literalStart);
+        }
+        if (literalStart < message.length()) {
+            segments.add(new Literal(message.substring(literalStart)));
+        }
+
+        return new MessageTemplate(message, segments.toArray(new Segment[0]), null);
+    }
+
+    /**
+     * Get a copy of this template that translates color codes, as
+     * {@link Translation#translate(LocaleProvider, String, String, Map)} does.
+     * Color codes are translated in the rendered message, after placeholders are
+     * filled, so a code split across a placeholder such as
+     * <code>&amp;{color}</code> is still translated. A template without
+     * placeholders renders to a string translated in advance.
+     *
+     * @param colorChars The characters to translate color codes from, such as
+     *                   <code>&amp;</code>
+     * @return {@link MessageTemplate}
+     */
+    public MessageTemplate colored(@NotNull String colorChars) {
+        return new MessageTemplate(Translation.translateColors(colorChars, source), segments, colorChars);
+    }
+
+    private static Segment placeholder(String body, String raw) {
+        int pipe = body.indexOf('|');
+        if (pipe == -1) {
+            return new Variable(body, raw);
+        }
+
+        // Only the first function is applied, as it always has been
+        int end = body.indexOf('|', pipe + 1);
+        String call = body.substring(pipe + 1, end == -1 ? body.length() : end);
+        String variable = body.substring(0, pipe).trim();
+
+        int colon = call.indexOf(':');
+        if (colon == -1) {
+            return new Call(variable, call.trim(), "", raw);
+        }
+        // Arguments are quoted, as in pluralize:"y,ies"
+        String argument = colon + 2 <= call.length() - 1 ? call.substring(colon + 2, call.length() - 1) : "";
+        return new Call(variable, call.substring(0, colon).trim(), argument, raw);
+    }
+
+    /**
+     * @return true if this template has no placeholders, so always renders to its
+     *         source
+     */
+    public boolean isConstant() {
+        return segments.length == 0 || (segments.length == 1 && segments[0] instanceof Literal);
+    }
+
+    /**
+     * Render this template.
+     *
+     * @param locale    The locale provider to fill placeholders not in the
+     *                  variables from, or null
+     * @param variables The variables to fill placeholders from. If null, the source
+     *                  is returned as it is
+     * @return {@link String}
+     */
+    public String render(@Nullable LocaleProvider locale, @Nullable Map<String, String> variables) {
+        return render(locale == null ? null : locale::get, variables);
+    }
+
+    /**
+     * Render this template, filling placeholders not in the variables from the
+     * first of the given locales that has them.
+     */
+    String render(@NotNull LocaleProvider locale, @NotNull String[] fallbacks, @Nullable Map<String, String> variables) {
+        return render(node -> locale.find(fallbacks, node), variables);
+    }
+
+    private String render(Function<String, String> nodes, Map<String, String> variables) {
+        if (variables == null || isConstant()) {
+            return source;
+        }
+
+        StringBuilder builder = new StringBuilder(source.length() + 16);
+        for (Segment segment : segments) {
+            segment.render(builder, nodes, variables);
+        }
+        return Translation.translateColors(colorChars, builder.toString());
+    }
+
+    @Override
+    public String toString() {
+        return source;
+    }
+
+    private interface Segment {
+        void render(StringBuilder builder, Function<String, String> nodes, Map<String, String> variables);
+    }
+
+    private static final class Literal implements Segment {
+        private final String text;
+
+        Literal(String text) {
+            this.text = text;
+        }
+
+        @Override
+        public void render(StringBuilder builder, Function<String, String> nodes, Map<String, String> variables) {
+            builder.append(text);
+        }
+    }
+
+    private static final class Variable implements Segment {
+        private final String name;
+        private final String raw;
+
+        Variable(String name, String raw) {
+            this.name = name;
+            this.raw = raw;
+        }
+
+        @Override
+        public void render(StringBuilder builder, Function<String, String> nodes, Map<String, String> variables) {
+            String value = variables.containsKey(name) ? variables.get(name)
+                    : nodes != null ? nodes.apply(name) : null;
+            builder.append(value != null ? value : raw);
+        }
+    }
+
+    private static final class Call implements Segment {
+        private final String variable;
+        private final String function;
+        private final String argument;
+        private final String raw;
+
+        Call(String variable, String function, String argument, String raw) {
+            this.variable = variable;
+            this.function = function;
+            this.argument = argument;
+            this.raw = raw;
+        }
+
+        @Override
+        public void render(StringBuilder builder, Function<String, String> nodes, Map<String, String> variables) {
+            // Looked up each time, since functions may be added at any point
+            BiFunction<String, String, String> apply = Translation.functions.get(function);
+            if (apply == null) {
+                builder.append(raw);
+                return;
+            }
+
+            String value = variables.get(variable);
+            if (value == null && nodes != null) {
+                value = nodes.apply(variable);
+            }
+            String replacement = apply.apply(value, argument);
+            builder.append(replacement != null ? replacement : raw);
+        }
+    }
+}
@@ -165,7 +165,7 @@ public class Translation {
 
         StringBuilder retstr = new StringBuilder(message);
         for (int pos = message.indexOf(chars); pos != -1; pos = message.indexOf(chars, pos)) {
-            if (pos + 1 > message.length())
+            if (pos + 1 >= message.length())
                 break;
 
             // Make sure the next char is valid hex as Minecraft uses a hexidecimal number
@@ -189,6 +189,9 @@ public class Translation {
      * 
      * <p>
      * Returns a formatted string with all placeholders from Variables replaced.
+     * Messages sent more than once should be compiled with
+     * {@link MessageTemplate#compile(String)} and rendered instead, as
+     * {@link LocaleProvider} does for locale nodes.
      * 
      * @param locale    The LocaleProvider context
      * @param message   The message to have placeholders replaced
@@ -198,56 +201,15 @@ public class Translation {
      */
     public static String translateVariables(LocaleProvider locale, String message, Map<String, String> Variables) {
         // If it doesn't have the starting char for variables, skip it.
-        if (!message.contains("{") || Variables == null)
+        if (message.indexOf('{') == -1 || Variables == null)
             return message;
 
-        String retstr = message;
-        // Try and iterate over all our variables.
-        for (int pos = retstr.indexOf("{"), pos2 = retstr.indexOf("}", pos); pos != -1
-                && pos2 != -1; pos = retstr.indexOf("{", pos + 1), pos2 = retstr.indexOf("}", pos + 1)) {
-            // If we're longer than we should be.
-            if (pos + 1 > retstr.length() || pos2 + 1 > retstr.length())
-                break;
-
-            // Substring.
-            String variable = retstr.substring(pos + 1, pos2);
-            String replacement = null;
-
-            // If the variable contains a | (verticle bar), then we tokenize on `|` and
-            // treat the lvalue as a variable and the rvalue as a function name. The
-            // functions are stored as a hashmap and only take one string argument
-            // ("dereferenced" value of the lvalue map name.). This allows us to do things
-            // like conditionally pluralize words and such in the config.
-            if (variable.contains("|")) {
-                String values[] = variable.split("\\|");
-                String rvalue = values[1], lvalue = values[0].trim();
-
-                // Allow recursive locale nodes.
-                String value = Variables.get(lvalue);
-                if (value == null)
-                    value = locale.get(lvalue);
-
-                if (rvalue.contains(":")) {
-                    int nextsplit = rvalue.indexOf(":");
-                    rvalue = rvalue.substring(0, nextsplit);
-                    String argument = values[1].substring(nextsplit + 2, values[1].length() - 1);
-
-                    replacement = functions.get(rvalue.trim()).apply(value, argument);
-                } else // (Functions.containsKey(rvalue.trim()) &&
-                       // Variables.containsKey(lvalue.trim()))
-                    replacement = functions.get(rvalue.trim()).apply(value, "");
-            } else if (Variables.containsKey(variable) || locale.get(variable) != null) {
-                // Now we replace it with our value from the map.
-                if (Variables.containsKey(variable))
-                    replacement = Variables.get(variable);
-                else
-                    replacement = locale.get(variable);
-            }
-
-            if (replacement != null)
-                retstr = retstr.substring(0, pos) + replacement + retstr.substring(pos2 + 1);
-        }
-        return retstr;
+        // If the variable contains a | (verticle bar), then it is treated as a
+        // variable followed by a function name. The functions are stored as a map and
+        // only take one string argument ("dereferenced" value of the variable). This
+        // allows us to do things like conditionally pluralize words and such in the
+        // config.
+        return MessageTemplate.compile(message).render(locale, Variables);
     }
 
     /**
@@ -4,10 +4,15 @@
  */
 package com.dumbdogdiner.stickyapi.common.util;
 
+import java.lang.reflect.Array;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
-
-import com.dumbdogdiner.stickyapi.common.util.reflection.ReflectionUtil;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Provides a very crude method of measuring the memory consumption of Java
@@ -58,7 +63,8 @@ public final class MemoryUtil {
     }
 
     /**
-     * Get the approximate size of the given object.
+     * Get the approximate size of the given object and everything it references.
+     * Each object is only counted once, so shared and cyclic references are safe.
      * 
      * @param object The object to get the size of
      * @return {@link Integer}
@@ -68,37 +74,102 @@ public final class MemoryUtil {
             return 0;
         }
 
-        Class<?> clazz = object.getClass();
-        int accumulator = 0;
+        Map<Object, Boolean> visited = new IdentityHashMap<>();
+        Deque<Object> pending = new ArrayDeque<>();
+        visited.put(object, Boolean.TRUE);
+        pending.push(object);
 
-        int size = getSizeOfBuiltin(object);
-        if (size != 0) {
-            return size;
-        }
+        long accumulator = 0;
+        while (!pending.isEmpty()) {
+            Object current = pending.pop();
 
-        for (Field field : clazz.getDeclaredFields()) {
-            if (Modifier.isStatic(field.getModifiers())) {
+            int size = getSizeOfBuiltin(current);
+            if (size != 0) {
+                accumulator += size;
                 continue;
             }
-            accumulator += getFieldSize(object, field);
+
+            Class<?> clazz = current.getClass();
+            if (clazz.isArray()) {
+                accumulator += getArraySize(current, visited, pending);
+                continue;
+            }
+
+            for (Field field : FIELDS.get(clazz)) {
+                if (field.getType().isPrimitive()) {
+                    accumulator += getPrimitiveSize(field.getType());
+                    continue;
+                }
+
+                Object value = getFieldValue(current, field);
+                if (value != null && visited.put(value, Boolean.TRUE) == null) {
+                    pending.push(value);
+                }
+            }
         }
 
-        return accumulator;
+        return (int) Math.min(accumulator, Integer.MAX_VALUE);
     }
 
     /**
-     * Get the size of a field on a given object.
+     * The instance fields of a class and its superclasses that can be read, cached
+     * so repeated measurements skip the reflection lookups.
      */
-    private static int getFieldSize(Object object, Field field) {
+    private static final ClassValue<Field[]> FIELDS = new ClassValue<Field[]>() {
+        @Override
+        protected Field[] computeValue(Class<?> type) {
+            List<Field> fields = new ArrayList<>();
+            for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    if (Modifier.isStatic(field.getModifiers())) {
+                        continue;
+                    }
+                    // Fields of modules we can't open (e.g. JDK internals) are skipped
+                    if (field.getType().isPrimitive() || field.trySetAccessible()) {
+                        fields.add(field);
+                    }
+                }
+            }
+            return fields.toArray(new Field[0]);
+        }
+    };
+
+    private static Object getFieldValue(Object object, Field field) {
         try {
-            // Java complains about illegal reflective access... Too bad!
-            return getSizeOf(ReflectionUtil.getProtectedValue(object, field.getName()));
-        } catch (IllegalArgumentException e) {
-            e.printStackTrace();
-            return 0;
+            return field.get(object);
+        } catch (IllegalAccessException e) {
+            return null;
         }
     }
 
+    private static long getArraySize(Object array, Map<Object, Boolean> visited, Deque<Object> pending) {
+        int length = Array.getLength(array);
+        Class<?> component = array.getClass().getComponentType();
+        if (component.isPrimitive()) {
+            return (long) length * getPrimitiveSize(component);
+        }
+
+        for (Object element : (Object[]) array) {
+            if (element != null && visited.put(element, Boolean.TRUE) == null) {
+                pending.push(element);
+            }
+        }
+        return 0;
+    }
+
+    private static int getPrimitiveSize(Class<?> type) {
+        if (type == boolean.class)
+            return 1;
+        else if (type == byte.class)
+            return 8;
+        else if (type == short.class || type == char.class)
+            return 16;
+        else if (type == int.class || type == float.class)
+            return 32;
+        else
+            return 64;
+    }
+
     private static int getSizeOfBuiltin(Object object) {
         // We can't use a switch statement on an object, so we need to use an if-elseif
         // chain.
@@ -112,11 +183,11 @@ public final class MemoryUtil {
             return 8;
         else if (object instanceof Short || object instanceof Character)
             return 16;
+        else if (object instanceof Integer || object instanceof Float)
+            return 32;
         else if (object instanceof Long || object instanceof Double)
             return 64;
         else
-            // potential for stack overflow if a field is circular! (maybe, but I don't see
-            // how this could happen)
             return 0;
     }
 }
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2020-2021 DumbDogDiner <dumbdogdiner.com>. All rights reserved.
+ * Licensed under the MIT license, see LICENSE for more information...
+ */
+package com.dumbdogdiner.stickyapi.common.arguments;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.dumbdogdiner.stickyapi.common.command.CompletionIndex;
+
+import org.junit.jupiter.api.Test;
+
+public class ArgumentSchemaTest {
+    private static final ArgumentSchema BAN = ArgumentSchema.builder().optionalFlag("silent", "-s")
+            .requiredString("player").optionalDuration("length").optionalSentence("reason", "No reason given")
+            .build();
+
+    @Test
+    public void testParse() {
+        Arguments args = BAN.parse(Arrays.asList("Steve", "1d", "-s", "being", "rude"));
+
+        assertTrue(args.valid());
+        assertTrue(args.getFlag("silent"));
+        assertEquals("Steve", args.getString("player"));
+        assertEquals(86400L, args.getDuration("length"));
+        assertEquals("being rude", args.getString("reason"));
+    }
+
+    @Test
+    public void testParseIsRepeatable() {
+        Arguments first = BAN.parse(Arrays.asList("Steve"));
+        Arguments second = BAN.parse(Arrays.asList("Alex", "rude"));
+
+        assertEquals("Steve", first.getString("player"));
+        assertEquals("No reason given", first.getString("reason"));
+        assertFalse(first.exists("length"));
+        assertEquals("Alex", second.getString("player"));
+        assertEquals("rude", second.getString("reason"));
+    }
+
+    @Test
+    public void testMissingRequiredArgument() {
+        Arguments args = BAN.parse(Arrays.asList("-s"));
+
+        assertFalse(args.valid());
+        assertEquals("player", args.getInvalidatedBy());
+    }
+
+    @Test
+    public void testUsage() {
+        assertEquals("<player> [length] [reason...] [-s]", BAN.getUsage());
+        assertEquals("<amount> -f", ArgumentSchema.builder().requiredFlag("force", "-f").requiredInt("amount")
+                .build().getUsage());
+    }
+
+    @Test
+    public void testComplete() {
+        ArgumentSchema schema = ArgumentSchema.builder().optionalFlag("silent", "-s").requiredString("player")
+                .requiredString("colour").suggest(CompletionIndex.of("red", "green", "grey"))
+                .requiredInt("amount").build();
+
+        assertNull(schema.complete(Arrays.asList("St")));
+        assertEquals(Arrays.asList("green", "grey"), schema.complete(Arrays.asList("Steve", "gr")));
+        assertEquals(Arrays.asList("green", "grey"), schema.complete(Arrays.asList("-s", "Steve", "gr")));
+        assertEquals(Arrays.asList("-s"), schema.complete(Arrays.asList("Steve", "-")));
+        assertTrue(schema.complete(Arrays.asList("Steve", "red", "")).isEmpty());
+        assertTrue(schema.complete(Arrays.asList("Steve", "red", "5", "")).isEmpty());
+    }
+
+    @Test
+    public void testQuotedFlagValues() {
+        ArgumentSchema schema = ArgumentSchema.builder().optionalFlagValue("reason", "-r")
+                .optionalFlagValue("length", "--length").requiredString("player").build();
+
+        Arguments args = schema.parse(Arrays.asList("-r", "\"being", "rude\"", "--length=1d", "\"Steve\""));
+        assertTrue(args.valid());
+        assertEquals("being rude", args.getString("reason"));
+        assertEquals(86400L, args.getDuration("length"));
+        assertEquals("Steve", args.getString("player"));
+
+        assertEquals("<player> [-r <reason>] [--length <length>]", schema.getUsage());
+        assertNull(schema.complete(Arrays.asList("-r", "be")));
+        assertNull(schema.complete(Arrays.asList("-r", "x", "--length=1d", "St")));
+        assertTrue(schema.complete(Arrays.asList("-r", "x", "Steve", "")).isEmpty());
+    }
+
+    @Test
+    public void testParseAdjacentEmptyQuotes() {
+        Arguments args = BAN.parse(Arrays.asList("\"\"\"\""));
+
+        assertTrue(args.valid());
+        assertEquals("\"\"", args.getString("player"));
+    }
+
+    @Test
+    public void testInvalidSchemas() {
+        assertThrows(IllegalStateException.class,
+                () -> ArgumentSchema.builder().requiredString("a").optionalString("a").build());
+        assertThrows(IllegalStateException.class,
+                () -> ArgumentSchema.builder().optionalString("a").requiredString("b").build());
+        assertThrows(IllegalStateException.class,
+                () -> ArgumentSchema.builder().requiredSentence("a").requiredString("b").build());
+        assertThrows(IllegalStateException.class,
+                () -> ArgumentSchema.builder().optionalFlag("a", "-a").optionalFlagValue("b", "-a").build());
+        assertThrows(IllegalStateException.class, () -> ArgumentSchema.builder().suggest(CompletionIndex.of()));
+
+        List<ArgumentSchema.Parameter> parameters = BAN.getParameters();
+        assertEquals(4, parameters.size());
+        assertThrows(UnsupportedOperationException.class, () -> parameters.remove(0));
+    }
+}
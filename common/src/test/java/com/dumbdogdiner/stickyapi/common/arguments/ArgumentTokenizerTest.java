@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2020-2021 DumbDogDiner <dumbdogdiner.com>. All rights reserved.
+ * Licensed under the MIT license, see LICENSE for more information...
+ */
+package com.dumbdogdiner.stickyapi.common.arguments;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+public class ArgumentTokenizerTest {
+    @Test
+    public void testWhitespace() {
+        assertEquals(Arrays.asList("ban", "Steve", "now"), ArgumentTokenizer.tokenize("  ban Steve\t now "));
+        assertEquals(Arrays.asList(), ArgumentTokenizer.tokenize("   "));
+    }
+
+    @Test
+    public void testQuotes() {
+        assertEquals(Arrays.asList("-r", "being rude", "Steve"),
+                ArgumentTokenizer.tokenize("-r \"being rude\" Steve"));
+        assertEquals(Arrays.asList("it's", "a  test"), ArgumentTokenizer.tokenize("it's 'a  test'"));
+        assertEquals(Arrays.asList("say \"hi\"", ""), ArgumentTokenizer.tokenize("\"say \\\"hi\\\"\" ''"));
+    }
+
+    @Test
+    public void testQuotedFlagValues() {
+        assertEquals(Arrays.asList("--reason=being rude", "--length=1d"),
+                ArgumentTokenizer.tokenize("--reason=\"being rude\" --length=1d"));
+    }
+
+    @Test
+    public void testUnclosedQuotesAreLiteral() {
+        assertEquals(Arrays.asList("\"being", "rude"), ArgumentTokenizer.tokenize("\"being rude"));
+        assertEquals(Arrays.asList("'tis", "a b"), ArgumentTokenizer.tokenize("'tis \"a b\""));
+    }
+
+    @Test
+    public void testAdjacentEmptyQuotes() {
+        assertEquals(Arrays.asList("\"\""), ArgumentTokenizer.tokenize("\"\"\"\""));
+        assertEquals(Arrays.asList("\"x\""), ArgumentTokenizer.tokenize("''\"x\""));
+        assertEquals(Arrays.asList("", "a"), ArgumentTokenizer.tokenize("'' a"));
+    }
+
+    @Test
+    public void testSplitArguments() {
+        // Servers split on single spaces, leaving empty arguments for repeated ones
+        assertEquals(Arrays.asList("-r", "being  rude"),
+                ArgumentTokenizer.tokenize(Arrays.asList("-r", "\"being", "", "rude\"")));
+    }
+}
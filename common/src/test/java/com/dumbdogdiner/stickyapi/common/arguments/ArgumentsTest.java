@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 2020-2021 DumbDogDiner <dumbdogdiner.com>. All rights reserved.
+ * Licensed under the MIT license, see LICENSE for more information...
+ */
+package com.dumbdogdiner.stickyapi.common.arguments;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class ArgumentsTest {
+    private static Arguments of(String... args) {
+        return new Arguments(Arrays.asList(args));
+    }
+
+    @Test
+    public void testFlagsAreTakenFromAnywhere() {
+        Arguments args = of("Steve", "-s", "griefing", "-f");
+        args.optionalFlag("silent", "-s").requiredFlag("force", "-f").optionalFlag("missing", "-m")
+                .requiredString("player").requiredSentence("reason");
+
+        assertTrue(args.valid());
+        assertTrue(args.getFlag("silent"));
+        assertTrue(args.getFlag("force"));
+        assertFalse(args.getFlag("missing"));
+        assertEquals("Steve", args.getString("player"));
+        assertEquals("griefing", args.getString("reason"));
+    }
+
+    @Test
+    public void testGroupedAndNamedFlags() {
+        Arguments args = new Arguments(Arrays.asList("-sf", "Steve", "--length=1d", "confirm"), true)
+                .optionalFlag("silent", "-s")
+                .optionalFlag("force", "-f").optionalFlag("verbose", "-v").optionalFlag("confirm")
+                .requiredFlagValue("length", "--length").requiredString("player");
+
+        assertTrue(args.valid());
+        assertTrue(args.getFlag("silent"));
+        assertTrue(args.getFlag("force"));
+        assertFalse(args.getFlag("verbose"));
+        assertTrue(args.getFlag("confirm"));
+        assertEquals(86400L, args.getDuration("length"));
+        assertEquals("Steve", args.getString("player"));
+        assertEquals(Arrays.asList("Steve"), args.getUnparsedArgs());
+    }
+
+    @Test
+    public void testFlagsMatchExactlyUnlessExpanded() {
+        Arguments args = of("Steve", "-silly", "reason", "--force=yes").requiredString("player")
+                .optionalFlag("silent", "-s").optionalFlag("force", "--force").optionalSentence("reason");
+
+        assertTrue(args.valid());
+        assertFalse(args.getFlag("silent"));
+        assertFalse(args.getFlag("force"));
+        assertEquals("-silly reason --force=yes", args.getString("reason"));
+
+        // Flag values still accept --key=value
+        Arguments values = of("--length=1d").requiredFlagValue("length", "--length");
+        assertEquals(86400L, values.getDuration("length"));
+    }
+
+    @Test
+    public void testLaterFlagIsFoundAfterTheFirstIsRead() {
+        Arguments args = of("-s", "-s").optionalFlag("other", "-o").requiredString("player").optionalFlag("silent", "-s");
+
+        assertEquals("-s", args.getString("player"));
+        assertTrue(args.getFlag("silent"));
+    }
+
+    @Test
+    public void testFlagValues() {
+        Arguments args = of("Steve", "-r", "being rude", "-5").optionalFlagValue("reason", "-r")
+                .optionalFlagValue("length", "--length").requiredString("player").requiredInt("negative");
+
+        assertEquals("being rude", args.getString("reason"));
+        assertFalse(args.exists("length"));
+        assertEquals("Steve", args.getString("player"));
+        // Negative numbers are not short flags, but are not integers either
+        assertFalse(args.valid());
+
+        Arguments missing = of("-r").requiredFlagValue("reason", "-r");
+        assertFalse(missing.valid());
+        assertEquals("reason", missing.getInvalidatedBy());
+    }
+
+    @Test
+    public void testMissingRequiredFlagInvalidates() {
+        Arguments args = of("Steve").requiredFlag("force", "-f");
+
+        assertFalse(args.valid());
+        assertEquals("force", args.getInvalidatedBy());
+    }
+
+    @Test
+    public void testOptionalAndRequiredStrings() {
+        Arguments args = of("a", "b").requiredString("first").optionalString("second").optionalString("third",
+                "fallback");
+
+        assertTrue(args.valid());
+        assertEquals("a", args.getString("first"));
+        assertEquals("b", args.getString("second"));
+        assertEquals("fallback", args.getString("third"));
+
+        args.requiredString("fourth");
+        assertFalse(args.valid());
+        assertEquals("fourth", args.getInvalidatedBy());
+    }
+
+    @Test
+    public void testSentences() {
+        Arguments args = of("ban", "Steve", "for", "being", "rude").requiredString("command")
+                .requiredSentence("target", 1).optionalSentence("reason");
+
+        assertEquals("Steve", args.getString("target"));
+        assertEquals("for being rude", args.getString("reason"));
+        assertEquals(Arrays.asList("ban", "Steve"), args.getUnparsedArgs());
+
+        Arguments tooShort = of("one", "two").requiredSentence("sentence", 3);
+        assertFalse(tooShort.valid());
+
+        Arguments fallback = of("one").optionalSentence("sentence", "default", 2);
+        assertEquals("default", fallback.getString("sentence"));
+        assertEquals(Arrays.asList("one"), fallback.getUnparsedArgs());
+    }
+
+    @Test
+    public void testIntegersAreStoredOnce() {
+        Arguments args = of("42", "nope", "99999999999").requiredInt("amount").optionalInt("page", 3)
+                .requiredString("word").requiredInt("big");
+
+        assertTrue(args.valid());
+        assertEquals(42, args.getInt("amount"));
+        assertEquals(42L, args.getLong("amount"));
+        assertEquals(42.0, args.getDouble("amount"));
+        assertEquals(3, args.getInt("page"));
+        assertEquals("3", args.getString("page"));
+        assertNull(args.getInt("big"));
+        assertEquals(99999999999L, args.getLong("big"));
+        assertNull(args.getInt("word"));
+        assertNull(args.getDouble("missing"));
+    }
+
+    @Test
+    public void testOptionalIntWithoutFallbackIsAbsent() {
+        Arguments args = of("word").optionalInt("page");
+
+        assertFalse(args.exists("page"));
+        assertNull(args.getInt("page"));
+        assertEquals(Arrays.asList("word"), args.getUnparsedArgs());
+    }
+
+    @Test
+    public void testDurations() {
+        Arguments args = of("1h", "Steve", "30m").requiredDuration("length").requiredString("player")
+                .optionalDuration("extra");
+
+        assertTrue(args.valid());
+        assertEquals(3600L, args.getDuration("length"));
+        assertEquals("1h", args.getString("length"));
+        assertEquals(1800L, args.getDuration("extra"));
+        assertNull(args.getDuration("player"));
+        assertNull(args.getDuration("missing"));
+    }
+
+    @Test
+    public void testTimestamps() {
+        long before = System.currentTimeMillis() / 1000L * 1000L;
+        Arguments args = of("1d").requiredTimeString("until");
+
+        assertTrue(args.valid());
+        long until = args.getTimestamp("until").getTime();
+        assertTrue(until >= before + 86400000L);
+        assertEquals(until, args.getLong("until"));
+        assertEquals(String.valueOf(until), args.getString("until"));
+        assertNull(of().getTimestamp("until"));
+    }
+
+    @Test
+    public void testUnparsedArgs() {
+        List<String> raw = Arrays.asList("a", "-f", "b", "c");
+        Arguments args = new Arguments(raw).optionalFlag("force", "-f").optionalString("first")
+                .requiredString("second");
+
+        assertEquals(raw, args.getRawArgs());
+        assertEquals(Arrays.asList("b", "c"), args.getUnparsedArgs());
+    }
+
+    @Test
+    public void testFlagBehindRequiredArgumentsDoesNotSkip() {
+        Arguments args = of("Steve", "-s", "griefing").requiredString("player").requiredString("second")
+                .optionalFlag("silent", "-s").requiredString("reason");
+
+        // Previously, removing the flag shifted the remaining arguments and skipped "griefing"
+        assertTrue(args.valid());
+        assertEquals("-s", args.getString("second"));
+        assertEquals("griefing", args.getString("reason"));
+    }
+}
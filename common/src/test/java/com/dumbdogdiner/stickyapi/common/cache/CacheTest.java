@@ -0,0 +1,357 @@
+/*
+ * Copyright (c) 2020-2021 DumbDogDiner <dumbdogdiner.com>. All rights reserved.
+ * Licensed under the MIT license, see LICENSE for more information...
+ */
+package com.dumbdogdiner.stickyapi.common.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+
+import org.junit.jupiter.api.Test;
+
+public class CacheTest {
+    static class Entry implements Cacheable {
+        private final String key;
+        private final String group;
+
+        Entry(String key) {
+            this(key, null);
+        }
+
+        Entry(String key, String group) {
+            this.key = key;
+            this.group = group;
+        }
+
+        String getGroup() {
+            return group;
+        }
+
+        @Override
+        public String getKey() {
+            return key;
+        }
+    }
+
+    private static Cache<Entry> newCache(EvictionPolicy policy, int maxSize) {
+        Cache<Entry> cache = new Cache<>(Entry.class);
+        cache.setEvictionPolicy(policy);
+        cache.setMaxSize(maxSize);
+        return cache;
+    }
+
+    @Test
+    public void testPutAndGet() {
+        Cache<Entry> cache = new Cache<>(Entry.class);
+        Entry a = new Entry("a");
+        cache.put(a);
+
+        assertEquals(a, cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testPutDoesNotReplace() {
+        Cache<Entry> cache = new Cache<>(Entry.class);
+        Entry first = new Entry("a");
+        cache.put(first);
+        cache.put(new Entry("a"));
+
+        assertEquals(first, cache.get("a"));
+    }
+
+    @Test
+    public void testUpdateReplaces() {
+        Cache<Entry> cache = new Cache<>(Entry.class);
+        cache.put(new Entry("a"));
+        Entry second = new Entry("a");
+        cache.update(second);
+
+        assertEquals(second, cache.get("a"));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testRemove() {
+        Cache<Entry> cache = new Cache<>(Entry.class);
+        Entry a = new Entry("a");
+        cache.put(a);
+
+        assertEquals(a, cache.removeKey("a"));
+        assertNull(cache.removeKey("a"));
+        assertEquals(0, cache.size());
+        assertNull(cache.getOldestEntry());
+    }
+
+    @Test
+    public void testFifoEvictsFirstInserted() {
+        Cache<Entry> cache = newCache(EvictionPolicy.FIFO, 2);
+        cache.put(new Entry("a"));
+        cache.put(new Entry("b"));
+        cache.get("a");
+        cache.put(new Entry("c"));
+
+        assertEquals(2, cache.size());
+        assertNull(cache.get("a"));
+        assertNotNull(cache.get("b"));
+        assertNotNull(cache.get("c"));
+    }
+
+    @Test
+    public void testLruEvictsLeastRecentlyUsed() {
+        Cache<Entry> cache = newCache(EvictionPolicy.LRU, 2);
+        cache.put(new Entry("a"));
+        cache.put(new Entry("b"));
+        cache.get("a");
+        cache.put(new Entry("c"));
+
+        assertEquals(2, cache.size());
+        assertNotNull(cache.get("a"));
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("c"));
+    }
+
+    @Test
+    public void testTinyLfuKeepsPopularEntries() {
+        Cache<Entry> cache = newCache(EvictionPolicy.TINY_LFU, 100);
+        for (int i = 0; i < 100; i++) {
+            cache.put(new Entry("hot" + i));
+        }
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 100; i++) {
+                cache.get("hot" + i);
+            }
+        }
+
+        // A scan of one-off keys should not flush out the frequently used ones
+        for (int i = 0; i < 1000; i++) {
+            cache.put(new Entry("cold" + i));
+        }
+
+        int retained = 0;
+        for (int i = 0; i < 100; i++) {
+            if (cache.get("hot" + i) != null) {
+                retained++;
+            }
+        }
+        assertEquals(100, cache.size());
+        assertEquals(true, retained >= 90, "retained " + retained);
+    }
+
+    @Test
+    public void testShrinkingMaxSizeEvicts() {
+        Cache<Entry> cache = newCache(EvictionPolicy.LRU, 0);
+        for (int i = 0; i < 10; i++) {
+            cache.put(new Entry(String.valueOf(i)));
+        }
+        cache.setMaxSize(3);
+
+        assertEquals(3, cache.size());
+        assertNotNull(cache.get("9"));
+    }
+
+    @Test
+    public void testRemoveOldestEntry() {
+        Cache<Entry> cache = newCache(EvictionPolicy.FIFO, 0);
+        Entry a = new Entry("a");
+        cache.put(a);
+        cache.put(new Entry("b"));
+
+        assertEquals(a, cache.getOldestEntry());
+        assertEquals(a, cache.removeOldestEntry());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testChangingPolicyKeepsEntries() {
+        Cache<Entry> cache = newCache(EvictionPolicy.FIFO, 10);
+        for (int i = 0; i < 10; i++) {
+            cache.put(new Entry(String.valueOf(i)));
+        }
+        cache.setEvictionPolicy(EvictionPolicy.TINY_LFU);
+        cache.setEvictionPolicy(EvictionPolicy.LRU);
+
+        assertEquals(10, cache.size());
+        assertEquals("0", cache.getOldestEntry().getKey());
+    }
+
+    @Test
+    public void testExpiredEntriesAreNotReturned() throws InterruptedException {
+        Cache<Entry> cache = new Cache<>(Entry.class);
+        cache.setTtl(20L);
+        cache.put(new Entry("a"));
+        Thread.sleep(40L);
+
+        assertNull(cache.get("a"));
+        assertNull(cache.find(object -> true));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testCleanUpRemovesExpiredEntries() throws InterruptedException {
+        Cache<Entry> cache = new Cache<>(Entry.class);
+        cache.setTtl(20L);
+        cache.put(new Entry("a"));
+        cache.put(new Entry("b"));
+        Thread.sleep(40L);
+        cache.cleanUp();
+
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testPutReplacesExpiredEntry() throws InterruptedException {
+        Cache<Entry> cache = new Cache<>(Entry.class);
+        cache.setTtl(20L);
+        cache.put(new Entry("a"));
+        Thread.sleep(40L);
+        Entry replacement = new Entry("a");
+        cache.put(replacement);
+
+        assertEquals(replacement, cache.get("a"));
+    }
+
+    @Test
+    public void testZeroTtlNeverExpires() throws InterruptedException {
+        Cache<Entry> cache = new Cache<>(Entry.class);
+        cache.setTtl(20L);
+        cache.put(new Entry("a"));
+        cache.setTtl(0L);
+        Thread.sleep(40L);
+        cache.cleanUp();
+
+        assertNotNull(cache.get("a"));
+    }
+
+    @Test
+    public void testFindByIndex() {
+        Cache<Entry> cache = new Cache<>(Entry.class);
+        cache.put(new Entry("a", "red"));
+        cache.index("group", Entry::getGroup);
+        cache.put(new Entry("b", "red"));
+        cache.put(new Entry("c", "blue"));
+        cache.put(new Entry("d"));
+
+        assertEquals(2, cache.findAllBy("group", "red").size());
+        assertEquals("c", cache.findBy("group", "blue").getKey());
+        assertNull(cache.findBy("group", "green"));
+        assertThrows(IllegalArgumentException.class, () -> cache.findBy("colour", "red"));
+    }
+
+    @Test
+    public void testIndexFollowsRemovalAndUpdate() {
+        Cache<Entry> cache = newCache(EvictionPolicy.FIFO, 2);
+        cache.index("group", Entry::getGroup);
+        cache.put(new Entry("a", "red"));
+        cache.put(new Entry("b", "red"));
+        cache.update(new Entry("b", "blue"));
+        cache.put(new Entry("c", "green"));
+
+        // a was evicted, b moved to blue
+        assertNull(cache.findBy("group", "red"));
+        assertEquals("b", cache.findBy("group", "blue").getKey());
+
+        cache.removeKey("c");
+        assertNull(cache.findBy("group", "green"));
+    }
+
+    @Test
+    public void testStatsCountActivity() {
+        Cache<Entry> cache = newCache(EvictionPolicy.FIFO, 2);
+        cache.put(new Entry("a"));
+        cache.put(new Entry("b"));
+        cache.get("a");
+        cache.get("missing");
+        cache.update(new Entry("b"));
+        cache.put(new Entry("c"));
+        cache.removeKey("c");
+        cache.find(object -> object.getKey().equals("b"));
+
+        CacheStats stats = cache.stats();
+        assertEquals(1, stats.getSize());
+        assertEquals(1, stats.getHitCount());
+        assertEquals(1, stats.getMissCount());
+        assertEquals(0.5, stats.getHitRate());
+        assertEquals(4, stats.getPutCount());
+        assertEquals(1, stats.getEvictionCount());
+        assertEquals(1, stats.getRemovalCount(RemovalCause.REPLACED));
+        assertEquals(1, stats.getRemovalCount(RemovalCause.EXPLICIT));
+        assertEquals(1, stats.getFindCount());
+        assertEquals(1.0, stats.getAverageFindScanLength());
+    }
+
+    @Test
+    public void testRegistryListsLiveCaches() {
+        Cache<Entry> cache = new Cache<>(Entry.class);
+        cache.setName("registry-test");
+
+        assertTrue(CacheRegistry.getCaches().contains(cache));
+        assertTrue(CacheRegistry.stats().containsKey("registry-test"));
+    }
+
+    @Test
+    public void testMaxWeightEvicts() {
+        Cache<Entry> cache = new Cache<>(Entry.class);
+        cache.setEvictionPolicy(EvictionPolicy.LRU);
+        cache.setWeigher(object -> object.getKey().length());
+        cache.setMaxWeight(10);
+        cache.put(new Entry("aaaa"));
+        cache.put(new Entry("bbbb"));
+        cache.get("aaaa");
+        cache.put(new Entry("cccc"));
+
+        assertEquals(8, cache.getTotalWeight());
+        assertNull(cache.get("bbbb"));
+        assertNotNull(cache.get("aaaa"));
+
+        cache.removeKey("aaaa");
+        assertEquals(4, cache.getTotalWeight());
+    }
+
+    @Test
+    public void testMaxWeightWeighsExistingEntries() {
+        Cache<Entry> cache = new Cache<>(Entry.class);
+        for (int i = 0; i < 10; i++) {
+            cache.put(new Entry("key" + i));
+        }
+        cache.setMaxWeight(1);
+
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getTotalWeight());
+    }
+
+    @Test
+    public void testHitsDoNotAllocate() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+
+        Cache<Entry> cache = newCache(EvictionPolicy.TINY_LFU, 100);
+        String[] keys = new String[64];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = "key" + i;
+            cache.put(new Entry(keys[i]));
+        }
+
+        long thread = Thread.currentThread().getId();
+        long allocated = Long.MAX_VALUE;
+        // Take the best of a few runs, in case something else ran on this thread
+        for (int run = 0; run < 5; run++) {
+            long before = threads.getThreadAllocatedBytes(thread);
+            for (int i = 0; i < 10_000; i++) {
+                cache.get(keys[i & 63]);
+            }
+            long overhead = threads.getThreadAllocatedBytes(thread);
+            allocated = Math.min(allocated, (overhead - before) - (threads.getThreadAllocatedBytes(thread) - overhead));
+        }
+        assertTrue(allocated <= 0, "allocated " + allocated + " bytes");
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2020-2021 DumbDogDiner <dumbdogdiner.com>. All rights reserved.
+ * Licensed under the MIT license, see LICENSE for more information...
+ */
+package com.dumbdogdiner.stickyapi.common.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.dumbdogdiner.stickyapi.common.cache.CacheTest.Entry;
+
+import org.junit.jupiter.api.Test;
+
+public class LoadingCacheTest {
+    @Test
+    public void testConcurrentMissesShareOneLoad() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CompletableFuture<Entry> source = new CompletableFuture<>();
+        LoadingCache<Entry> cache = new LoadingCache<>(Entry.class, key -> {
+            loads.incrementAndGet();
+            return source;
+        });
+
+        CompletableFuture<Entry> first = cache.getAsync("a");
+        CompletableFuture<Entry> second = cache.getAsync("a");
+        assertSame(first, second);
+        assertEquals(1, cache.pendingLoads());
+
+        Entry loaded = new Entry("a");
+        source.complete(loaded);
+
+        assertEquals(loaded, first.get());
+        assertEquals(loaded, cache.get("a"));
+        assertEquals(0, cache.pendingLoads());
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.stats().getLoadSuccessCount());
+
+        // Now cached, so no further loads
+        assertEquals(loaded, cache.getAsync("a").get());
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void testNullIsNotCached() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        LoadingCache<Entry> cache = new LoadingCache<>(Entry.class, key -> {
+            loads.incrementAndGet();
+            return CompletableFuture.completedFuture(null);
+        });
+
+        assertNull(cache.getAsync("a").get());
+        assertNull(cache.getAsync("a").get());
+        assertEquals(2, loads.get());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testFailedLoadPropagates() {
+        LoadingCache<Entry> cache = new LoadingCache<>(Entry.class, key -> {
+            throw new IllegalStateException("database is down");
+        });
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> cache.getAsync("a").get());
+        assertTrue(e.getCause() instanceof IllegalStateException);
+        assertEquals(1, cache.stats().getLoadFailureCount());
+        assertEquals(0, cache.pendingLoads());
+    }
+
+    @Test
+    public void testFailedStoreCompletesTheLoad() {
+        LoadingCache<Entry> cache = new LoadingCache<>(Entry.class,
+                key -> CompletableFuture.completedFuture(new Entry(key)));
+        cache.setWeigher(object -> -1);
+        cache.setMaxWeight(10);
+
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> cache.getAsync("a").get(5, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof IllegalStateException);
+        assertEquals(0, cache.pendingLoads());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testRefreshAfterWriteServesStaleValue() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        LoadingCache<Entry> cache = new LoadingCache<>(Entry.class, key -> {
+            loads.incrementAndGet();
+            return CompletableFuture.completedFuture(new Entry(key));
+        });
+        cache.setRefreshAfterWrite(20L);
+
+        Entry original = cache.getAsync("a").get();
+        Thread.sleep(40L);
+
+        // Stale value is returned while the refresh replaces it
+        assertSame(original, cache.getAsync("a").get());
+        assertEquals(2, loads.get());
+        assertTrue(original != cache.get("a"));
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2020-2021 DumbDogDiner <dumbdogdiner.com>. All rights reserved.
+ * Licensed under the MIT license, see LICENSE for more information...
+ */
+package com.dumbdogdiner.stickyapi.common.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import com.dumbdogdiner.stickyapi.common.cache.CacheTest.Entry;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class MappedFileTierTest {
+    private static final CacheSerializer<Entry> SERIALIZER = new CacheSerializer<Entry>() {
+        @Override
+        public byte[] serialize(Entry object) {
+            return object.getKey().getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public Entry deserialize(byte[] bytes) {
+            return new Entry(new String(bytes, StandardCharsets.UTF_8));
+        }
+    };
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testEvictedEntriesArePromoted() throws IOException {
+        try (MappedFileTier<Entry> tier = new MappedFileTier<>(directory.resolve("cache.bin"), SERIALIZER)) {
+            Cache<Entry> cache = new Cache<>(Entry.class);
+            cache.setMaxSize(2);
+            cache.setSecondTier(tier);
+            cache.put(new Entry("a"));
+            cache.put(new Entry("b"));
+            cache.put(new Entry("c"));
+
+            assertEquals(1, tier.size());
+            assertTrue(tier.containsKey("a"));
+
+            // Promoted back into memory, which spills the next oldest instead
+            assertNotNull(cache.get("a"));
+            assertFalse(tier.containsKey("a"));
+            assertTrue(tier.containsKey("b"));
+        }
+    }
+
+    @Test
+    public void testPromotedEntriesExpireOnSchedule() throws Exception {
+        try (MappedFileTier<Entry> tier = new MappedFileTier<>(directory.resolve("cache.bin"), SERIALIZER)) {
+            Cache<Entry> cache = new Cache<>(Entry.class);
+            cache.setTtl(400L);
+            cache.setMaxSize(1);
+            cache.setSecondTier(tier);
+            cache.put(new Entry("a"));
+            cache.put(new Entry("b"));
+            assertTrue(tier.containsKey("a"));
+
+            Thread.sleep(300L);
+            cache.removeKey("b");
+            cache.put(new Entry("c"));
+            cache.setMaxSize(2);
+            assertNotNull(cache.get("a"));
+
+            // "a" was inserted long before "c", so it must expire first even
+            // though it came back into memory after it
+            Thread.sleep(200L);
+            cache.cleanUp();
+            assertEquals(1, cache.size());
+            assertNotNull(cache.get("c"));
+        }
+    }
+
+    @Test
+    public void testEntriesSurviveReopening() throws IOException {
+        Path file = directory.resolve("cache.bin");
+        try (MappedFileTier<Entry> tier = new MappedFileTier<>(file, SERIALIZER)) {
+            Cache<Entry> cache = new Cache<>(Entry.class);
+            cache.setSecondTier(tier);
+            for (int i = 0; i < 100; i++) {
+                cache.put(new Entry("key" + i));
+            }
+            cache.removeKey("key0");
+            cache.persist();
+        }
+
+        try (MappedFileTier<Entry> tier = new MappedFileTier<>(file, SERIALIZER)) {
+            assertEquals(99, tier.size());
+
+            Cache<Entry> cache = new Cache<>(Entry.class);
+            cache.setSecondTier(tier);
+            assertEquals("key42", cache.get("key42").getKey());
+            assertNull(cache.get("key0"));
+        }
+    }
+
+    @Test
+    public void testCompactionRunsInTheBackground() throws Exception {
+        Path file = directory.resolve("cache.bin");
+        String padding = "x".repeat(1000);
+        try (MappedFileTier<Entry> tier = new MappedFileTier<>(file, SERIALIZER)) {
+            for (int i = 0; i < 2000; i++) {
+                tier.write(new Entry(i + padding), 0L);
+            }
+            for (int i = 1; i < 2000; i++) {
+                tier.remove(i + padding);
+            }
+            // Removing never rewrites the file on the caller's thread
+            long size = Files.size(file);
+            assertTrue(size > (1 << 20));
+
+            Cache<Entry> cache = new Cache<>(Entry.class);
+            cache.setSecondTier(tier);
+            cache.cleanUp();
+
+            long deadline = System.currentTimeMillis() + 5000;
+            while (Files.size(file) == size && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertTrue(Files.size(file) < size);
+            assertEquals(1, tier.size());
+            assertEquals("0" + padding, tier.take("0" + padding).value.getKey());
+        }
+    }
+
+    @Test
+    public void testWritesDuringCompactionAreKept() throws Exception {
+        Path file = directory.resolve("cache.bin");
+        String padding = "x".repeat(100);
+        try (MappedFileTier<Entry> tier = new MappedFileTier<>(file, SERIALIZER)) {
+            for (int i = 0; i < 5000; i++) {
+                tier.write(new Entry("old" + i + padding), 0L);
+            }
+
+            Thread writer = new Thread(() -> {
+                for (int i = 0; i < 5000; i++) {
+                    tier.write(new Entry("new" + i + padding), 0L);
+                    tier.remove("old" + i + padding);
+                }
+            });
+            writer.start();
+            while (writer.isAlive()) {
+                tier.compact();
+            }
+            writer.join();
+            tier.compact();
+
+            assertEquals(5000, tier.size());
+            assertTrue(tier.containsKey("new4999" + padding));
+            assertFalse(tier.containsKey("old0" + padding));
+        }
+
+        try (MappedFileTier<Entry> tier = new MappedFileTier<>(file, SERIALIZER)) {
+            assertEquals(5000, tier.size());
+            assertEquals("new0" + padding, tier.take("new0" + padding).value.getKey());
+            assertNull(tier.take("old4999" + padding));
+        }
+    }
+
+    @Test
+    public void testClosedTierRejectsAccess() throws IOException {
+        MappedFileTier<Entry> tier = new MappedFileTier<>(directory.resolve("cache.bin"), SERIALIZER);
+        tier.write(new Entry("a"), 0L);
+        tier.close();
+        tier.close();
+
+        assertThrows(IllegalStateException.class, () -> tier.take("a"));
+        assertThrows(IllegalStateException.class, () -> tier.write(new Entry("b"), 0L));
+    }
+
+    @Test
+    public void testRemovedEntriesStayRemovedAfterCompaction() throws IOException {
+        Path file = directory.resolve("cache.bin");
+        try (MappedFileTier<Entry> tier = new MappedFileTier<>(file, SERIALIZER)) {
+            for (int i = 0; i < 10; i++) {
+                tier.write(new Entry("key" + i), 0L);
+            }
+            for (int i = 0; i < 5; i++) {
+                tier.remove("key" + i);
+            }
+            tier.compact();
+            assertEquals(5, tier.size());
+        }
+
+        try (MappedFileTier<Entry> tier = new MappedFileTier<>(file, SERIALIZER)) {
+            assertEquals(5, tier.size());
+            assertNull(tier.take("key0"));
+            assertEquals("key9", tier.take("key9").value.getKey());
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2020-2021 DumbDogDiner <dumbdogdiner.com>. All rights reserved.
+ * Licensed under the MIT license, see LICENSE for more information...
+ */
+package com.dumbdogdiner.stickyapi.common.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+
+public class PrimitiveCacheTest {
+    @Test
+    public void testPutGetRemove() {
+        LongCache<String> cache = new LongCache<>();
+        assertTrue(cache.put(1L, "one"));
+        assertFalse(cache.put(1L, "uno"));
+        assertEquals("one", cache.get(1L));
+
+        assertTrue(cache.update(1L, "uno"));
+        assertEquals("uno", cache.get(1L));
+        assertEquals("uno", cache.remove(1L));
+        assertNull(cache.get(1L));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testMatchesHashMapUnderChurn() {
+        LongCache<Long> cache = new LongCache<>();
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(42);
+
+        // Small key range forces collisions, resizes and backward shifts
+        for (int i = 0; i < 100_000; i++) {
+            long key = random.nextInt(2000);
+            if (random.nextBoolean()) {
+                cache.update(key, key * 2);
+                expected.put(key, key * 2);
+            } else {
+                assertEquals(expected.remove(key), cache.remove(key));
+            }
+        }
+
+        assertEquals(expected.size(), cache.size());
+        for (long key = 0; key < 2000; key++) {
+            assertEquals(expected.get(key), cache.get(key));
+        }
+    }
+
+    @Test
+    public void testLruEvictsLeastRecentlyUsed() {
+        LongCache<String> cache = new LongCache<>();
+        cache.setEvictionPolicy(EvictionPolicy.LRU);
+        cache.setMaxSize(2);
+        cache.put(1L, "a");
+        cache.put(2L, "b");
+        cache.get(1L);
+        cache.put(3L, "c");
+
+        assertNotNull(cache.get(1L));
+        assertNull(cache.get(2L));
+        assertNotNull(cache.get(3L));
+        assertEquals(1, cache.stats().getEvictionCount());
+    }
+
+    @Test
+    public void testFifoEvictsFirstInserted() {
+        LongCache<String> cache = new LongCache<>();
+        cache.setMaxSize(2);
+        cache.put(1L, "a");
+        cache.put(2L, "b");
+        cache.get(1L);
+        cache.put(3L, "c");
+
+        assertNull(cache.get(1L));
+        assertNotNull(cache.get(2L));
+    }
+
+    @Test
+    public void testTinyLfuRejectsColdKeys() {
+        LongCache<String> cache = new LongCache<>();
+        cache.setEvictionPolicy(EvictionPolicy.TINY_LFU);
+        cache.setMaxSize(10);
+        for (long key = 0; key < 10; key++) {
+            cache.put(key, "hot");
+            for (int i = 0; i < 5; i++) {
+                cache.get(key);
+            }
+        }
+
+        // A scan of one-off keys, while the hot keys keep being used
+        for (long key = 100; key < 200; key++) {
+            cache.get(key % 10);
+            cache.get(key);
+            cache.put(key, "cold");
+        }
+
+        for (long key = 0; key < 10; key++) {
+            assertNotNull(cache.get(key));
+        }
+        // Rejected keys were never stored, so are not evictions
+        assertEquals(0, cache.stats().getEvictionCount());
+        assertFalse(cache.update(1000L, "cold"));
+        assertNull(cache.get(1000L));
+    }
+
+    @Test
+    public void testNullValuesAreRejected() {
+        LongCache<String> cache = new LongCache<>();
+        cache.put(1L, "one");
+        cache.put(17L, "seventeen");
+
+        assertThrows(NullPointerException.class, () -> cache.put(33L, null));
+        assertThrows(NullPointerException.class, () -> cache.update(1L, null));
+        assertEquals("one", cache.get(1L));
+        assertEquals("seventeen", cache.get(17L));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testExpiry() throws InterruptedException {
+        LongCache<String> cache = new LongCache<>();
+        cache.setTtl(20L);
+        cache.put(1L, "a");
+        cache.put(2L, "b");
+        Thread.sleep(40L);
+
+        assertNull(cache.get(1L));
+        cache.cleanUp();
+        assertEquals(0, cache.size());
+        assertEquals(2, cache.stats().getExpiryCount());
+    }
+
+    @Test
+    public void testUuidKeys() {
+        UUIDCache<String> cache = new UUIDCache<>();
+        UUID first = UUID.randomUUID();
+        UUID second = new UUID(first.getMostSignificantBits(), first.getLeastSignificantBits() + 1);
+        cache.put(first, "first");
+        cache.put(second, "second");
+
+        assertEquals("first", cache.get(new UUID(first.getMostSignificantBits(), first.getLeastSignificantBits())));
+        assertEquals("second", cache.get(second));
+        assertTrue(CacheRegistry.getPrimitiveCaches().contains(cache));
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2020-2021 DumbDogDiner <dumbdogdiner.com>. All rights reserved.
+ * Licensed under the MIT license, see LICENSE for more information...
+ */
+package com.dumbdogdiner.stickyapi.common.command;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+public class CommandEngineTest {
+    private static final Executor DIRECT = Runnable::run;
+
+    private static ExitCode await(CompletableFuture<ExitCode> result) throws Exception {
+        return result.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testDeliversResultOnCallback() throws Exception {
+        CommandEngine engine = new CommandEngine();
+        AtomicReference<Thread> delivered = new AtomicReference<>();
+        Thread main = new Thread(() -> {
+        }, "main");
+        Executor callback = task -> {
+            delivered.set(main);
+            task.run();
+        };
+
+        assertEquals(ExitCode.EXIT_SUCCESS, await(engine.execute(UUID.randomUUID(), () -> ExitCode.EXIT_SUCCESS, callback)));
+        assertEquals(main, delivered.get());
+        assertEquals(0, engine.getRunning());
+    }
+
+    @Test
+    public void testExceptionsBecomeErrors() throws Exception {
+        CommandEngine engine = new CommandEngine();
+
+        assertEquals(ExitCode.EXIT_ERROR, await(engine.execute(UUID.randomUUID(), () -> {
+            throw new IllegalStateException("expected");
+        }, DIRECT)));
+        assertEquals(ExitCode.EXIT_ERROR, await(engine.execute(UUID.randomUUID(), () -> null, DIRECT)));
+    }
+
+    @Test
+    public void testTimeoutInterruptsBody() throws Exception {
+        CommandEngine engine = new CommandEngine();
+        engine.setTimeout(50L);
+        CountDownLatch interrupted = new CountDownLatch(1);
+
+        assertEquals(ExitCode.EXIT_TIMEOUT, await(engine.execute(UUID.randomUUID(), () -> {
+            try {
+                Thread.sleep(10_000L);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            return ExitCode.EXIT_SUCCESS;
+        }, DIRECT)));
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        assertEquals(0, engine.getRunning());
+    }
+
+    @Test
+    public void testTimeoutCancelsAsyncBody() throws Exception {
+        CommandEngine engine = new CommandEngine();
+        engine.setTimeout(50L);
+        CompletableFuture<ExitCode> work = new CompletableFuture<>();
+
+        assertEquals(ExitCode.EXIT_TIMEOUT, await(engine.executeAsync(UUID.randomUUID(), () -> work, DIRECT)));
+        assertTrue(work.isCancelled());
+    }
+
+    @Test
+    public void testConcurrencyLimits() throws Exception {
+        CommandEngine engine = new CommandEngine();
+        engine.setMaxConcurrent(2);
+        engine.setMaxConcurrentPerSender(1);
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        CompletableFuture<ExitCode> gate = new CompletableFuture<>();
+
+        CompletableFuture<ExitCode> running = engine.executeAsync(first, () -> gate, DIRECT);
+        assertEquals(ExitCode.EXIT_BUSY, await(engine.executeAsync(first, () -> gate, DIRECT)));
+
+        CompletableFuture<ExitCode> other = engine.executeAsync(second, () -> gate, DIRECT);
+        assertEquals(ExitCode.EXIT_BUSY, await(engine.executeAsync(UUID.randomUUID(), () -> gate, DIRECT)));
+        assertEquals(2, engine.getRunning());
+
+        gate.complete(ExitCode.EXIT_SUCCESS);
+        assertEquals(ExitCode.EXIT_SUCCESS, await(running));
+        assertEquals(ExitCode.EXIT_SUCCESS, await(other));
+        assertEquals(0, engine.getRunning());
+        assertEquals(ExitCode.EXIT_SUCCESS, await(engine.execute(first, () -> ExitCode.EXIT_SUCCESS, DIRECT)));
+    }
+
+    @Test
+    public void testCancelAllDropsSenderExecutions() throws Exception {
+        CommandEngine engine = new CommandEngine();
+        UUID leaving = UUID.randomUUID();
+        UUID staying = UUID.randomUUID();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+
+        CompletableFuture<ExitCode> blocking = engine.execute(leaving, () -> {
+            started.countDown();
+            try {
+                Thread.sleep(10_000L);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            return ExitCode.EXIT_SUCCESS;
+        }, DIRECT);
+        CompletableFuture<ExitCode> gate = new CompletableFuture<>();
+        CompletableFuture<ExitCode> other = engine.executeAsync(staying, () -> gate, DIRECT);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        CommandEngine.cancelAll(leaving);
+
+        assertThrows(CancellationException.class, () -> await(blocking));
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        assertEquals(1, engine.getRunning());
+
+        gate.complete(ExitCode.EXIT_INFO);
+        assertEquals(ExitCode.EXIT_INFO, await(other));
+    }
+
+    @Test
+    public void testSenderIdsAreStableAndDistinct() {
+        UUID console = CommandEngine.senderId("ConsoleCommandSender:CONSOLE");
+        assertEquals(console, CommandEngine.senderId("ConsoleCommandSender:CONSOLE"));
+        assertNotEquals(console, CommandEngine.senderId("RemoteConsoleCommandSender:Rcon"));
+        assertNotEquals(CommandEngine.CONSOLE, console);
+    }
+
+    @Test
+    public void testRefusedCallbackFailsTheResult() throws Exception {
+        CommandEngine engine = new CommandEngine();
+        Executor disabled = task -> {
+            throw new IllegalStateException("Plugin disabled");
+        };
+
+        CompletableFuture<ExitCode> result = engine.execute(UUID.randomUUID(), () -> ExitCode.EXIT_SUCCESS, disabled);
+        ExecutionException error = assertThrows(ExecutionException.class, () -> await(result));
+        assertTrue(error.getCause() instanceof IllegalStateException);
+        assertEquals(0, engine.getRunning());
+    }
+}
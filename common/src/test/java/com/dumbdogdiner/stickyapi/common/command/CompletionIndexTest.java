@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2020-2021 DumbDogDiner <dumbdogdiner.com>. All rights reserved.
+ * Licensed under the MIT license, see LICENSE for more information...
+ */
+package com.dumbdogdiner.stickyapi.common.command;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+public class CompletionIndexTest {
+    private enum Colour {
+        RED, GREEN, GREY
+    }
+
+    @Test
+    public void testCompleteByPrefix() {
+        CompletionIndex index = CompletionIndex.of("Steve", "alex", "Stan", "stuart", "Bob");
+
+        assertEquals(Arrays.asList("Stan", "Steve", "stuart"), index.complete("st"));
+        assertEquals(Arrays.asList("Steve"), index.complete("STE"));
+        assertEquals(5, index.complete("").size());
+        assertTrue(index.complete("z").isEmpty());
+        assertTrue(index.complete("Stevenson").isEmpty());
+    }
+
+    @Test
+    public void testAddAndRemove() {
+        CompletionIndex index = new CompletionIndex();
+
+        assertTrue(index.add("notch"));
+        assertTrue(index.add("Jeb_"));
+        assertTrue(index.add("Notch"));
+        assertFalse(index.add("notch"));
+        assertEquals(3, index.size());
+        assertEquals(Arrays.asList("Notch", "notch"), index.complete("no"));
+
+        assertTrue(index.remove("notch"));
+        assertFalse(index.remove("notch"));
+        assertEquals(Arrays.asList("Notch"), index.complete("no"));
+        assertEquals(Arrays.asList("Jeb_"), index.complete("j"));
+    }
+
+    @Test
+    public void testReplaceAll() {
+        CompletionIndex index = CompletionIndex.of("a", "b");
+        index.replaceAll(Arrays.asList("c", "d", "c"));
+
+        assertEquals(Arrays.asList("c", "d"), index.complete(""));
+    }
+
+    @Test
+    public void testEnumValues() {
+        CompletionIndex index = CompletionIndex.ofEnum(Colour.class);
+
+        assertEquals(Arrays.asList("green", "grey"), index.complete("gr"));
+        assertEquals(Arrays.asList("red"), index.complete("R"));
+    }
+
+    @Test
+    public void testCacheReusesCompletionsWithinATick() throws InterruptedException {
+        CompletionCache cache = new CompletionCache("test completions");
+        UUID sender = UUID.randomUUID();
+        AtomicInteger computed = new AtomicInteger();
+
+        List<String> first = cache.get(sender, "ban St", () -> {
+            computed.incrementAndGet();
+            return CompletionIndex.of("Steve", "Stan").complete("St");
+        });
+        List<String> second = cache.get(sender, "ban St", () -> {
+            computed.incrementAndGet();
+            return null;
+        });
+        assertEquals(1, computed.get());
+        assertEquals(first, second);
+
+        // Different input and different senders are kept apart
+        cache.get(sender, "ban Ste", () -> {
+            computed.incrementAndGet();
+            return Arrays.asList("Steve");
+        });
+        cache.get(UUID.randomUUID(), "ban St", () -> {
+            computed.incrementAndGet();
+            return Arrays.asList("Stan");
+        });
+        assertEquals(3, computed.get());
+
+        // Callers may modify what they are given without affecting the cache
+        second.clear();
+        assertEquals(first, cache.get(sender, "ban St", () -> null));
+
+        Thread.sleep(100L);
+        cache.get(sender, "ban St", () -> {
+            computed.incrementAndGet();
+            return first;
+        });
+        assertEquals(4, computed.get());
+    }
+}
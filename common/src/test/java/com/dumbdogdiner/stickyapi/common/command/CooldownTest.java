@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2020-2021 DumbDogDiner <dumbdogdiner.com>. All rights reserved.
+ * Licensed under the MIT license, see LICENSE for more information...
+ */
+package com.dumbdogdiner.stickyapi.common.command;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+public class CooldownTest {
+    @Test
+    public void testFixedCooldown() {
+        Cooldown cooldown = Cooldown.fixed(60_000L);
+        UUID sender = UUID.randomUUID();
+
+        assertEquals(0, cooldown.tryAcquire(sender));
+        long remaining = cooldown.tryAcquire(sender);
+        assertTrue(remaining > 59_000L && remaining <= 60_000L, "remaining " + remaining);
+        assertTrue(cooldown.getRemaining(sender) > 0);
+
+        // Other senders are unaffected
+        assertEquals(0, cooldown.tryAcquire(UUID.randomUUID()));
+
+        cooldown.reset(sender);
+        assertEquals(0, cooldown.getRemaining(sender));
+        assertEquals(0, cooldown.tryAcquire(sender));
+    }
+
+    @Test
+    public void testZeroCooldownTracksNothing() {
+        Cooldown cooldown = Cooldown.fixed(0L);
+        UUID sender = UUID.randomUUID();
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals(0, cooldown.tryAcquire(sender));
+        }
+        assertEquals(0, cooldown.size());
+    }
+
+    @Test
+    public void testTokenBucketAllowsBursts() {
+        Cooldown cooldown = Cooldown.tokenBucket(3, 60_000L);
+        UUID sender = UUID.randomUUID();
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, cooldown.tryAcquire(sender));
+        }
+        assertTrue(cooldown.tryAcquire(sender) > 0);
+        assertTrue(cooldown.getRemaining(sender) > 59_000L);
+    }
+
+    @Test
+    public void testTokenBucketRefills() throws InterruptedException {
+        Cooldown cooldown = Cooldown.tokenBucket(2, 50L);
+        UUID sender = UUID.randomUUID();
+
+        assertEquals(0, cooldown.tryAcquire(sender));
+        assertEquals(0, cooldown.tryAcquire(sender));
+        assertTrue(cooldown.tryAcquire(sender) > 0);
+
+        Thread.sleep(70L);
+        assertEquals(0, cooldown.tryAcquire(sender));
+    }
+
+    @Test
+    public void testPurgeForgetsRefilledSenders() throws InterruptedException {
+        Cooldown cooldown = Cooldown.fixed(20L);
+        UUID expired = UUID.randomUUID();
+        cooldown.tryAcquire(expired);
+        Thread.sleep(40L);
+        UUID active = UUID.randomUUID();
+        cooldown.tryAcquire(active);
+
+        cooldown.purge();
+        assertEquals(1, cooldown.size());
+        assertTrue(cooldown.getRemaining(active) > 0);
+    }
+
+    @Test
+    public void testConcurrentAcquireAllowsOnce() throws InterruptedException {
+        Cooldown cooldown = Cooldown.fixed(60_000L);
+        UUID sender = UUID.randomUUID();
+        AtomicInteger allowed = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int j = 0; j < 100; j++) {
+                    if (cooldown.tryAcquire(sender) == 0) {
+                        allowed.incrementAndGet();
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(1, allowed.get());
+    }
+
+    @Test
+    public void testInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> Cooldown.tokenBucket(0, 1000L));
+        assertThrows(IllegalArgumentException.class, () -> Cooldown.fixed(-1L));
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2020-2021 DumbDogDiner <dumbdogdiner.com>. All rights reserved.
+ * Licensed under the MIT license, see LICENSE for more information...
+ */
+package com.dumbdogdiner.stickyapi.common.command;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class DispatchTrieTest {
+    static class TestCommandBuilder extends CommandBuilder<TestCommandBuilder> {
+        TestCommandBuilder(String name) {
+            super(name);
+        }
+    }
+
+    private static TestCommandBuilder tree() {
+        return new TestCommandBuilder("root")
+                .subCommand(new TestCommandBuilder("ban").alias("b")
+                        .subCommand(new TestCommandBuilder("list"))
+                        .subCommand(new TestCommandBuilder("lift").alias("pardon")))
+                .subCommand(new TestCommandBuilder("balance").alias("bal"))
+                .subCommand(new TestCommandBuilder("help"));
+    }
+
+    @Test
+    public void testResolveWalksNamesAndAliases() {
+        TestCommandBuilder root = tree();
+        DispatchTrie<TestCommandBuilder> trie = DispatchTrie.compile(root);
+
+        DispatchTrie<TestCommandBuilder> node = trie.resolve(Arrays.asList("b", "pardon", "Steve"));
+        assertEquals("lift", node.getCommand().getName());
+        assertEquals(2, node.getDepth());
+        assertEquals("ban", node.getParent().getCommand().getName());
+
+        node = trie.resolve(Arrays.asList("Steve", "ban"));
+        assertSame(root, node.getCommand());
+        assertEquals(0, node.getDepth());
+
+        // Names are matched exactly
+        assertNull(trie.child("BAN"));
+        assertSame(trie.child("ban"), trie.child("b"));
+    }
+
+    @Test
+    public void testResolveRespectsLimit() {
+        DispatchTrie<TestCommandBuilder> trie = DispatchTrie.compile(tree());
+
+        assertEquals("ban", trie.resolve(Arrays.asList("ban", "list"), 1).getCommand().getName());
+        assertEquals(0, trie.resolve(Arrays.asList("ban"), 0).getDepth());
+    }
+
+    @Test
+    public void testCompleteByPrefix() {
+        DispatchTrie<TestCommandBuilder> trie = DispatchTrie.compile(tree());
+
+        assertEquals(Arrays.asList("b", "bal", "balance", "ban"), trie.complete("b"));
+        assertEquals(Arrays.asList("bal", "balance"), trie.complete("BAL"));
+        assertEquals(Arrays.asList("b", "bal", "balance", "ban", "help"), trie.complete(""));
+        assertTrue(trie.complete("x").isEmpty());
+
+        DispatchTrie<TestCommandBuilder> ban = trie.child("ban");
+        assertEquals(Arrays.asList("lift", "list"), ban.complete("li"));
+        assertFalse(ban.child("list").hasChildren());
+    }
+
+    @Test
+    public void testNamesWinOverAliases() {
+        TestCommandBuilder root = new TestCommandBuilder("root")
+                .subCommand(new TestCommandBuilder("first").alias("second"))
+                .subCommand(new TestCommandBuilder("second"));
+        DispatchTrie<TestCommandBuilder> trie = DispatchTrie.compile(root);
+
+        assertEquals("second", trie.child("second").getCommand().getName());
+        List<String> names = trie.complete("");
+        assertEquals(Arrays.asList("first", "second"), names);
+    }
+
+    @Test
+    public void testCyclesAreRejected() {
+        TestCommandBuilder root = new TestCommandBuilder("root");
+        TestCommandBuilder child = new TestCommandBuilder("child");
+        root.subCommand(child);
+        child.subCommand(root);
+
+        assertThrows(IllegalStateException.class, () -> DispatchTrie.compile(root));
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2020-2021 DumbDogDiner <dumbdogdiner.com>. All rights reserved.
+ * Licensed under the MIT license, see LICENSE for more information...
+ */
+package com.dumbdogdiner.stickyapi.common.scheduler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Test;
+
+public class ExecutorStrategyTest {
+	@Test
+	public void testAutoPicksSupportedStrategy() {
+		MeteredExecutorService executor = ExecutorStrategy.AUTO.create();
+		ExecutorStrategy expected = ExecutorStrategy.isVirtualThreadSupported() ? ExecutorStrategy.VIRTUAL_THREADS
+				: ExecutorStrategy.BOUNDED_POOL;
+		assertEquals(expected, executor.getStrategy());
+		executor.shutdown();
+	}
+
+	@Test
+	public void testVirtualThreadsRequireSupport() {
+		if (!ExecutorStrategy.isVirtualThreadSupported()) {
+			assertThrows(UnsupportedOperationException.class, ExecutorStrategy.VIRTUAL_THREADS::create);
+		}
+	}
+
+	@Test
+	public void testBoundedPoolMetrics() throws Exception {
+		MeteredExecutorService executor = ExecutorStrategy.BOUNDED_POOL.create();
+		CountDownLatch release = new CountDownLatch(1);
+		Future<?> running = executor.submit(() -> {
+			release.await();
+			return null;
+		});
+
+		long deadline = System.currentTimeMillis() + 5000;
+		while (executor.getActiveCount() == 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(1);
+		}
+		assertEquals(1, executor.getActiveCount());
+
+		release.countDown();
+		running.get(5, TimeUnit.SECONDS);
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+		assertEquals(1, executor.getCompletedCount());
+		assertEquals(0, executor.getQueueDepth());
+
+		assertThrows(RejectedExecutionException.class, () -> executor.execute(() -> {
+		}));
+		assertEquals(1, executor.getRejectedCount());
+	}
+
+	@Test
+	public void testBoundedPoolRejectsWhenSaturated() throws Exception {
+		MeteredExecutorService executor = ExecutorStrategy.BOUNDED_POOL.create();
+		CountDownLatch release = new CountDownLatch(1);
+		for (int i = 0; i < ExecutorStrategy.POOL_SIZE + ExecutorStrategy.QUEUE_CAPACITY; i++) {
+			executor.execute(() -> {
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			});
+		}
+
+		// A full pool must never run the task on the submitting thread
+		AtomicBoolean ranHere = new AtomicBoolean();
+		Thread submitter = Thread.currentThread();
+		assertThrows(RejectedExecutionException.class,
+				() -> executor.execute(() -> ranHere.set(Thread.currentThread() == submitter)));
+		assertFalse(ranHere.get());
+		assertEquals(1, executor.getRejectedCount());
+
+		release.countDown();
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void testBoundedPoolThreadsAreNamed() throws Exception {
+		MeteredExecutorService executor = ExecutorStrategy.BOUNDED_POOL.create();
+		String name = executor.submit(() -> Thread.currentThread().getName()).get(5, TimeUnit.SECONDS);
+		assertTrue(name.startsWith("StickyAPI Worker #"), name);
+		executor.shutdown();
+	}
+}
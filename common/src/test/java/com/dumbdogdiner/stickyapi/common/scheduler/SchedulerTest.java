@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2020-2021 DumbDogDiner <dumbdogdiner.com>. All rights reserved.
+ * Licensed under the MIT license, see LICENSE for more information...
+ */
+package com.dumbdogdiner.stickyapi.common.scheduler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.DateTimeException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+public class SchedulerTest {
+	@Test
+	public void testSynchronousRunsNextTick() throws Exception {
+		Scheduler scheduler = new Scheduler(1);
+		Future<String> future = scheduler.scheduleSynchronous(() -> "done");
+
+		assertFalse(future.isDone());
+		scheduler.schedule();
+		assertEquals("done", future.get());
+	}
+
+	@Test
+	public void testDelayedTask() {
+		Scheduler scheduler = new Scheduler(1);
+		Future<Boolean> future = scheduler.scheduleSynchronous(() -> true, 3);
+
+		for (int i = 0; i < 3; i++) {
+			scheduler.schedule();
+			assertFalse(future.isDone());
+		}
+		scheduler.schedule();
+		assertTrue(future.isDone());
+	}
+
+	@Test
+	public void testDelayLongerThanWheel() {
+		Scheduler scheduler = new Scheduler(1);
+		Future<Boolean> future = scheduler.scheduleSynchronous(() -> true, 1000);
+
+		for (int i = 0; i < 1000; i++) {
+			scheduler.schedule();
+		}
+		assertFalse(future.isDone());
+		scheduler.schedule();
+		assertTrue(future.isDone());
+	}
+
+	@Test
+	public void testFixedRateAndCancel() {
+		Scheduler scheduler = new Scheduler(1);
+		AtomicInteger runs = new AtomicInteger();
+		Future<?> future = scheduler.scheduleSynchronousAtFixedRate(runs::incrementAndGet, 0, 2);
+
+		for (int i = 0; i < 6; i++) {
+			scheduler.schedule();
+		}
+		assertEquals(3, runs.get());
+
+		future.cancel(false);
+		for (int i = 0; i < 6; i++) {
+			scheduler.schedule();
+		}
+		assertEquals(3, runs.get());
+		assertEquals(0, scheduler.getPendingSynchronous());
+	}
+
+	@Test
+	public void testBudgetDefersRemainingTasks() {
+		Scheduler scheduler = new Scheduler(1);
+		scheduler.setTickBudget(0);
+		AtomicInteger runs = new AtomicInteger();
+		for (int i = 0; i < 3; i++) {
+			scheduler.scheduleSynchronous(runs::incrementAndGet);
+		}
+
+		// At least one task always runs
+		scheduler.schedule();
+		assertEquals(1, runs.get());
+		scheduler.schedule();
+		scheduler.schedule();
+		assertEquals(3, runs.get());
+	}
+
+	@Test
+	public void testPastDateIsRejected() {
+		Scheduler scheduler = new Scheduler(1);
+		assertThrows(DateTimeException.class,
+				() -> scheduler.scheduleSynchronous(() -> true, new Date(System.currentTimeMillis() - 1000)));
+	}
+
+	@Test
+	public void testIncrementalJobSpreadsAcrossTicks() throws Exception {
+		Scheduler scheduler = new Scheduler(1);
+		scheduler.setJobBudget(0);
+		List<Integer> seen = new ArrayList<>();
+		IncrementalJob<Integer> job = scheduler.scheduleIncremental(Arrays.asList(1, 2, 3, 4).spliterator(),
+				seen::add);
+
+		assertEquals(4, job.getTotal());
+		scheduler.schedule();
+		scheduler.schedule();
+		assertEquals(Arrays.asList(1, 2), seen);
+		assertEquals(0.5, job.getProgress());
+
+		scheduler.schedule();
+		scheduler.schedule();
+		scheduler.schedule();
+		assertEquals(4L, job.getResult().toCompletableFuture().get());
+		assertEquals(0, scheduler.getPendingJobs());
+	}
+
+	@Test
+	public void testIncrementalJobCannotBeCompletedFromOutside() throws Exception {
+		Scheduler scheduler = new Scheduler(1);
+		IncrementalJob<Integer> job = scheduler.scheduleIncremental(Arrays.asList(1, 2).iterator(), i -> {
+		});
+
+		// The stage handed out is a copy, so completing it leaves the job running
+		job.getResult().toCompletableFuture().complete(-1L);
+		assertFalse(job.isDone());
+
+		scheduler.schedule();
+		scheduler.schedule();
+		assertEquals(2L, job.getResult().toCompletableFuture().get());
+	}
+
+	@Test
+	public void testIncrementalJobsShareTicks() {
+		Scheduler scheduler = new Scheduler(1);
+		scheduler.setJobBudget(0);
+		List<String> seen = new ArrayList<>();
+		scheduler.scheduleIncremental(Arrays.asList("a1", "a2").iterator(), seen::add);
+		scheduler.scheduleIncremental(Arrays.asList("b1", "b2").iterator(), seen::add);
+
+		scheduler.schedule();
+		assertEquals(Arrays.asList("a1", "b1"), seen);
+	}
+
+	@Test
+	public void testIncrementalJobCancelAndFailure() {
+		Scheduler scheduler = new Scheduler(1);
+		scheduler.setJobBudget(0);
+		AtomicInteger runs = new AtomicInteger();
+		IncrementalJob<Integer> cancelled = scheduler.scheduleIncremental(Arrays.asList(1, 2, 3).iterator(),
+				i -> runs.incrementAndGet());
+		IncrementalJob<Integer> failing = scheduler.scheduleIncremental(Arrays.asList(1, 2, 3).iterator(), i -> {
+			throw new IllegalStateException();
+		});
+
+		scheduler.schedule();
+		assertTrue(cancelled.cancel());
+		scheduler.schedule();
+
+		assertEquals(1, runs.get());
+		assertTrue(cancelled.isCancelled());
+		assertTrue(failing.getResult().toCompletableFuture().isCompletedExceptionally());
+		assertEquals(0, scheduler.getPendingJobs());
+	}
+}
@@ -4,13 +4,19 @@
  */
 package com.dumbdogdiner.stickyapi.common.translation;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 import java.util.HashMap;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -21,6 +27,7 @@ import org.junit.jupiter.api.Order;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestInstance;
 import org.junit.jupiter.api.TestMethodOrder;
+import org.junit.jupiter.api.io.TempDir;
 import org.junit.jupiter.api.MethodOrderer.OrderAnnotation;
 import org.junit.jupiter.api.TestInstance.Lifecycle;
 
@@ -256,4 +263,198 @@ public class LocaleProviderTest {
         assertEquals(1, localeProvider.loadAllLocales());
     }
 
+    @Test
+    public void testReloadLocaleReplacesCompiledMessages(@TempDir File folder) throws IOException {
+        File file = new File(folder, "messages.yml");
+        Files.write(file.toPath(), "greeting: \"&aHello {name}\"\nconstant: \"&bWelcome\"\n".getBytes(StandardCharsets.UTF_8));
+
+        LocaleProvider localeProvider = new LocaleProvider(folder);
+        assertTrue(localeProvider.loadLocale("messages"));
+        assertTrue(localeProvider.setDefaultLocale("messages"));
+
+        HashMap<String, String> vars = new HashMap<>();
+        vars.put("name", "Steve");
+        assertEquals("§aHello Steve", localeProvider.translate("greeting", vars));
+        // Messages without variables are rendered once, when compiled
+        assertSame(localeProvider.translate("constant", vars), localeProvider.translate("constant", vars));
+
+        Files.write(file.toPath(), "greeting: \"&cBye {name}\"\n".getBytes(StandardCharsets.UTF_8));
+        assertTrue(localeProvider.reloadLocale("messages"));
+        assertEquals("§cBye Steve", localeProvider.translate("greeting", vars));
+        assertNull(localeProvider.translate("constant", vars));
+        assertSame(localeProvider.getLocale("messages"), localeProvider.getDefaultLocale());
+
+        assertFalse(localeProvider.reloadLocale("missing"));
+    }
+
+    @Test
+    public void testLoadAllLocalesInParallel(@TempDir File folder) throws IOException {
+        for (int i = 0; i < 16; i++) {
+            Files.write(new File(folder, "messages.l" + i + ".yml").toPath(),
+                    ("index: \"" + i + "\"\n").getBytes(StandardCharsets.UTF_8));
+        }
+        Files.write(new File(folder, "broken.yml").toPath(), "a: [\n".getBytes(StandardCharsets.UTF_8));
+
+        LocaleProvider localeProvider = new LocaleProvider(folder);
+        assertTrue(localeProvider.loadLocale("messages.l0"));
+        assertEquals(15, localeProvider.loadAllLocales());
+        assertEquals(16, localeProvider.getLoadedLocales().size());
+        for (int i = 0; i < 16; i++) {
+            assertEquals(String.valueOf(i), localeProvider.get("messages.l" + i, "index"));
+        }
+        assertEquals(0, localeProvider.loadAllLocales());
+    }
+
+    @Test
+    public void testWatchLocalesReloadsChangedFiles(@TempDir File folder) throws Exception {
+        File file = new File(folder, "messages.yml");
+        Files.write(file.toPath(), "greeting: \"Hello\"\n".getBytes(StandardCharsets.UTF_8));
+
+        LocaleProvider localeProvider = new LocaleProvider(folder);
+        assertTrue(localeProvider.loadLocale("messages"));
+        assertTrue(localeProvider.setDefaultLocale("messages"));
+        assertTrue(localeProvider.watchLocales());
+        try {
+            Files.write(file.toPath(), "greeting: \"Bye\"\n".getBytes(StandardCharsets.UTF_8));
+            Files.write(new File(folder, "messages.pt.yml").toPath(),
+                    "greeting: \"Tchau\"\n".getBytes(StandardCharsets.UTF_8));
+
+            long deadline = System.currentTimeMillis() + 10000;
+            while (System.currentTimeMillis() < deadline
+                    && (!"Bye".equals(localeProvider.translate("greeting", new HashMap<>()))
+                            || !localeProvider.getLoadedLocales().containsKey("messages.pt"))) {
+                Thread.sleep(50);
+            }
+            assertEquals("Bye", localeProvider.translate("greeting", new HashMap<>()));
+            assertEquals("Tchau", localeProvider.translate("pt", "greeting", new HashMap<>()));
+        } finally {
+            localeProvider.stopWatchingLocales();
+        }
+    }
+
+    @Test
+    public void testWatchLocalesWaitsForWritesToFinish(@TempDir File folder) throws Exception {
+        File file = new File(folder, "messages.yml");
+        Files.write(file.toPath(), "greeting: \"Hello\"\nfarewell: \"Bye\"\n".getBytes(StandardCharsets.UTF_8));
+
+        LocaleProvider localeProvider = new LocaleProvider(folder);
+        assertTrue(localeProvider.loadLocale("messages"));
+        assertTrue(localeProvider.watchLocales());
+        try {
+            // Written in parts, each of which parses on its own
+            Files.write(file.toPath(), "greeting: \"Hi\"\n".getBytes(StandardCharsets.UTF_8));
+            for (int i = 0; i < 3; i++) {
+                Thread.sleep(LocaleProvider.QUIET_PERIOD / 5);
+                assertEquals("Bye", localeProvider.getLoadedLocales().get("messages").get("farewell"));
+                Files.write(file.toPath(), "farewell: \"Later\"\n".getBytes(StandardCharsets.UTF_8),
+                        StandardOpenOption.APPEND);
+            }
+
+            long deadline = System.currentTimeMillis() + 10000;
+            while (System.currentTimeMillis() < deadline
+                    && !"Hi".equals(localeProvider.getLoadedLocales().get("messages").get("greeting"))) {
+                Thread.sleep(20);
+            }
+            assertEquals("Later", localeProvider.getLoadedLocales().get("messages").get("farewell"));
+        } finally {
+            localeProvider.stopWatchingLocales();
+        }
+    }
+
+    @Test
+    public void testNestedSectionsAreReadByPath(@TempDir File folder) throws IOException {
+        Files.write(new File(folder, "messages.yml").toPath(),
+                "ban:\n  reason: \"&cBanned: {reason}\"\n  notify:\n    staff: \"{player} was banned\"\nprefix: \"&8[&bS&8]\"\n"
+                        .getBytes(StandardCharsets.UTF_8));
+
+        LocaleProvider localeProvider = new LocaleProvider(folder);
+        assertTrue(localeProvider.loadLocale("messages"));
+        assertTrue(localeProvider.setDefaultLocale("messages"));
+
+        Locale locale = localeProvider.getLocale("messages");
+        assertEquals("{player} was banned", locale.get("ban.notify.staff"));
+        assertNull(locale.get("ban"));
+        assertNull(locale.get("ban.missing"));
+        // Loaded strings are interned, so identical text is shared between locales
+        assertSame("&8[&bS&8]", locale.get("prefix"));
+        // The full configuration is read from the file again when asked for
+        assertEquals("&8[&bS&8]", locale.getLocaleConfig().getString("prefix"));
+
+        HashMap<String, String> vars = new HashMap<>();
+        vars.put("reason", "griefing");
+        assertEquals("§cBanned: griefing", localeProvider.translate("ban.reason", vars));
+    }
+
+    @Test
+    public void testTranslateFallsBackThroughLocaleTag(@TempDir File folder) throws IOException {
+        Files.write(new File(folder, "messages.en_us.yml").toPath(),
+                "greeting: \"Hello {name}\"\nfarewell: \"Bye\"\nhelp: \"Help\"\n".getBytes(StandardCharsets.UTF_8));
+        Files.write(new File(folder, "messages.pt.yml").toPath(),
+                "greeting: \"Olá {name}\"\nfarewell: \"Tchau\"\n".getBytes(StandardCharsets.UTF_8));
+        Files.write(new File(folder, "messages.pt_br.yml").toPath(),
+                "greeting: \"&aOi {name}\"\n".getBytes(StandardCharsets.UTF_8));
+
+        LocaleProvider localeProvider = new LocaleProvider(folder);
+        assertEquals(3, localeProvider.loadAllLocales());
+        assertTrue(localeProvider.setDefaultLocale("messages.en_us"));
+
+        HashMap<String, String> vars = new HashMap<>();
+        vars.put("name", "Steve");
+        assertEquals("§aOi Steve", localeProvider.translate("pt_BR", "greeting", vars));
+        assertEquals("Tchau", localeProvider.translate("pt-br", "farewell", vars));
+        assertEquals("Help", localeProvider.translate("pt_br", "help", vars));
+        assertEquals("Olá Steve", localeProvider.translate(new java.util.Locale("pt", "PT"), "greeting", vars));
+        assertEquals("Hello Steve", localeProvider.translate("de_de", "greeting", vars));
+        assertNull(localeProvider.translate("pt_br", "missing", vars));
+
+        assertArrayEquals(new String[] { "messages.pt_br", "messages.pt", "messages.en_us" },
+                localeProvider.getFallbacks("pt_BR"));
+        assertSame(localeProvider.getFallbacks("pt_br"), localeProvider.getFallbacks("PT-BR"));
+
+        // Changing the default rebuilds the chains
+        assertTrue(localeProvider.setDefaultLocale("messages.pt"));
+        assertArrayEquals(new String[] { "messages.pt" }, localeProvider.getFallbacks("de_de"));
+    }
+
+    @Test
+    public void testNestedNodesFollowThePlayersLocale(@TempDir File folder) throws IOException {
+        Files.write(new File(folder, "messages.en_us.yml").toPath(),
+                "prefix: \"[Server]\"\nban: \"{prefix} Banned {player}\"\n".getBytes(StandardCharsets.UTF_8));
+        Files.write(new File(folder, "messages.de.yml").toPath(),
+                "prefix: \"[Server DE]\"\nkick: \"{prefix} {player} wurde gekickt {suffix}\"\nsuffix: \"!\"\n"
+                        .getBytes(StandardCharsets.UTF_8));
+
+        LocaleProvider localeProvider = new LocaleProvider(folder);
+        assertEquals(2, localeProvider.loadAllLocales());
+        assertTrue(localeProvider.setDefaultLocale("messages.en_us"));
+
+        HashMap<String, String> vars = new HashMap<>();
+        vars.put("player", "Steve");
+        // The nested node is read from the player's locale, even when only it has it
+        assertEquals("[Server DE] Steve wurde gekickt !", localeProvider.translate("de_DE", "kick", vars));
+        // A message from the default locale still fills nodes from the player's locale first
+        assertEquals("[Server DE] Banned Steve", localeProvider.translate("de_DE", "ban", vars));
+        assertEquals("[Server] Banned Steve", localeProvider.translate("ban", vars));
+    }
+
+    @Test
+    public void testFallbacksAreKeyedByLoadedLocales(@TempDir File folder) throws IOException {
+        Files.write(new File(folder, "messages.en_us.yml").toPath(), "greeting: \"Hello\"\n".getBytes(StandardCharsets.UTF_8));
+        Files.write(new File(folder, "messages.pt.yml").toPath(), "greeting: \"Olá\"\n".getBytes(StandardCharsets.UTF_8));
+
+        LocaleProvider localeProvider = new LocaleProvider(folder);
+        assertEquals(2, localeProvider.loadAllLocales());
+        assertTrue(localeProvider.setDefaultLocale("messages.en_us"));
+
+        // Unknown tags share chains rather than each getting their own
+        assertSame(localeProvider.getFallbacks("de_de"), localeProvider.getFallbacks("fr_fr"));
+        assertSame(localeProvider.getFallbacks("pt"), localeProvider.getFallbacks("pt_br"));
+
+        // A locale loaded after the chains were built is picked up
+        Files.write(new File(folder, "messages.pt_br.yml").toPath(), "greeting: \"Oi\"\n".getBytes(StandardCharsets.UTF_8));
+        assertTrue(localeProvider.loadLocale("messages.pt_br.yml"));
+        assertArrayEquals(new String[] { "messages.pt_br", "messages.pt", "messages.en_us" },
+                localeProvider.getFallbacks("pt_br"));
+    }
+
 }
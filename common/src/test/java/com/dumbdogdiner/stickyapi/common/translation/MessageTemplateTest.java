@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2020-2021 DumbDogDiner <dumbdogdiner.com>. All rights reserved.
+ * Licensed under the MIT license, see LICENSE for more information...
+ */
+package com.dumbdogdiner.stickyapi.common.translation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+public class MessageTemplateTest {
+    private static Map<String, String> variables(String... pairs) {
+        Map<String, String> variables = new HashMap<>();
+        for (int i = 0; i < pairs.length; i += 2) {
+            variables.put(pairs[i], pairs[i + 1]);
+        }
+        return variables;
+    }
+
+    @Test
+    public void testVariables() {
+        MessageTemplate template = MessageTemplate.compile("{player} was banned by {executioner}: {reason}");
+
+        assertFalse(template.isConstant());
+        assertEquals("Steve was banned by CONSOLE: griefing",
+                template.render(null, variables("player", "Steve", "executioner", "CONSOLE", "reason", "griefing")));
+        assertEquals("Alex was banned by {executioner}: {reason}",
+                template.render(null, variables("player", "Alex")));
+    }
+
+    @Test
+    public void testValuesAreInsertedLiterally() {
+        MessageTemplate template = MessageTemplate.compile("{prefix} {reason}");
+
+        assertEquals("> {prefix}", template.render(null, variables("prefix", ">", "reason", "{prefix}")));
+    }
+
+    @Test
+    public void testFunctions() {
+        MessageTemplate template = MessageTemplate.compile("{count} {count|pluralize:\"y,ies\"}, {name|upper}");
+
+        assertEquals("2 ies, STEVE", template.render(null, variables("count", "2", "name", "Steve")));
+        assertEquals("yes", MessageTemplate.compile("{flag | yesno}").render(null, variables("flag", "true")));
+        assertEquals("none", MessageTemplate.compile("{missing|default_if_none:\"none\"}").render(null,
+                variables()));
+    }
+
+    @Test
+    public void testUnknownFunctionsAreLeftAsWritten() {
+        assertEquals("a {name|nope} b",
+                MessageTemplate.compile("a {name|nope} b").render(null, variables("name", "Steve")));
+    }
+
+    @Test
+    public void testConstantAndMalformedMessages() {
+        String message = "&aNo placeholders here";
+        MessageTemplate constant = MessageTemplate.compile(message);
+        assertTrue(constant.isConstant());
+        assertSame(message, constant.render(null, variables()));
+
+        assertEquals("{a Steve } {", MessageTemplate.compile("{a {b} } {").render(null, variables("b", "Steve")));
+        assertEquals("{player}", MessageTemplate.compile("{player}").render(null, null));
+    }
+
+    @Test
+    public void testColoredTemplates() {
+        MessageTemplate constant = MessageTemplate.compile("&aWelcome!").colored("&");
+        assertTrue(constant.isConstant());
+        assertSame(constant.render(null, variables()), constant.render(null, variables()));
+        assertEquals("\u00A7aWelcome!", constant.render(null, variables()));
+
+        MessageTemplate template = MessageTemplate.compile("&7{prefix} &f{name|upper} {missing} &").colored("&");
+        assertEquals("\u00A77\u00A78[\u00A7bS\u00A78] \u00A7fSTEVE {missing} &",
+                template.render(null, variables("prefix", "&8[&bS&8]", "name", "steve")));
+        assertEquals(Translation.translate(null, "&7{prefix}", "&", variables("prefix", "&cX")),
+                MessageTemplate.compile("&7{prefix}").colored("&").render(null, variables("prefix", "&cX")));
+    }
+
+    @Test
+    public void testColorCodesSplitAcrossPlaceholders() {
+        MessageTemplate template = MessageTemplate.compile("&{color}text{amp}a").colored("&");
+        Map<String, String> variables = variables("color", "c", "amp", "&");
+
+        assertEquals("\u00A7ctext\u00A7a", template.render(null, variables));
+        assertEquals(Translation.translate(null, "&{color}text{amp}a", "&", variables), template.render(null, variables));
+    }
+
+    @Test
+    public void testTranslateVariablesMatchesTemplates() {
+        Map<String, String> variables = variables("target", "Notch", "n", "1");
+        String message = "{target} has {n} {n|pluralize:\"life,lives\"} left";
+
+        assertEquals(MessageTemplate.compile(message).render(null, variables),
+                Translation.translateVariables(null, message, variables));
+    }
+}
@@ -37,4 +37,32 @@ public class MemoryUtilTest {
     public void testFormatMegabytes() {
         assertEquals(MemoryUtil.formatBits(8000000, Unit.MEGABYTES), 1);
     }
+
+    static class Node {
+        int value = 1;
+        Node next;
+    }
+
+    @Test
+    public void testSizeOfCycle() {
+        Node a = new Node();
+        Node b = new Node();
+        a.next = b;
+        b.next = a;
+
+        assertEquals(64, MemoryUtil.getSizeOf(a));
+    }
+
+    @Test
+    public void testSizeOfSharedReferenceCountsOnce() {
+        String shared = "shared";
+        Object[] array = { shared, shared, 1L };
+
+        assertEquals(6 * 8 + 64, MemoryUtil.getSizeOf(array));
+    }
+
+    @Test
+    public void testSizeOfPrimitiveArray() {
+        assertEquals(4 * 32, MemoryUtil.getSizeOf(new int[4]));
+    }
 }
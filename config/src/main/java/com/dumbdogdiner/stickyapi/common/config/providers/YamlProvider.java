@@ -10,6 +10,7 @@ import java.io.FileNotFoundException;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -60,6 +61,31 @@ public class YamlProvider implements FileConfiguration {
         return (value != null) ? value.toString() : null;
 	}
 
+    /**
+     * Get every value as a string, with nested sections flattened into dot
+     * separated paths - so <code>parent: {child: "value"}</code> is returned
+     * as <code>parent.child</code>.
+     * 
+     * @return A new {@link Map} of paths to values
+     */
+    public Map<String, String> getStrings() {
+        Map<String, String> strings = new HashMap<>();
+        flatten("", this.data, strings);
+        return strings;
+    }
+
+    private static void flatten(String prefix, Map<?, ?> section, Map<String, String> strings) {
+        for (Map.Entry<?, ?> entry : section.entrySet()) {
+            String path = prefix + entry.getKey();
+            Object value = entry.getValue();
+            if (value instanceof Map) {
+                flatten(path + ".", (Map<?, ?>) value, strings);
+            } else if (value != null) {
+                strings.put(path, value.toString());
+            }
+        }
+    }
+
     @Override
     public boolean save(String path) {
         FileWriter fileWriter;
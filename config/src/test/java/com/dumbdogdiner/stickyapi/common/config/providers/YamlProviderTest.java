@@ -13,6 +13,7 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -72,6 +73,14 @@ public class YamlProviderTest {
         assertEquals("Default Value", exampleFileConfig.getString("non-existent", "Default Value"));
     }
 
+    @Test
+    public void testGetStringsFlattensSections() {
+        Map<String, String> strings = ((YamlProvider) exampleFileConfig).getStrings();
+        assertEquals(2, strings.size());
+        assertEquals("Hello, World!", strings.get("string"));
+        assertEquals("value", strings.get("parent.child.child2"));
+    }
+
     @Test
     public void testSaveFileInputString() throws IOException {
         String testOutput = "build/example.config.yml.string.test-save";